@@ -0,0 +1,214 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Upgrades a large v1 database in a scratch file, never the app's own EmergencyAlert.db
+@RunWith(AndroidJUnit4.class)
+public class SchemaMigrationsTest {
+
+    private static final String TAG = "SchemaMigrationsTest";
+    private static final String DB_NAME = "schema-migrations-test.db";
+    private static final int EVENT_ROWS = 200000;
+
+    // Longest a conversion chunk may hold the write lock: the journal, the outbox and the
+    // geofence receiver all wait behind it, and the receiver has a few seconds in total
+    private static final long CHUNK_LOCK_BOUND_MS = 250;
+    // The last chunk also builds the timeline indexes over the whole table in one statement
+    private static final long COMPLETE_LOCK_BOUND_MS = 2000;
+
+    private File file;
+    private SQLiteDatabase db;
+    private PhoneNormalizer normalizer;
+    private final SimpleDateFormat v1Format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+
+    @Before
+    public void createV1Database() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        normalizer = PhoneNormalizer.forDevice(context);
+        file = context.getDatabasePath(DB_NAME);
+        SQLiteDatabase.deleteDatabase(file);
+        file.getParentFile().mkdirs();
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+
+        // The v1 schema as it shipped, before SchemaMigrations existed
+        db.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE, " +
+                "password TEXT, bg_color TEXT DEFAULT '#FFFFFF', font_size INTEGER DEFAULT 16)");
+        db.execSQL("CREATE TABLE emergency_contacts (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, " +
+                "phone TEXT, relation TEXT)");
+        db.execSQL("CREATE TABLE emergency_events (id INTEGER PRIMARY KEY AUTOINCREMENT, event_type TEXT, " +
+                "event_date TEXT, location TEXT, notes TEXT)");
+        db.execSQL("CREATE TABLE safety_tips (id INTEGER PRIMARY KEY AUTOINCREMENT, category TEXT, " +
+                "title TEXT, content TEXT)");
+
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO emergency_contacts (name, phone, relation) VALUES ('Asha', '98765 43210', 'Sister')");
+            db.execSQL("INSERT INTO safety_tips (category, title, content) VALUES ('Fire', 'Stay low', 'Crawl under smoke')");
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(2024, Calendar.MARCH, 1, 10, 0, 0);
+            SQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO emergency_events (event_type, event_date, location, notes) VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < EVENT_ROWS; i++) {
+                insert.bindString(1, "SOS");
+                insert.bindString(2, v1Format.format(calendar.getTime()));
+                insert.bindString(3, "12.97, 77.59");
+                insert.bindString(4, "row " + i);
+                insert.executeInsert();
+                calendar.add(Calendar.MINUTE, 7);
+            }
+            insert.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.setVersion(1);
+    }
+
+    @After
+    public void deleteDatabase() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void upgradeLeavesEventRowsToTheBackfill() {
+        long start = SystemClock.elapsedRealtime();
+        upgradeToCurrent();
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        // onUpgrade blocks whoever opened the database; it must not scale with the event table
+        assertTrue("upgrade took " + elapsed + " ms", elapsed < 500);
+        assertEquals(0, convertedRows());
+        assertEquals(0, savedPosition());
+        assertFalse(hasIndex("idx_events_time"));
+    }
+
+    @Test
+    public void backfillResumesFromSavedPosition() throws Exception {
+        upgradeToCurrent();
+
+        // Three committed chunks, then the process dies
+        SchemaMigrations.runBackfill(db, SchemaMigrations.BACKFILL_EVENT_TIME, 0, 3);
+        assertEquals(3 * SchemaMigrations.CHUNK_SIZE, savedPosition());
+        assertEquals(3 * SchemaMigrations.CHUNK_SIZE, convertedRows());
+        assertEquals(3 * SchemaMigrations.CHUNK_SIZE, DatabaseUtils.longForQuery(db,
+                "SELECT MAX(id) FROM emergency_events WHERE event_time IS NOT NULL", null));
+        assertFalse(hasIndex("idx_events_time"));
+
+        // Next open picks up where it stopped
+        List<String[]> pending = SchemaMigrations.loadPending(db);
+        assertEquals(1, pending.size());
+        assertEquals(SchemaMigrations.BACKFILL_EVENT_TIME, pending.get(0)[0]);
+        SchemaMigrations.runBackfill(db, pending.get(0)[0], Long.parseLong(pending.get(0)[1]), Integer.MAX_VALUE);
+
+        assertEquals(EVENT_ROWS, convertedRows());
+        assertTrue(SchemaMigrations.loadPending(db).isEmpty());
+        assertTrue(hasIndex("idx_events_time"));
+        assertTrue(hasIndex("idx_events_type_time"));
+
+        // Text dates were written in device local time
+        Cursor cursor = db.rawQuery("SELECT event_date, event_time FROM emergency_events WHERE id IN (1, ?, ?)",
+                new String[]{String.valueOf(3 * SchemaMigrations.CHUNK_SIZE + 1), String.valueOf(EVENT_ROWS)});
+        try {
+            assertEquals(3, cursor.getCount());
+            while (cursor.moveToNext()) {
+                assertEquals(v1Format.parse(cursor.getString(0)).getTime(), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void backfillChunksHoldTheWriteLockBriefly() {
+        long start = SystemClock.elapsedRealtime();
+        upgradeToCurrent();
+        long upgradeMs = SystemClock.elapsedRealtime() - start;
+
+        // One chunk per call, so each timing is one transaction
+        long backfillNanos = 0;
+        long worstChunkNanos = 0;
+        long completeNanos = 0;
+        int chunks = 0;
+        List<String[]> pending = SchemaMigrations.loadPending(db);
+        while (!pending.isEmpty()) {
+            long chunkStart = System.nanoTime();
+            SchemaMigrations.runBackfill(db, pending.get(0)[0], Long.parseLong(pending.get(0)[1]), 1);
+            long chunkNanos = System.nanoTime() - chunkStart;
+            backfillNanos += chunkNanos;
+            chunks++;
+
+            pending = SchemaMigrations.loadPending(db);
+            if (pending.isEmpty()) {
+                completeNanos = chunkNanos;
+            } else {
+                worstChunkNanos = Math.max(worstChunkNanos, chunkNanos);
+            }
+        }
+
+        long worstChunkMs = TimeUnit.NANOSECONDS.toMillis(worstChunkNanos);
+        long completeMs = TimeUnit.NANOSECONDS.toMillis(completeNanos);
+        Log.i(TAG, EVENT_ROWS + " rows: upgrade " + upgradeMs + " ms, backfill " +
+                TimeUnit.NANOSECONDS.toMillis(backfillNanos) + " ms in " + chunks + " chunks, worst chunk " +
+                worstChunkMs + " ms, final chunk with indexes " + completeMs + " ms");
+
+        assertTrue("upgrade took " + upgradeMs + " ms", upgradeMs < 500);
+        assertEquals(EVENT_ROWS / SchemaMigrations.CHUNK_SIZE + 1, chunks);
+        assertTrue("a chunk held the write lock for " + worstChunkMs + " ms", worstChunkMs < CHUNK_LOCK_BOUND_MS);
+        assertTrue("the final chunk held the write lock for " + completeMs + " ms",
+                completeMs < COMPLETE_LOCK_BOUND_MS);
+        assertEquals(EVENT_ROWS, convertedRows());
+        assertTrue(hasIndex("idx_events_time"));
+    }
+
+    // Same as SQLiteOpenHelper: the whole upgrade runs in one transaction
+    private void upgradeToCurrent() {
+        db.beginTransaction();
+        try {
+            SchemaMigrations.upgrade(normalizer, db, 1, DatabaseHelper.DATABASE_VERSION);
+            db.setVersion(DatabaseHelper.DATABASE_VERSION);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private long convertedRows() {
+        return DatabaseUtils.queryNumEntries(db, "emergency_events", "event_time IS NOT NULL", null);
+    }
+
+    private long savedPosition() {
+        return DatabaseUtils.longForQuery(db, "SELECT last_id FROM " + SchemaMigrations.TABLE_BACKFILLS +
+                " WHERE name = ?", new String[]{SchemaMigrations.BACKFILL_EVENT_TIME});
+    }
+
+    private boolean hasIndex(String name) {
+        return DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'index' AND name = ?",
+                new String[]{name}) > 0;
+    }
+}
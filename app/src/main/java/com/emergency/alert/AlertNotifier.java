@@ -0,0 +1,245 @@
+package com.emergency.alert;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Coalesces zone alerts. Each (transition, zone type) pair owns one notification that
+// is updated in place: repeats for the same zone replace its line, new zones add one.
+// Alerts arriving within COALESCE_MS are folded into a single update, and only one
+// update per HEADS_UP_INTERVAL_MS may pop up and vibrate; the rest land silently.
+// SOS-class alerts do not come through here; they use
+// NotificationHelper.showEmergencyNotification and always go out at once.
+final class AlertNotifier {
+
+    private static final String TAG = "AlertNotifier";
+
+    static final long COALESCE_MS = 500;
+    static final long HEADS_UP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // A group quiet for this long starts over rather than keep counting
+    static final long GROUP_RESET_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_LINES = 5;
+    private static final int FIRST_ID = 100; // 1 is the tracking service's notification
+
+    private static volatile AlertNotifier instance;
+
+    private final Context appContext;
+    private final Poster poster;
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    private final Map<String, Group> groups = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private long lastHeadsUp = -HEADS_UP_INTERVAL_MS;
+    private int nextId = FIRST_ID;
+    private PendingIntent contentIntent; // executor thread only
+
+    // Counters for the diagnostics screen
+    private volatile long received;
+    private volatile long posted;
+
+    // The NotificationManager call every update goes through; a recorder in tests
+    interface Poster {
+        void notify(int id, Notification notification);
+    }
+
+    static AlertNotifier getInstance(Context context) {
+        AlertNotifier notifier = instance;
+        if (notifier == null) {
+            synchronized (AlertNotifier.class) {
+                notifier = instance;
+                if (notifier == null) {
+                    Context appContext = context.getApplicationContext();
+                    NotificationManager manager =
+                            (NotificationManager) appContext.getSystemService(Context.NOTIFICATION_SERVICE);
+                    notifier = new AlertNotifier(appContext, manager::notify);
+                    instance = notifier;
+                }
+            }
+        }
+        return notifier;
+    }
+
+    // Visible for fake posters
+    AlertNotifier(Context appContext, Poster poster) {
+        this.appContext = appContext;
+        this.poster = poster;
+
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "alert-notifier");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+    }
+
+    // eventType is the journal type (GEOFENCE_ENTER, ...), which with the zone type
+    // picks the notification the alert is folded into
+    void post(String eventType, ZoneIndex.Type type, String zoneId, String title, String message) {
+        String key = eventType + ':' + type.name();
+        long now = SystemClock.elapsedRealtime();
+
+        synchronized (lock) {
+            received++;
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(nextId++);
+                groups.put(key, group);
+            } else if (now - group.lastUpdate >= GROUP_RESET_MS) {
+                group.reset();
+            }
+            group.add(zoneId, title, message, now);
+
+            if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flush, COALESCE_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Posts whatever is pending and waits for it, e.g. before a broadcast receiver finishes
+    boolean flushAndWait(long timeoutMs) {
+        Future<?> future = executor.submit(this::flush);
+        try {
+            future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            Log.e(TAG, "Alert flush did not complete", e);
+            return false;
+        }
+    }
+
+    long receivedCount() {
+        return received;
+    }
+
+    long postedCount() {
+        return posted;
+    }
+
+    // Executor thread only
+    private void flush() {
+        if (contentIntent == null) {
+            contentIntent = PendingIntent.getActivity(
+                    appContext,
+                    0,
+                    new Intent(appContext, MainActivity.class),
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        }
+
+        Map<Integer, NotificationCompat.Builder> updates = new HashMap<>();
+        synchronized (lock) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            boolean headsUp = now - lastHeadsUp >= HEADS_UP_INTERVAL_MS;
+            for (Group group : groups.values()) {
+                if (!group.dirty) continue;
+                group.dirty = false;
+                updates.put(group.id, group.build(appContext, contentIntent, headsUp));
+            }
+            if (updates.isEmpty()) return;
+            if (headsUp) lastHeadsUp = now;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU &&
+                ActivityCompat.checkSelfPermission(
+                        appContext,
+                        Manifest.permission.POST_NOTIFICATIONS
+                ) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Notification permission missing");
+            return;
+        }
+
+        NotificationHelper.createNotificationChannel(appContext);
+        for (Map.Entry<Integer, NotificationCompat.Builder> update : updates.entrySet()) {
+            poster.notify(update.getKey(), update.getValue().build());
+            posted++;
+        }
+    }
+
+    // Guarded by lock
+    private static final class Group {
+        final int id;
+        final ArrayDeque<String> zones = new ArrayDeque<>(MAX_LINES);
+        int count;
+        String title;
+        String message;
+        long lastUpdate;
+        boolean dirty;
+
+        Group(int id) {
+            this.id = id;
+        }
+
+        void reset() {
+            zones.clear();
+            count = 0;
+        }
+
+        void add(String zoneId, String title, String message, long now) {
+            // A zone seen again moves to the front instead of adding a line
+            if (!zones.remove(zoneId)) count++;
+            zones.addFirst(zoneId);
+            if (zones.size() > MAX_LINES) zones.removeLast();
+            this.title = title;
+            this.message = message;
+            lastUpdate = now;
+            dirty = true;
+        }
+
+        NotificationCompat.Builder build(Context context, PendingIntent contentIntent, boolean headsUp) {
+            NotificationCompat.Builder builder =
+                    new NotificationCompat.Builder(context, NotificationHelper.CHANNEL_ID)
+                            .setSmallIcon(android.R.drawable.ic_dialog_alert)
+                            .setContentTitle(count > 1 ? title + " (" + count + ")" : title)
+                            .setContentText(message)
+                            .setNumber(count)
+                            .setAutoCancel(true)
+                            .setContentIntent(contentIntent);
+
+            if (count > 1) {
+                NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+                for (String zone : zones) style.addLine(zone);
+                if (count > zones.size()) style.setSummaryText("+" + (count - zones.size()) + " more");
+                builder.setStyle(style);
+            }
+
+            if (headsUp) {
+                builder.setPriority(NotificationCompat.PRIORITY_HIGH)
+                        .setVibrate(new long[]{0, 1000, 500, 1000});
+            } else {
+                builder.setSilent(true);
+            }
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.emergency.alert;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs DatabaseHelper work off the UI thread and hands results back on it.
+// Activities go through this; services, receivers and the journal already run off the main thread.
+public final class AsyncDatabase {
+
+    private static final String TAG = "AsyncDatabase";
+
+    // WAL allows one writer next to readers, so a small pool is enough
+    private static final int THREADS = 2;
+
+    private static volatile AsyncDatabase instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Query<T> {
+        T run(DatabaseHelper db) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+            Log.e(TAG, "Database task failed", e);
+        }
+    }
+
+    public static AsyncDatabase getInstance(Context context) {
+        AsyncDatabase db = instance;
+        if (db == null) {
+            synchronized (AsyncDatabase.class) {
+                db = instance;
+                if (db == null) {
+                    db = new AsyncDatabase(DatabaseHelper.getInstance(context));
+                    instance = db;
+                }
+            }
+        }
+        return db;
+    }
+
+    private AsyncDatabase(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "db-io-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    // Result (or error) is delivered on the main thread
+    public <T> Future<T> submit(Query<T> query, Callback<T> callback) {
+        return executor.submit(task(query, callback, null));
+    }
+
+    // Same, but the callback is dropped if the activity has gone away in the meantime
+    public <T> Future<T> submit(Activity owner, Query<T> query, Callback<T> callback) {
+        return executor.submit(task(query, callback, owner));
+    }
+
+    // Fire-and-forget write; failures are only logged
+    public Future<?> execute(Query<?> query) {
+        return executor.submit(task(query, null, null));
+    }
+
+    private <T> Callable<T> task(Query<T> query, Callback<T> callback, Activity owner) {
+        return () -> {
+            T result;
+            try {
+                result = query.run(dbHelper);
+            } catch (Exception e) {
+                if (callback == null) {
+                    Log.e(TAG, "Database task failed", e);
+                } else {
+                    deliver(owner, () -> callback.onError(e));
+                }
+                throw e;
+            }
+            if (callback != null) deliver(owner, () -> callback.onResult(result));
+            return result;
+        };
+    }
+
+    private void deliver(Activity owner, Runnable runnable) {
+        mainHandler.post(() -> {
+            if (owner != null && (owner.isFinishing() || owner.isDestroyed())) return;
+            runnable.run();
+        });
+    }
+}
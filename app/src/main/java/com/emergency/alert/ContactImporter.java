@@ -0,0 +1,204 @@
+package com.emergency.alert;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Streaming reader for contact files (vCard or CSV). Records are produced one at a
+// time so a 10k-entry file never sits in memory as a list.
+final class ContactImporter implements DatabaseHelper.ContactSource {
+
+    static final String DEFAULT_RELATION = "Imported";
+
+    private final BufferedReader reader;
+    private boolean vCard;
+    private String pendingLine;
+    private char separator = ',';
+
+    // CSV column positions; -1 when absent
+    private int nameColumn = 0;
+    private int phoneColumn = 1;
+    private int relationColumn = 2;
+
+    ContactImporter(InputStream in) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        sniffFormat();
+    }
+
+    private void sniffFormat() throws IOException {
+        String first = reader.readLine();
+        while (first != null && first.trim().isEmpty()) first = reader.readLine();
+        if (first == null) return;
+
+        // Strip a UTF-8 BOM left by spreadsheet exports
+        if (first.charAt(0) == '\uFEFF') first = first.substring(1);
+
+        if (first.trim().toUpperCase(Locale.US).startsWith("BEGIN:VCARD")) {
+            vCard = true;
+            pendingLine = first;
+            return;
+        }
+
+        separator = detectSeparator(first);
+        List<String> fields = splitCsv(first, separator);
+        int name = indexOf(fields, "name");
+        int phone = indexOf(fields, "phone");
+        if (name >= 0 && phone >= 0) {
+            nameColumn = name;
+            phoneColumn = phone;
+            relationColumn = indexOf(fields, "relation");
+        } else {
+            pendingLine = first; // no header, data starts on the first line
+        }
+    }
+
+    @Override
+    public boolean next(DatabaseHelper.EmergencyContact into) throws IOException {
+        return vCard ? nextVCard(into) : nextCsv(into);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private boolean nextCsv(DatabaseHelper.EmergencyContact into) throws IOException {
+        String line;
+        while ((line = readLine()) != null) {
+            if (line.trim().isEmpty()) continue;
+
+            List<String> fields = splitCsv(line, separator);
+            into.name = field(fields, nameColumn);
+            into.phone = field(fields, phoneColumn);
+            String relation = field(fields, relationColumn);
+            into.relation = relation == null || relation.isEmpty() ? DEFAULT_RELATION : relation;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean nextVCard(DatabaseHelper.EmergencyContact into) throws IOException {
+        String name = null;
+        String phone = null;
+        boolean inCard = false;
+
+        String line;
+        while ((line = readUnfoldedLine()) != null) {
+            String upper = line.toUpperCase(Locale.US);
+            if (upper.startsWith("BEGIN:VCARD")) {
+                inCard = true;
+                name = null;
+                phone = null;
+            } else if (upper.startsWith("END:VCARD")) {
+                if (inCard && phone != null) {
+                    into.name = name != null ? name : phone;
+                    into.phone = phone;
+                    into.relation = DEFAULT_RELATION;
+                    return true;
+                }
+                inCard = false;
+            } else if (inCard) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                if (name == null && (upper.startsWith("FN:") || upper.startsWith("FN;"))) {
+                    name = line.substring(colon + 1).trim();
+                } else if (phone == null && (upper.startsWith("TEL:") || upper.startsWith("TEL;"))) {
+                    phone = line.substring(colon + 1).trim();
+                    if (phone.regionMatches(true, 0, "tel:", 0, 4)) phone = phone.substring(4);
+                }
+            }
+        }
+        return false;
+    }
+
+    // vCard folds long lines; a continuation line starts with a space or tab
+    private String readUnfoldedLine() throws IOException {
+        String line = readLine();
+        if (line == null) return null;
+
+        String next;
+        while ((next = reader.readLine()) != null
+                && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+            line = line + next.substring(1);
+        }
+        pendingLine = next;
+        return line;
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) return null;
+        return fields.get(index).trim();
+    }
+
+    private static int indexOf(List<String> fields, String column) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).trim().equalsIgnoreCase(column)) return i;
+        }
+        return -1;
+    }
+
+    // Spreadsheets in comma-decimal locales export with ';'. Decided once from the first
+    // line so a ';' inside a comma-separated field stays part of the field.
+    static char detectSeparator(String line) {
+        int commas = 0;
+        int semicolons = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == ',') {
+                commas++;
+            } else if (!quoted && c == ';') {
+                semicolons++;
+            }
+        }
+        return semicolons > commas ? ';' : ',';
+    }
+
+    // One CSV line with "quoted, fields" and "" escapes
+    static List<String> splitCsv(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
@@ -3,52 +3,160 @@ package com.emergency.alert;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Looper;
 
-import java.text.SimpleDateFormat;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "EmergencyAlert.db";
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 9;
 
     // User Table
-    private static final String TABLE_USER = "users";
-    private static final String COL_USER_ID = "id";
-    private static final String COL_USERNAME = "username";
-    private static final String COL_PASSWORD = "password";
-    private static final String COL_BG_COLOR = "bg_color";
-    private static final String COL_FONT_SIZE = "font_size";
+    static final String TABLE_USER = "users";
+    static final String COL_USER_ID = "id";
+    static final String COL_USERNAME = "username";
+    static final String COL_PASSWORD = "password";
+    static final String COL_BG_COLOR = "bg_color";
+    static final String COL_FONT_SIZE = "font_size";
 
     // Emergency Contacts Table
-    private static final String TABLE_CONTACTS = "emergency_contacts";
-    private static final String COL_CONTACT_ID = "id";
-    private static final String COL_CONTACT_NAME = "name";
-    private static final String COL_CONTACT_PHONE = "phone";
-    private static final String COL_CONTACT_RELATION = "relation";
+    static final String TABLE_CONTACTS = "emergency_contacts";
+    static final String COL_CONTACT_ID = "id";
+    static final String COL_CONTACT_NAME = "name";
+    static final String COL_CONTACT_PHONE = "phone";
+    static final String COL_CONTACT_RELATION = "relation";
+    static final String COL_CONTACT_PHONE_NORMALIZED = "phone_normalized"; // E.164, the duplicate key
 
     // Emergency Events Table
-    private static final String TABLE_EVENTS = "emergency_events";
-    private static final String COL_EVENT_ID = "id";
-    private static final String COL_EVENT_TYPE = "event_type";
-    private static final String COL_EVENT_DATE = "event_date";
-    private static final String COL_EVENT_LOCATION = "location";
-    private static final String COL_EVENT_NOTES = "notes";
+    static final String TABLE_EVENTS = "emergency_events";
+    static final String COL_EVENT_ID = "id";
+    static final String COL_EVENT_TYPE = "event_type";
+    static final String COL_EVENT_DATE = "event_date"; // v1 only: local "yyyy-MM-dd HH:mm:ss" text
+    static final String COL_EVENT_TIME = "event_time"; // epoch millis
+    static final String COL_EVENT_LOCATION = "location";
+    static final String COL_EVENT_NOTES = "notes";
 
     // Safety Tips Table
-    private static final String TABLE_TIPS = "safety_tips";
-    private static final String COL_TIP_ID = "id";
-    private static final String COL_TIP_CATEGORY = "category";
-    private static final String COL_TIP_TITLE = "title";
-    private static final String COL_TIP_CONTENT = "content";
+    static final String TABLE_TIPS = "safety_tips";
+    static final String COL_TIP_ID = "id";
+    static final String COL_TIP_CATEGORY = "category";
+    static final String COL_TIP_TITLE = "title";
+    static final String COL_TIP_CONTENT = "content";
+
+    // Location Track Table (simplified breadcrumb trail, written by LocationTrack)
+    static final String TABLE_TRACK = "location_track";
+    static final String COL_TRACK_ID = "id";
+    static final String COL_TRACK_TIME = "time"; // epoch millis of the fix
+    static final String COL_TRACK_LATITUDE = "latitude";
+    static final String COL_TRACK_LONGITUDE = "longitude";
+    static final String COL_TRACK_ACCURACY = "accuracy"; // meters
+
+    // Hot-path SQL, kept as constants so SQLite's per-connection statement cache can reuse them
+    // OR IGNORE: a number that is already saved returns -1 instead of adding a second row
+    private static final String SQL_INSERT_CONTACT = "INSERT OR IGNORE INTO " + TABLE_CONTACTS + " (" +
+            COL_CONTACT_NAME + ", " + COL_CONTACT_PHONE + ", " + COL_CONTACT_RELATION + ", " +
+            COL_CONTACT_PHONE_NORMALIZED + ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_EVENT = "INSERT INTO " + TABLE_EVENTS + " (" +
+            COL_EVENT_TYPE + ", " + COL_EVENT_TIME + ", " + COL_EVENT_LOCATION + ", " + COL_EVENT_NOTES +
+            ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_TRACK_POINT = "INSERT INTO " + TABLE_TRACK + " (" +
+            COL_TRACK_TIME + ", " + COL_TRACK_LATITUDE + ", " + COL_TRACK_LONGITUDE + ", " +
+            COL_TRACK_ACCURACY + ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_SELECT_CONTACTS = "SELECT " + COL_CONTACT_ID + ", " +
+            COL_CONTACT_NAME + ", " + COL_CONTACT_PHONE + ", " + COL_CONTACT_RELATION +
+            " FROM " + TABLE_CONTACTS;
+    private static final String SQL_SELECT_EVENTS = "SELECT " + COL_EVENT_ID + ", " +
+            COL_EVENT_TYPE + ", " + COL_EVENT_TIME + ", " + COL_EVENT_LOCATION + ", " + COL_EVENT_NOTES +
+            " FROM " + TABLE_EVENTS;
+    // Keyset predicate: the (event_time <= ?) term is the index range, the OR only breaks ties
+    private static final String EVENT_KEYSET_WHERE = COL_EVENT_TIME + " <= ? AND (" +
+            COL_EVENT_TIME + " < ? OR " + COL_EVENT_ID + " < ?)";
+    private static final String EVENT_ORDER = " ORDER BY " + COL_EVENT_TIME + " DESC, " + COL_EVENT_ID + " DESC";
+
+    private static volatile DatabaseHelper instance;
+
+    // Test mode: opening the database from the main thread throws instead of silently janking the UI
+    private static volatile boolean mainThreadAccessFatal;
+
+    // Compiled once per process and reused; guarded by their own monitors
+    private SQLiteStatement insertContactStatement;
+    private SQLiteStatement insertEventStatement;
+    private SQLiteStatement insertTrackPointStatement;
+
+    // Copy-on-write snapshot of emergency_contacts. Readers take it without locking;
+    // writers hold contactWriteLock across the disk write and the swap so the two never diverge.
+    private volatile List<EmergencyContact> contactSnapshot;
+    private final Object contactWriteLock = new Object();
+
+    private final PhoneNormalizer phoneNormalizer;
+
+    // One helper (and one connection pool) per process, shared by activities, services and receivers
+    public static DatabaseHelper getInstance(Context context) {
+        DatabaseHelper helper = instance;
+        if (helper == null) {
+            synchronized (DatabaseHelper.class) {
+                helper = instance;
+                if (helper == null) {
+                    helper = new DatabaseHelper(context.getApplicationContext());
+                    instance = helper;
+                }
+            }
+        }
+        return helper;
+    }
+
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    // Visible for tests: a null name opens a private in-memory database
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        phoneNormalizer = PhoneNormalizer.forDevice(context);
+        // WAL lets receivers and services write while the UI keeps reading
+        setWriteAheadLoggingEnabled(true);
+    }
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    static void setMainThreadAccessFatal(boolean fatal) {
+        mainThreadAccessFatal = fatal;
+    }
+
+    // Every query and write goes through one of these two, so this is the single disk-access choke point
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        checkNotMainThread();
+        return super.getReadableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        checkNotMainThread();
+        return super.getWritableDatabase();
+    }
+
+    private static void checkNotMainThread() {
+        if (mainThreadAccessFatal && Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Database accessed on the main thread; use AsyncDatabase");
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Only takes effect on a fresh file; older files are converted by EventRetention
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
     }
 
     @Override
@@ -67,17 +175,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_CONTACT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COL_CONTACT_NAME + " TEXT, " +
                 COL_CONTACT_PHONE + " TEXT, " +
-                COL_CONTACT_RELATION + " TEXT)";
+                COL_CONTACT_RELATION + " TEXT, " +
+                COL_CONTACT_PHONE_NORMALIZED + " TEXT)";
         db.execSQL(createContactsTable);
+        createContactIndexes(db);
 
         // Create Emergency Events Table
         String createEventsTable = "CREATE TABLE " + TABLE_EVENTS + " (" +
                 COL_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COL_EVENT_TYPE + " TEXT, " +
-                COL_EVENT_DATE + " TEXT, " +
+                COL_EVENT_TIME + " INTEGER NOT NULL, " +
                 COL_EVENT_LOCATION + " TEXT, " +
                 COL_EVENT_NOTES + " TEXT)";
         db.execSQL(createEventsTable);
+        createEventIndexes(db);
 
         // Create Safety Tips Table
         String createTipsTable = "CREATE TABLE " + TABLE_TIPS + " (" +
@@ -86,18 +197,52 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_TIP_TITLE + " TEXT, " +
                 COL_TIP_CONTENT + " TEXT)";
         db.execSQL(createTipsTable);
+        SafetyTipSearch.createSearchIndex(db);
 
         // Insert default safety tips
         insertDefaultSafetyTips(db);
+
+        EventRetention.createRollupTable(db);
+        SchemaMigrations.createBackfillTable(db);
+        MessagingEngine.createOutboxTable(db);
+        createTrackTable(db);
+        ReverseGeocoder.createCacheTable(db);
+    }
+
+    static void createTrackTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_TRACK + " (" +
+                COL_TRACK_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_TRACK_TIME + " INTEGER NOT NULL, " +
+                COL_TRACK_LATITUDE + " REAL NOT NULL, " +
+                COL_TRACK_LONGITUDE + " REAL NOT NULL, " +
+                COL_TRACK_ACCURACY + " REAL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_track_time ON " + TABLE_TRACK +
+                " (" + COL_TRACK_TIME + ")");
+    }
+
+    static void createEventIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_time ON " + TABLE_EVENTS +
+                " (" + COL_EVENT_TIME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_type_time ON " + TABLE_EVENTS +
+                " (" + COL_EVENT_TYPE + ", " + COL_EVENT_TIME + ")");
+    }
+
+    // NULLs never collide, so contacts without a usable number are still accepted
+    static void createContactIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_contacts_phone_normalized ON " + TABLE_CONTACTS +
+                " (" + COL_CONTACT_PHONE_NORMALIZED + ")");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONTACTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TIPS);
-        onCreate(db);
+        // In place, never drops user data; heavy work is deferred to background backfills
+        SchemaMigrations.upgrade(phoneNormalizer, db, oldVersion, newVersion);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        SchemaMigrations.runPendingBackfills(this);
     }
 
     // User Methods
@@ -149,76 +294,344 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     // Emergency Contacts Methods
+
+    // Returns the new row id, or -1 if a contact with the same normalized number exists
     public long addEmergencyContact(String name, String phone, String relation) {
+        synchronized (contactWriteLock) {
+            long id;
+            SQLiteStatement statement = getInsertContactStatement();
+            synchronized (statement) {
+                id = insertContact(statement, name, phone, relation);
+            }
+
+            List<EmergencyContact> snapshot = contactSnapshot;
+            if (id != -1 && snapshot != null) {
+                EmergencyContact contact = new EmergencyContact();
+                contact.id = (int) id;
+                contact.name = name;
+                contact.phone = phone;
+                contact.relation = relation;
+
+                List<EmergencyContact> updated = new ArrayList<>(snapshot.size() + 1);
+                updated.addAll(snapshot);
+                updated.add(contact);
+                contactSnapshot = Collections.unmodifiableList(updated);
+            }
+            return id;
+        }
+    }
+
+    // Streams a contact file into the table in one transaction, skipping numbers that are
+    // already saved (or repeated within the file). Runs on the caller's thread.
+    public ImportResult importEmergencyContacts(ContactSource source) throws IOException {
+        ImportResult result = new ImportResult();
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_CONTACT_NAME, name);
-        values.put(COL_CONTACT_PHONE, phone);
-        values.put(COL_CONTACT_RELATION, relation);
 
-        return db.insert(TABLE_CONTACTS, null, values);
+        synchronized (contactWriteLock) {
+            SQLiteStatement statement = getInsertContactStatement();
+            synchronized (statement) {
+                EmergencyContact row = new EmergencyContact();
+                db.beginTransactionNonExclusive();
+                try {
+                    while (source.next(row)) {
+                        if (row.name == null || row.name.isEmpty() || phoneNormalizer.normalize(row.phone) == null) {
+                            result.invalid++;
+                        } else if (insertContact(statement, row.name, row.phone, row.relation) == -1) {
+                            result.duplicates++;
+                        } else {
+                            result.imported++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                    source.close();
+                }
+            }
+
+            // Re-read once rather than copying the snapshot per row
+            if (result.imported > 0 && contactSnapshot != null) {
+                contactSnapshot = Collections.unmodifiableList(loadEmergencyContacts());
+            }
+        }
+        return result;
+    }
+
+    // Caller holds the statement's monitor
+    private long insertContact(SQLiteStatement statement, String name, String phone, String relation) {
+        bindNullable(statement, 1, name);
+        bindNullable(statement, 2, phone);
+        bindNullable(statement, 3, relation);
+        bindNullable(statement, 4, phoneNormalizer.normalize(phone));
+        return statement.executeInsert();
     }
 
+    // Served from the in-memory snapshot; only the first call after process start reads disk.
+    // The returned list and its contacts are shared, treat them as read-only.
     public List<EmergencyContact> getAllEmergencyContacts() {
+        List<EmergencyContact> snapshot = contactSnapshot;
+        if (snapshot == null) {
+            synchronized (contactWriteLock) {
+                snapshot = contactSnapshot;
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableList(loadEmergencyContacts());
+                    contactSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    // The in-memory snapshot if it is loaded, else null; never touches disk
+    public List<EmergencyContact> peekEmergencyContacts() {
+        return contactSnapshot;
+    }
+
+    public void warmContactCache() {
+        getAllEmergencyContacts();
+    }
+
+    private List<EmergencyContact> loadEmergencyContacts() {
         List<EmergencyContact> contacts = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_CONTACTS, null, null, null, null, null, null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                EmergencyContact contact = new EmergencyContact();
-                contact.id = cursor.getInt(cursor.getColumnIndexOrThrow(COL_CONTACT_ID));
-                contact.name = cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTACT_NAME));
-                contact.phone = cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTACT_PHONE));
-                contact.relation = cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTACT_RELATION));
-                contacts.add(contact);
-            } while (cursor.moveToNext());
+        Cursor cursor = db.rawQuery(SQL_SELECT_CONTACTS, null);
+        try {
+            ContactMapper mapper = new ContactMapper(cursor);
+            while (cursor.moveToNext()) {
+                contacts.add(mapper.map(cursor, new EmergencyContact()));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
         return contacts;
     }
 
+    // Streams contacts through one reused instance; the consumer must not keep a reference to it
+    public void forEachEmergencyContact(Consumer<EmergencyContact> consumer) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_SELECT_CONTACTS, null);
+        try {
+            ContactMapper mapper = new ContactMapper(cursor);
+            EmergencyContact row = new EmergencyContact();
+            while (cursor.moveToNext()) {
+                consumer.accept(mapper.map(cursor, row));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public long getEmergencyContactCount() {
+        List<EmergencyContact> snapshot = contactSnapshot;
+        if (snapshot != null) return snapshot.size();
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_CONTACTS);
+    }
+
     public boolean deleteEmergencyContact(int id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        return db.delete(TABLE_CONTACTS, COL_CONTACT_ID + "=?", new String[]{String.valueOf(id)}) > 0;
+        synchronized (contactWriteLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            boolean deleted = db.delete(TABLE_CONTACTS, COL_CONTACT_ID + "=?",
+                    new String[]{String.valueOf(id)}) > 0;
+
+            List<EmergencyContact> snapshot = contactSnapshot;
+            if (deleted && snapshot != null) {
+                List<EmergencyContact> updated = new ArrayList<>(snapshot.size());
+                for (EmergencyContact contact : snapshot) {
+                    if (contact.id != id) updated.add(contact);
+                }
+                contactSnapshot = Collections.unmodifiableList(updated);
+            }
+            return deleted;
+        }
     }
 
     // Emergency Events Methods
     public long addEmergencyEvent(String eventType, String location, String notes) {
+        SQLiteStatement statement = getInsertEventStatement();
+        synchronized (statement) {
+            bindNullable(statement, 1, eventType);
+            statement.bindLong(2, System.currentTimeMillis());
+            bindNullable(statement, 3, location);
+            bindNullable(statement, 4, notes);
+            return statement.executeInsert();
+        }
+    }
+
+    // Inserts a whole batch in one transaction (one journal commit instead of one per row)
+    public void addEmergencyEvents(List<PendingEvent> batch) {
+        if (batch.isEmpty()) return;
+
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        SQLiteStatement statement = getInsertEventStatement();
+        synchronized (statement) {
+            db.beginTransactionNonExclusive();
+            try {
+                for (PendingEvent event : batch) {
+                    bindNullable(statement, 1, event.eventType);
+                    statement.bindLong(2, event.timestamp);
+                    bindNullable(statement, 3, event.location);
+                    bindNullable(statement, 4, event.notes);
+                    statement.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        String currentDate = sdf.format(new Date());
+    public List<EmergencyEvent> getAllEmergencyEvents() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return readEvents(db.rawQuery(SQL_SELECT_EVENTS + EVENT_ORDER, null));
+    }
 
-        values.put(COL_EVENT_TYPE, eventType);
-        values.put(COL_EVENT_DATE, currentDate);
-        values.put(COL_EVENT_LOCATION, location);
-        values.put(COL_EVENT_NOTES, notes);
+    // Newest events strictly older than beforeTime, optionally of one type
+    public List<EmergencyEvent> getEmergencyEventsBefore(long beforeTime, String eventType, int limit) {
+        return getEmergencyEventsBefore(beforeTime, 0, eventType, limit);
+    }
 
-        return db.insert(TABLE_EVENTS, null, values);
+    // Keyset page: pass the eventTime and id of the last row of the previous page
+    // (Long.MAX_VALUE / Integer.MAX_VALUE for the first page). Rows sharing the
+    // boundary timestamp are continued by id, so no row is skipped or repeated.
+    public List<EmergencyEvent> getEmergencyEventsBefore(long beforeTime, int beforeId,
+                                                         String eventType, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String time = String.valueOf(beforeTime);
+        String id = String.valueOf(beforeId);
+
+        Cursor cursor;
+        if (eventType == null) {
+            cursor = db.rawQuery(SQL_SELECT_EVENTS + " WHERE " + EVENT_KEYSET_WHERE + EVENT_ORDER + " LIMIT ?",
+                    new String[]{time, time, id, String.valueOf(limit)});
+        } else {
+            cursor = db.rawQuery(SQL_SELECT_EVENTS + " WHERE " + COL_EVENT_TYPE + " = ? AND " +
+                            EVENT_KEYSET_WHERE + EVENT_ORDER + " LIMIT ?",
+                    new String[]{eventType, time, time, id, String.valueOf(limit)});
+        }
+        return readEvents(cursor);
     }
 
-    public List<EmergencyEvent> getAllEmergencyEvents() {
-        List<EmergencyEvent> events = new ArrayList<>();
+    // Streams matching events newest first through one reused instance;
+    // the consumer must not keep a reference to it
+    public void forEachEvent(EventFilter filter, Consumer<EmergencyEvent> consumer) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_EVENTS, null, null, null, null, null, COL_EVENT_DATE + " DESC");
+        String sql = SQL_SELECT_EVENTS + " WHERE " + filter.where() + EVENT_ORDER;
+        if (filter.limit > 0) sql += " LIMIT " + filter.limit;
+
+        Cursor cursor = db.rawQuery(sql, filter.args());
+        try {
+            EventMapper mapper = new EventMapper(cursor);
+            EmergencyEvent row = new EmergencyEvent();
+            while (cursor.moveToNext()) {
+                consumer.accept(mapper.map(cursor, row));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
 
-        if (cursor.moveToFirst()) {
-            do {
-                EmergencyEvent event = new EmergencyEvent();
-                event.id = cursor.getInt(cursor.getColumnIndexOrThrow(COL_EVENT_ID));
-                event.eventType = cursor.getString(cursor.getColumnIndexOrThrow(COL_EVENT_TYPE));
-                event.eventDate = cursor.getString(cursor.getColumnIndexOrThrow(COL_EVENT_DATE));
-                event.location = cursor.getString(cursor.getColumnIndexOrThrow(COL_EVENT_LOCATION));
-                event.notes = cursor.getString(cursor.getColumnIndexOrThrow(COL_EVENT_NOTES));
-                events.add(event);
-            } while (cursor.moveToNext());
+    public long getEmergencyEventCount(EventFilter filter) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_EVENTS, filter.where(), filter.args());
+    }
+
+    private List<EmergencyEvent> readEvents(Cursor cursor) {
+        List<EmergencyEvent> events = new ArrayList<>();
+        try {
+            EventMapper mapper = new EventMapper(cursor);
+            while (cursor.moveToNext()) {
+                events.add(mapper.map(cursor, new EmergencyEvent()));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
         return events;
     }
 
+    // Location Track Methods
+
+    // Stores points[indexes[0..count)] of the parallel arrays in one transaction
+    public void addTrackPoints(long[] time, double[] latitude, double[] longitude, float[] accuracy,
+                               int[] indexes, int count) {
+        if (count == 0) return;
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = getInsertTrackPointStatement();
+        synchronized (statement) {
+            db.beginTransactionNonExclusive();
+            try {
+                for (int i = 0; i < count; i++) {
+                    int p = indexes[i];
+                    statement.bindLong(1, time[p]);
+                    statement.bindDouble(2, latitude[p]);
+                    statement.bindDouble(3, longitude[p]);
+                    statement.bindDouble(4, accuracy[p]);
+                    statement.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    // Points with fromTime <= time < toTime, oldest first
+    public List<TrackPoint> getTrackPoints(long fromTime, long toTime) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<TrackPoint> points = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + COL_TRACK_TIME + ", " + COL_TRACK_LATITUDE + ", " +
+                        COL_TRACK_LONGITUDE + ", " + COL_TRACK_ACCURACY + " FROM " + TABLE_TRACK +
+                        " WHERE " + COL_TRACK_TIME + " >= ? AND " + COL_TRACK_TIME + " < ?" +
+                        " ORDER BY " + COL_TRACK_TIME,
+                new String[]{String.valueOf(fromTime), String.valueOf(toTime)});
+        try {
+            while (cursor.moveToNext()) {
+                TrackPoint point = new TrackPoint();
+                point.time = cursor.getLong(0);
+                point.latitude = cursor.getDouble(1);
+                point.longitude = cursor.getDouble(2);
+                point.accuracy = cursor.getFloat(3);
+                points.add(point);
+            }
+        } finally {
+            cursor.close();
+        }
+        return points;
+    }
+
+    public long getTrackPointCount() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_TRACK);
+    }
+
+    // Compiled Statements
+    private synchronized SQLiteStatement getInsertContactStatement() {
+        if (insertContactStatement == null) {
+            insertContactStatement = getWritableDatabase().compileStatement(SQL_INSERT_CONTACT);
+        }
+        return insertContactStatement;
+    }
+
+    private synchronized SQLiteStatement getInsertEventStatement() {
+        if (insertEventStatement == null) {
+            insertEventStatement = getWritableDatabase().compileStatement(SQL_INSERT_EVENT);
+        }
+        return insertEventStatement;
+    }
+
+    private synchronized SQLiteStatement getInsertTrackPointStatement() {
+        if (insertTrackPointStatement == null) {
+            insertTrackPointStatement = getWritableDatabase().compileStatement(SQL_INSERT_TRACK_POINT);
+        }
+        return insertTrackPointStatement;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
     // Safety Tips Methods
     private void insertDefaultSafetyTips(SQLiteDatabase db) {
         insertSafetyTip(db, "Medical", "CPR Steps",
@@ -249,21 +662,148 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         List<SafetyTip> tips = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_TIPS, null, null, null, null, null, null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                SafetyTip tip = new SafetyTip();
-                tip.id = cursor.getInt(cursor.getColumnIndexOrThrow(COL_TIP_ID));
-                tip.category = cursor.getString(cursor.getColumnIndexOrThrow(COL_TIP_CATEGORY));
-                tip.title = cursor.getString(cursor.getColumnIndexOrThrow(COL_TIP_TITLE));
-                tip.content = cursor.getString(cursor.getColumnIndexOrThrow(COL_TIP_CONTENT));
-                tips.add(tip);
-            } while (cursor.moveToNext());
+        try {
+            TipMapper mapper = new TipMapper(cursor);
+            while (cursor.moveToNext()) {
+                tips.add(mapper.map(cursor, new SafetyTip()));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
         return tips;
     }
 
+    // Streams tips through one reused instance; the consumer must not keep a reference to it
+    public void forEachSafetyTip(Consumer<SafetyTip> consumer) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_TIPS, null, null, null, null, null, null);
+        try {
+            TipMapper mapper = new TipMapper(cursor);
+            SafetyTip row = new SafetyTip();
+            while (cursor.moveToNext()) {
+                consumer.accept(mapper.map(cursor, row));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Ranked prefix search over tip titles and content; category is an optional facet filter
+    public List<SafetyTip> searchSafetyTips(String text, String category, int limit) {
+        String matchQuery = SafetyTipSearch.toMatchQuery(text);
+        if (matchQuery == null) return new ArrayList<>();
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<Integer> ids = SafetyTipSearch.rankedIds(db, matchQuery, category, limit);
+        if (ids.isEmpty()) return new ArrayList<>();
+
+        StringBuilder in = new StringBuilder();
+        String[] args = new String[ids.size()];
+        for (int i = 0; i < args.length; i++) {
+            in.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(ids.get(i));
+        }
+
+        Map<Integer, SafetyTip> byId = new HashMap<>(ids.size() * 2);
+        Cursor cursor = db.query(TABLE_TIPS, null, COL_TIP_ID + " IN (" + in + ")", args, null, null, null);
+        try {
+            TipMapper mapper = new TipMapper(cursor);
+            while (cursor.moveToNext()) {
+                SafetyTip tip = mapper.map(cursor, new SafetyTip());
+                byId.put(tip.id, tip);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<SafetyTip> ranked = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            SafetyTip tip = byId.get(id);
+            if (tip != null) ranked.add(tip);
+        }
+        return ranked;
+    }
+
+    // Category -> number of tips, read from the category index
+    public Map<String, Integer> getSafetyTipCategoryCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_TIP_CATEGORY + ", COUNT(*) FROM " + TABLE_TIPS +
+                " GROUP BY " + COL_TIP_CATEGORY + " ORDER BY " + COL_TIP_CATEGORY, null);
+        try {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getString(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
+    public long getSafetyTipCount() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_TIPS);
+    }
+
+    // Row Mappers: column indices are resolved once per cursor instead of once per row
+    private static final class ContactMapper {
+        private final int id, name, phone, relation;
+
+        ContactMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COL_CONTACT_ID);
+            name = cursor.getColumnIndexOrThrow(COL_CONTACT_NAME);
+            phone = cursor.getColumnIndexOrThrow(COL_CONTACT_PHONE);
+            relation = cursor.getColumnIndexOrThrow(COL_CONTACT_RELATION);
+        }
+
+        EmergencyContact map(Cursor cursor, EmergencyContact contact) {
+            contact.id = cursor.getInt(id);
+            contact.name = cursor.getString(name);
+            contact.phone = cursor.getString(phone);
+            contact.relation = cursor.getString(relation);
+            return contact;
+        }
+    }
+
+    private static final class EventMapper {
+        private final int id, type, time, location, notes;
+
+        EventMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COL_EVENT_ID);
+            type = cursor.getColumnIndexOrThrow(COL_EVENT_TYPE);
+            time = cursor.getColumnIndexOrThrow(COL_EVENT_TIME);
+            location = cursor.getColumnIndexOrThrow(COL_EVENT_LOCATION);
+            notes = cursor.getColumnIndexOrThrow(COL_EVENT_NOTES);
+        }
+
+        EmergencyEvent map(Cursor cursor, EmergencyEvent event) {
+            event.id = cursor.getInt(id);
+            event.eventType = cursor.getString(type);
+            event.eventTime = cursor.getLong(time);
+            event.location = cursor.getString(location);
+            event.notes = cursor.getString(notes);
+            return event;
+        }
+    }
+
+    private static final class TipMapper {
+        private final int id, category, title, content;
+
+        TipMapper(Cursor cursor) {
+            id = cursor.getColumnIndexOrThrow(COL_TIP_ID);
+            category = cursor.getColumnIndexOrThrow(COL_TIP_CATEGORY);
+            title = cursor.getColumnIndexOrThrow(COL_TIP_TITLE);
+            content = cursor.getColumnIndexOrThrow(COL_TIP_CONTENT);
+        }
+
+        SafetyTip map(Cursor cursor, SafetyTip tip) {
+            tip.id = cursor.getInt(id);
+            tip.category = cursor.getString(category);
+            tip.title = cursor.getString(title);
+            tip.content = cursor.getString(content);
+            return tip;
+        }
+    }
+
     // Data Models
     public static class UserProfile {
         public String username;
@@ -278,14 +818,76 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         public String relation;
     }
 
+    // Pull-based contact stream for importEmergencyContacts; next() fills the given
+    // instance and returns false at the end
+    public interface ContactSource extends Closeable {
+        boolean next(EmergencyContact into) throws IOException;
+    }
+
+    public static class ImportResult {
+        public int imported;
+        public int duplicates;
+        public int invalid;
+    }
+
     public static class EmergencyEvent {
         public int id;
         public String eventType;
-        public String eventDate;
+        public long eventTime;
         public String location;
         public String notes;
     }
 
+    // Event query filter; translated to SQL so rows are filtered by the indexes, not in memory
+    public static class EventFilter {
+        public String eventType;            // null = any type
+        public long fromTime = 0;           // inclusive, epoch millis
+        public long toTime = Long.MAX_VALUE; // exclusive, epoch millis
+        public int limit = 0;               // 0 = no limit
+
+        public static EventFilter all() {
+            return new EventFilter();
+        }
+
+        public static EventFilter ofType(String eventType) {
+            EventFilter filter = new EventFilter();
+            filter.eventType = eventType;
+            return filter;
+        }
+
+        String where() {
+            String where = COL_EVENT_TIME + " >= ? AND " + COL_EVENT_TIME + " < ?";
+            return eventType == null ? where : COL_EVENT_TYPE + " = ? AND " + where;
+        }
+
+        String[] args() {
+            String from = String.valueOf(fromTime);
+            String to = String.valueOf(toTime);
+            return eventType == null ? new String[]{from, to} : new String[]{eventType, from, to};
+        }
+    }
+
+    public static class PendingEvent {
+        public final String eventType;
+        public final String location;
+        public final String notes;
+        public final long timestamp;
+
+        public PendingEvent(String eventType, String location, String notes, long timestamp) {
+            this.eventType = eventType;
+            this.location = location;
+            this.notes = notes;
+            this.timestamp = timestamp;
+        }
+    }
+
+    public static class TrackPoint {
+        public long time;
+        public double latitude;
+        public double longitude;
+        public float accuracy;
+    }
+
     public static class SafetyTip {
         public int id;
         public String category;
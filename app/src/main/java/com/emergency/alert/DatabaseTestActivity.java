@@ -7,20 +7,27 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.List;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 
 public class DatabaseTestActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
+    private AsyncDatabase asyncDb;
     private TextView tvResults;
     private Button btnRefresh, btnAddTestData;
 
+    private static final int EVENT_PAGE_SIZE = 50;
+    private static final int TRACK_APPEND_SAMPLES = 100_000;
+    private static final int ZONE_LOOKUP_SAMPLES = 20_000;
+    private static final int[] ZONE_COUNTS = {1_000, 10_000, 50_000};
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_database_test);
 
-        dbHelper = new DatabaseHelper(this);
+        asyncDb = AsyncDatabase.getInstance(this);
 
         tvResults = findViewById(R.id.tvResults);
         btnRefresh = findViewById(R.id.btnRefresh);
@@ -33,7 +40,17 @@ public class DatabaseTestActivity extends AppCompatActivity {
     }
 
     private void displayDatabaseStatus() {
+        LocationTrack track = LocationTrack.getInstance(this);
+        ZoneMonitor zones = ZoneMonitor.getInstance(this);
+        AlertNotifier alerts = AlertNotifier.getInstance(this);
+        ReverseGeocoder geocoder = ReverseGeocoder.getInstance(this);
+        asyncDb.submit(this, db -> buildStatus(db, track, zones, alerts, geocoder), tvResults::setText);
+    }
 
+    // Runs on a database thread
+    private static String buildStatus(DatabaseHelper dbHelper, LocationTrack track, ZoneMonitor zones,
+                                      AlertNotifier alerts, ReverseGeocoder geocoder) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
         StringBuilder sb = new StringBuilder();
 
         sb.append("DATABASE STATUS\n");
@@ -42,71 +59,121 @@ public class DatabaseTestActivity extends AppCompatActivity {
         sb.append("Package       : com.emergency.alert\n\n");
 
         // Safety Tips
-        List<DatabaseHelper.SafetyTip> tips = dbHelper.getAllSafetyTips();
         sb.append("SAFETY TIPS TABLE\n");
-        sb.append("Records: ").append(tips.size()).append("\n\n");
+        sb.append("Records: ").append(dbHelper.getSafetyTipCount()).append("\n\n");
 
-        for (DatabaseHelper.SafetyTip tip : tips) {
+        dbHelper.forEachSafetyTip(tip -> {
             sb.append("ID       : ").append(tip.id).append("\n");
             sb.append("Title    : ").append(tip.title).append("\n");
             sb.append("Category : ").append(tip.category).append("\n\n");
-        }
+        });
 
         // Contacts
-        List<DatabaseHelper.EmergencyContact> contacts =
-                dbHelper.getAllEmergencyContacts();
-
         sb.append("--------------------------------\n");
         sb.append("EMERGENCY CONTACTS TABLE\n");
-        sb.append("Records: ").append(contacts.size()).append("\n\n");
+        sb.append("Records: ").append(dbHelper.getEmergencyContactCount()).append("\n\n");
 
-        for (DatabaseHelper.EmergencyContact c : contacts) {
+        dbHelper.forEachEmergencyContact(c -> {
             sb.append("ID       : ").append(c.id).append("\n");
             sb.append("Name     : ").append(c.name).append("\n");
             sb.append("Phone    : ").append(c.phone).append("\n");
             sb.append("Relation : ").append(c.relation).append("\n\n");
-        }
+        });
 
-        // Events
-        List<DatabaseHelper.EmergencyEvent> events =
-                dbHelper.getAllEmergencyEvents();
+        // Events (latest page only; the table can hold 100k+ rows)
+        DatabaseHelper.EventFilter latest = DatabaseHelper.EventFilter.all();
+        latest.limit = EVENT_PAGE_SIZE;
 
         sb.append("--------------------------------\n");
         sb.append("EMERGENCY EVENTS TABLE\n");
-        sb.append("Records: ").append(events.size()).append("\n\n");
+        sb.append("Records: ").append(dbHelper.getEmergencyEventCount(DatabaseHelper.EventFilter.all()))
+                .append(" (showing latest ").append(EVENT_PAGE_SIZE).append(")\n\n");
 
-        for (DatabaseHelper.EmergencyEvent e : events) {
+        Date date = new Date();
+        dbHelper.forEachEvent(latest, e -> {
+            date.setTime(e.eventTime);
             sb.append("ID       : ").append(e.id).append("\n");
             sb.append("Type     : ").append(e.eventType).append("\n");
-            sb.append("Date     : ").append(e.eventDate).append("\n");
+            sb.append("Date     : ").append(dateFormat.format(date)).append("\n");
             sb.append("Location : ").append(e.location).append("\n\n");
+        });
+
+        // Phase latencies, accumulated across runs
+        sb.append("--------------------------------\n");
+        sb.append("PHASE LATENCY (ms, p50 / p95 / p99)\n\n");
+        for (PhaseTracer.Phase phase : PhaseTracer.Phase.values()) {
+            long count = PhaseTracer.count(phase);
+            if (count == 0) continue;
+            sb.append(phase.label).append(" (").append(count).append(")\n");
+            sb.append(String.format(Locale.US, "  %.2f / %.2f / %.2f\n",
+                    PhaseTracer.percentileMs(phase, 50),
+                    PhaseTracer.percentileMs(phase, 95),
+                    PhaseTracer.percentileMs(phase, 99)));
+        }
+        sb.append(String.format(Locale.US, "Tracing %s\n\n", PhaseTracer.isEnabled() ? "on" : "off"));
+
+        // Breadcrumb trail: raw fixes in, simplified points stored
+        sb.append("--------------------------------\n");
+        sb.append("LOCATION TRACK\n");
+        sb.append("Stored points : ").append(dbHelper.getTrackPointCount()).append("\n");
+        long appended = track.appendedCount();
+        if (appended > 0) {
+            sb.append(String.format(Locale.US, "This run      : %d raw -> %d stored (%.0f%%), %d dropped\n",
+                    appended, track.storedCount(), 100.0 * track.storedCount() / appended, track.droppedCount()));
         }
+        if (track.lastFlushMs() >= 0) sb.append("Last flush    : ").append(track.lastFlushMs()).append(" ms\n");
+        sb.append(String.format(Locale.US, "Append cost   : %.0f ns/fix\n\n",
+                LocationTrack.measureAppendNanos(TRACK_APPEND_SAMPLES)));
+
+        // Zone engine: lookup latency against a synthetic index of each size
+        sb.append("--------------------------------\n");
+        sb.append("RISK ZONES\n");
+        sb.append("Loaded zones  : ").append(zones.index().size()).append("\n");
+        if (zones.datasetLoadMs() >= 0) sb.append("Dataset map   : ").append(zones.datasetLoadMs()).append(" ms\n");
+        sb.append("Transitions   : ").append(zones.rawTransitions()).append(" raw, ")
+                .append(zones.suppressedTransitions()).append(" suppressed\n");
+        sb.append("Zone alerts   : ").append(alerts.receivedCount()).append(" in -> ")
+                .append(alerts.postedCount()).append(" notification update(s)\n");
+        for (int count : ZONE_COUNTS) {
+            sb.append(String.format(Locale.US, "Lookup @%6d : %.0f ns/fix\n",
+                    count, ZoneIndex.measureLookupNanos(count, ZONE_LOOKUP_SAMPLES)));
+        }
+        sb.append("\n");
+
+        sb.append("--------------------------------\n");
+        sb.append("GEOCODE CACHE\n");
+        sb.append("Memory hits   : ").append(geocoder.memoryHits()).append("\n");
+        sb.append("Disk hits     : ").append(geocoder.diskHits()).append("\n");
+        sb.append("Backend calls : ").append(geocoder.backendCalls()).append("\n");
+        sb.append("Joined        : ").append(geocoder.joinedLookups()).append("\n\n");
 
         sb.append("================================\n");
         sb.append("DATABASE CONNECTION: OK\n");
 
-        tvResults.setText(sb.toString());
+        return sb.toString();
     }
 
     private void insertTestData() {
-
-        long contactId = dbHelper.addEmergencyContact(
-                "Database Test",
-                "9999999999",
-                "Test User"
-        );
-
-        long eventId = dbHelper.addEmergencyEvent(
-                "Test Event",
-                "Unknown",
-                "Test record insertion"
-        );
-
-        Toast.makeText(this,
-                "Test records inserted\nContact ID: " + contactId +
-                        "\nEvent ID: " + eventId,
-                Toast.LENGTH_LONG).show();
-
-        displayDatabaseStatus();
+        asyncDb.submit(this, db -> {
+            long contactId = db.addEmergencyContact(
+                    "Database Test",
+                    "9999999999",
+                    "Test User"
+            );
+
+            long eventId = db.addEmergencyEvent(
+                    "Test Event",
+                    "Unknown",
+                    "Test record insertion"
+            );
+            return new long[]{contactId, eventId};
+        }, ids -> {
+            Toast.makeText(this,
+                    "Test records inserted\nContact ID: " + ids[0] +
+                            "\nEvent ID: " + ids[1],
+                    Toast.LENGTH_LONG).show();
+
+            displayDatabaseStatus();
+        });
     }
 }
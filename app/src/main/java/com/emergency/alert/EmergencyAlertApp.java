@@ -0,0 +1,30 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+public class EmergencyAlertApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Debug builds log any disk I/O left on the UI thread, and crash on database access there
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+            DatabaseHelper.setMainThreadAccessFatal(true);
+        }
+
+        PhaseTracer.init(this);
+
+        // Finish any SOS messages a previous process left in the outbox
+        MessagingEngine.getInstance(this).resume();
+
+        ZoneMonitor.getInstance(this).loadDatasetAsync();
+    }
+}
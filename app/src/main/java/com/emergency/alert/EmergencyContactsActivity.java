@@ -1,30 +1,44 @@
 package com.emergency.alert;
 
+import android.net.Uri;
 import android.os.Bundle;
 import android.widget.*;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.util.*;
 
 public class EmergencyContactsActivity extends AppCompatActivity {
 
     private EditText etContactName, etContactPhone, etContactRelation;
-    private Button btnAddContact;
+    private Button btnAddContact, btnImportContacts;
     private ListView lvContacts;
 
-    private DatabaseHelper dbHelper;
+    private AsyncDatabase asyncDb;
     private List<DatabaseHelper.EmergencyContact> contactsList = new ArrayList<>();
     private ArrayAdapter<String> adapter;
     private List<String> displayList = new ArrayList<>();
 
+    private ActivityResultLauncher<String[]> importLauncher;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_emergency_contacts);
 
-        dbHelper = new DatabaseHelper(this);
+        asyncDb = AsyncDatabase.getInstance(this);
+
+        importLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    if (uri != null) importContacts(uri);
+                });
+
         initializeViews();
         setupListeners();
     }
@@ -40,6 +54,7 @@ public class EmergencyContactsActivity extends AppCompatActivity {
         etContactPhone = findViewById(R.id.et_contact_phone);
         etContactRelation = findViewById(R.id.et_contact_relation);
         btnAddContact = findViewById(R.id.btn_add_contact);
+        btnImportContacts = findViewById(R.id.btn_import_contacts);
         lvContacts = findViewById(R.id.lv_contacts);
 
         adapter = new ArrayAdapter<>(this,
@@ -48,12 +63,22 @@ public class EmergencyContactsActivity extends AppCompatActivity {
     }
 
     private void loadContacts() {
-        try {
-            contactsList = dbHelper.getAllEmergencyContacts();
-        } catch (Exception e) {
-            contactsList = new ArrayList<>();
-        }
+        asyncDb.submit(this, DatabaseHelper::getAllEmergencyContacts,
+                new AsyncDatabase.Callback<List<DatabaseHelper.EmergencyContact>>() {
+                    @Override
+                    public void onResult(List<DatabaseHelper.EmergencyContact> contacts) {
+                        showContacts(contacts);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        showContacts(new ArrayList<>());
+                    }
+                });
+    }
 
+    private void showContacts(List<DatabaseHelper.EmergencyContact> contacts) {
+        contactsList = contacts;
         displayList.clear();
 
         if (contactsList.isEmpty()) {
@@ -68,6 +93,8 @@ public class EmergencyContactsActivity extends AppCompatActivity {
 
     private void setupListeners() {
         btnAddContact.setOnClickListener(v -> addContact());
+        btnImportContacts.setOnClickListener(v -> importLauncher.launch(new String[]{
+                "text/x-vcard", "text/vcard", "text/csv", "text/comma-separated-values", "text/plain"}));
 
         lvContacts.setOnItemLongClickListener((parent, view, pos, id) -> {
             if (!contactsList.isEmpty()) showDeleteDialog(pos);
@@ -85,13 +112,42 @@ public class EmergencyContactsActivity extends AppCompatActivity {
             return;
         }
 
-        long res = dbHelper.addEmergencyContact(name, phone, relation);
-        if (res != -1) {
-            etContactName.setText("");
-            etContactPhone.setText("");
-            etContactRelation.setText("");
-            loadContacts();
-        }
+        asyncDb.submit(this, db -> db.addEmergencyContact(name, phone, relation), res -> {
+            if (res != -1) {
+                etContactName.setText("");
+                etContactPhone.setText("");
+                etContactRelation.setText("");
+                loadContacts();
+            } else {
+                Toast.makeText(this, "Contact already exists", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void importContacts(Uri uri) {
+        btnImportContacts.setEnabled(false);
+
+        asyncDb.submit(this, db -> {
+            InputStream in = getContentResolver().openInputStream(uri);
+            if (in == null) throw new FileNotFoundException(uri.toString());
+            return db.importEmergencyContacts(new ContactImporter(in));
+        }, new AsyncDatabase.Callback<DatabaseHelper.ImportResult>() {
+            @Override
+            public void onResult(DatabaseHelper.ImportResult result) {
+                btnImportContacts.setEnabled(true);
+                Toast.makeText(EmergencyContactsActivity.this, "Imported " + result.imported +
+                        " contact(s), " + result.duplicates + " duplicate(s), " + result.invalid + " invalid",
+                        Toast.LENGTH_LONG).show();
+                loadContacts();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                btnImportContacts.setEnabled(true);
+                Toast.makeText(EmergencyContactsActivity.this, "Import failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void showDeleteDialog(int pos) {
@@ -100,8 +156,7 @@ public class EmergencyContactsActivity extends AppCompatActivity {
                 .setTitle("Delete")
                 .setMessage(c.name + "\n" + c.phone)
                 .setPositiveButton("Delete", (d, w) -> {
-                    dbHelper.deleteEmergencyContact(c.id);
-                    loadContacts();
+                    asyncDb.submit(this, db -> db.deleteEmergencyContact(c.id), deleted -> loadContacts());
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -0,0 +1,146 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Write-behind queue for emergency_events: rows are buffered in memory and
+// written in one transaction per batch, either when the batch fills up or
+// when the flush delay expires, whichever comes first.
+public class EventJournal {
+
+    private static final String TAG = "EventJournal";
+
+    private static final int BATCH_SIZE = 16;
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    private static volatile EventJournal instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ScheduledExecutorService executor;
+    private final int batchSize;
+    private final long flushDelayMs;
+
+    private final Object lock = new Object();
+    private List<DatabaseHelper.PendingEvent> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public static EventJournal getInstance(Context context) {
+        EventJournal journal = instance;
+        if (journal == null) {
+            synchronized (EventJournal.class) {
+                journal = instance;
+                if (journal == null) {
+                    journal = new EventJournal(DatabaseHelper.getInstance(context),
+                            BATCH_SIZE, FLUSH_DELAY_MS);
+                    instance = journal;
+                }
+            }
+        }
+        return journal;
+    }
+
+    EventJournal(DatabaseHelper dbHelper, int batchSize, long flushDelayMs) {
+        this.dbHelper = dbHelper;
+        this.batchSize = batchSize;
+        this.flushDelayMs = flushDelayMs;
+
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "event-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+    }
+
+    // Queue an event; it reaches disk with the next batch
+    public void record(String eventType, String location, String notes) {
+        enqueue(eventType, location, notes, false);
+    }
+
+    // For SOS-class events: skips the flush delay, so the commit of this event (and everything
+    // before it) starts on the journal thread at once. It does not wait for that commit, so it is
+    // safe on the SOS tap path, but the event is only in memory until the journal thread gets to
+    // it. Callers that must know it is on disk use flushAndWait() off the main thread.
+    public void recordUrgent(String eventType, String location, String notes) {
+        enqueue(eventType, location, notes, true);
+    }
+
+    private void enqueue(String eventType, String location, String notes, boolean urgent) {
+        DatabaseHelper.PendingEvent event = new DatabaseHelper.PendingEvent(
+                eventType, location, notes, System.currentTimeMillis());
+
+        synchronized (lock) {
+            pending.add(event);
+
+            if (urgent || pending.size() >= batchSize) {
+                cancelScheduledFlush();
+                executor.execute(this::flush);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flush, flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public boolean flushAndWait(long timeoutMs) {
+        Future<?> future = executor.submit(this::flush);
+        try {
+            future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            Log.e(TAG, "Journal flush did not complete", e);
+            return false;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    // Runs on the journal thread only
+    private void flush() {
+        List<DatabaseHelper.PendingEvent> batch;
+        synchronized (lock) {
+            cancelScheduledFlush();
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>(batchSize);
+        }
+
+        try {
+            dbHelper.addEmergencyEvents(batch);
+            Log.d(TAG, "Flushed " + batch.size() + " event(s)");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to flush " + batch.size() + " event(s), requeueing", e);
+            synchronized (lock) {
+                batch.addAll(pending);
+                pending = batch;
+                if (scheduledFlush == null) {
+                    scheduledFlush = executor.schedule(this::flush, flushDelayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+}
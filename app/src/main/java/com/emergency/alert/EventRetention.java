@@ -0,0 +1,219 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps emergency_events bounded: raw geofence rows older than the retention window are
+// folded into per-zone/per-day rows in event_rollups and then deleted in batches.
+// SOS and every other non-geofence event type are never touched.
+final class EventRetention {
+
+    private static final String TAG = "EventRetention";
+
+    static final String TABLE_ROLLUPS = "event_rollups";
+    static final String COL_ROLLUP_ZONE = "zone";
+    static final String COL_ROLLUP_TYPE = "event_type";
+    static final String COL_ROLLUP_DAY = "day"; // UTC days since epoch
+    static final String COL_ROLLUP_COUNT = "event_count";
+    static final String COL_ROLLUP_FIRST = "first_time";
+    static final String COL_ROLLUP_LAST = "last_time";
+
+    private static final String[] GEOFENCE_TYPES = {"GEOFENCE_ENTER", "GEOFENCE_EXIT", "GEOFENCE_DWELL"};
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String PREF_LAST_RUN = "retention_last_run";
+    private static final long MIN_RUN_INTERVAL_MS = TimeUnit.HOURS.toMillis(24);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "event-retention"));
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+
+    static class Policy {
+        long rawGeofenceMaxAgeMs = TimeUnit.DAYS.toMillis(30);
+        int batchSize = 500;
+        int vacuumPagesPerRun = 1024;
+    }
+
+    static class Report {
+        int rolledUpGroups;
+        int deletedRows;
+        long bytesReclaimed;
+        long queryMsBefore;
+        long queryMsAfter;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "rolled up %d group(s), deleted %d row(s), reclaimed %d bytes, scan %d ms -> %d ms",
+                    rolledUpGroups, deletedRows, bytesReclaimed, queryMsBefore, queryMsAfter);
+        }
+    }
+
+    private EventRetention() {
+    }
+
+    static void createRollupTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ROLLUPS + " (" +
+                COL_ROLLUP_ZONE + " TEXT NOT NULL, " +
+                COL_ROLLUP_TYPE + " TEXT NOT NULL, " +
+                COL_ROLLUP_DAY + " INTEGER NOT NULL, " +
+                COL_ROLLUP_COUNT + " INTEGER NOT NULL, " +
+                COL_ROLLUP_FIRST + " INTEGER NOT NULL, " +
+                COL_ROLLUP_LAST + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COL_ROLLUP_ZONE + ", " + COL_ROLLUP_TYPE + ", " + COL_ROLLUP_DAY + "))");
+    }
+
+    // Runs retention once the main thread goes idle, at most once a day; call from the main thread
+    static void scheduleWhenIdle(Context context) {
+        if (!scheduled.compareAndSet(false, true)) return;
+
+        Context appContext = context.getApplicationContext();
+        Looper.myQueue().addIdleHandler(() -> {
+            executor.execute(() -> {
+                SharedPreferences prefs = appContext.getSharedPreferences("EmergencyAlertPrefs", Context.MODE_PRIVATE);
+                long now = System.currentTimeMillis();
+                if (now - prefs.getLong(PREF_LAST_RUN, 0) < MIN_RUN_INTERVAL_MS) return;
+
+                try {
+                    Report report = run(DatabaseHelper.getInstance(appContext), new Policy(), now);
+                    Log.d(TAG, "Retention: " + report);
+                    prefs.edit().putLong(PREF_LAST_RUN, now).apply();
+                } catch (Exception e) {
+                    Log.e(TAG, "Retention run failed", e);
+                }
+            });
+            return false;
+        });
+    }
+
+    // Blocking; call off the main thread
+    static Report run(DatabaseHelper helper, Policy policy, long now) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        Report report = new Report();
+        long cutoff = now - policy.rawGeofenceMaxAgeMs;
+
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        long pagesBefore = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        report.queryMsBefore = timeFullScan(db);
+
+        SQLiteStatement updateRollup = db.compileStatement("UPDATE " + TABLE_ROLLUPS + " SET " +
+                COL_ROLLUP_COUNT + " = " + COL_ROLLUP_COUNT + " + ?, " +
+                COL_ROLLUP_FIRST + " = MIN(" + COL_ROLLUP_FIRST + ", ?), " +
+                COL_ROLLUP_LAST + " = MAX(" + COL_ROLLUP_LAST + ", ?) WHERE " +
+                COL_ROLLUP_ZONE + " = ? AND " + COL_ROLLUP_TYPE + " = ? AND " + COL_ROLLUP_DAY + " = ?");
+        SQLiteStatement insertRollup = db.compileStatement("INSERT INTO " + TABLE_ROLLUPS + " (" +
+                COL_ROLLUP_COUNT + ", " + COL_ROLLUP_FIRST + ", " + COL_ROLLUP_LAST + ", " +
+                COL_ROLLUP_ZONE + ", " + COL_ROLLUP_TYPE + ", " + COL_ROLLUP_DAY + ") VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            for (String type : GEOFENCE_TYPES) {
+                while (rollUpBatch(db, type, cutoff, policy.batchSize, updateRollup, insertRollup, report)) {
+                    // One transaction per batch keeps write locks short for the journal and UI
+                }
+            }
+        } finally {
+            updateRollup.close();
+            insertRollup.close();
+        }
+
+        ensureIncrementalVacuum(db);
+        Cursor vacuum = db.rawQuery("PRAGMA incremental_vacuum(" + policy.vacuumPagesPerRun + ")", null);
+        vacuum.getCount(); // steps the pragma to completion
+        vacuum.close();
+
+        long pagesAfter = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        report.bytesReclaimed = Math.max(0, pagesBefore - pagesAfter) * pageSize;
+        report.queryMsAfter = timeFullScan(db);
+        return report;
+    }
+
+    // Returns true while more rows of this type are waiting
+    private static boolean rollUpBatch(SQLiteDatabase db, String type, long cutoff, int batchSize,
+                                       SQLiteStatement updateRollup, SQLiteStatement insertRollup,
+                                       Report report) {
+        String cutoffArg = String.valueOf(cutoff);
+
+        // Upper time bound of this batch, walking the (event_type, event_time) index
+        Cursor bound = db.rawQuery("SELECT " + DatabaseHelper.COL_EVENT_TIME + " FROM " +
+                        DatabaseHelper.TABLE_EVENTS + " WHERE " + DatabaseHelper.COL_EVENT_TYPE + " = ? AND " +
+                        DatabaseHelper.COL_EVENT_TIME + " < ? ORDER BY " + DatabaseHelper.COL_EVENT_TIME +
+                        " LIMIT 1 OFFSET ?",
+                new String[]{type, cutoffArg, String.valueOf(batchSize - 1)});
+        boolean more = bound.moveToFirst();
+        long upTo = more ? bound.getLong(0) : cutoff - 1;
+        bound.close();
+
+        String[] args = {type, String.valueOf(upTo)};
+        String where = DatabaseHelper.COL_EVENT_TYPE + " = ? AND " + DatabaseHelper.COL_EVENT_TIME + " <= ?";
+
+        db.beginTransactionNonExclusive();
+        try {
+            Cursor groups = db.rawQuery("SELECT COALESCE(" + DatabaseHelper.COL_EVENT_LOCATION + ", ''), " +
+                    DatabaseHelper.COL_EVENT_TIME + " / " + DAY_MS + ", COUNT(*), MIN(" +
+                    DatabaseHelper.COL_EVENT_TIME + "), MAX(" + DatabaseHelper.COL_EVENT_TIME + ") FROM " +
+                    DatabaseHelper.TABLE_EVENTS + " WHERE " + where + " GROUP BY 1, 2", args);
+            try {
+                while (groups.moveToNext()) {
+                    bindRollup(updateRollup, groups, type);
+                    if (updateRollup.executeUpdateDelete() == 0) {
+                        bindRollup(insertRollup, groups, type);
+                        insertRollup.executeInsert();
+                    }
+                    report.rolledUpGroups++;
+                }
+            } finally {
+                groups.close();
+            }
+
+            report.deletedRows += db.delete(DatabaseHelper.TABLE_EVENTS, where, args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return more;
+    }
+
+    private static void bindRollup(SQLiteStatement statement, Cursor group, String type) {
+        statement.bindLong(1, group.getLong(2));
+        statement.bindLong(2, group.getLong(3));
+        statement.bindLong(3, group.getLong(4));
+        statement.bindString(4, group.getString(0));
+        statement.bindString(5, type);
+        statement.bindLong(6, group.getLong(1));
+    }
+
+    // Databases created before v3 use auto_vacuum=NONE; converting needs one full VACUUM
+    private static void ensureIncrementalVacuum(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == 2) return;
+
+        long start = SystemClock.elapsedRealtime();
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+        Log.d(TAG, "Switched to incremental auto_vacuum in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private static long timeFullScan(SQLiteDatabase db) {
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_EVENTS +
+                " WHERE " + DatabaseHelper.COL_EVENT_NOTES + " IS NOT NULL", null);
+        cursor.moveToFirst();
+        cursor.close();
+        return SystemClock.elapsedRealtime() - start;
+    }
+}
@@ -1,24 +1,57 @@
 package com.emergency.alert;
 
-import android.Manifest;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.os.Build;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.core.app.ActivityCompat;
-
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class GeofenceBroadcastReceiver extends BroadcastReceiver {
 
     private static final String TAG = "GeofenceReceiver";
 
+    // goAsync work must finish well inside the 10 s broadcast limit
+    static final long RECEIVE_BUDGET_MS = 8000;
+    // Share of the budget a cold process may spend waiting for the zone dataset
+    private static final long REGISTRY_WAIT_MS = 2000;
+    // Broadcasts to one receiver are delivered one after another, so more than a couple
+    // queued means something is badly stuck
+    private static final int QUEUE_CAPACITY = 16;
+
+    // Per zone, the last transition passed on and when ("1:<millis>" inside, "0:<millis>"
+    // outside), so a flap is recognised even when it spans two processes
+    private static final String PREFS = "geofence_transitions";
+
+    interface Reporter {
+        void report(ZoneRegistry.Zone zone, ZoneTransitionFilter.Transition transition);
+    }
+
+    // One worker and a bounded queue. If the queue is ever full the broadcast is handled
+    // on the caller (the main thread): slower, but a zone alert is never dropped.
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, "geofence-receiver");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
 
@@ -29,82 +62,131 @@ public class GeofenceBroadcastReceiver extends BroadcastReceiver {
             return;
         }
 
-        // Android 13+ notification permission
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU &&
-                ActivityCompat.checkSelfPermission(
-                        context,
-                        Manifest.permission.POST_NOTIFICATIONS
-                ) != PackageManager.PERMISSION_GRANTED) {
-            Log.w(TAG, "Notification permission missing");
-            return;
-        }
-
         int transition = event.getGeofenceTransition();
         List<Geofence> geofenceList = event.getTriggeringGeofences();
 
         if (geofenceList == null || geofenceList.isEmpty()) return;
 
-        String geofenceId = geofenceList.get(0).getRequestId();
-        DatabaseHelper db = new DatabaseHelper(context);
-
-        if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
-
-            handleEnter(context, geofenceId, db);
-
-        } else if (transition == Geofence.GEOFENCE_TRANSITION_DWELL) {
-
-            NotificationHelper.showEmergencyNotification(
-                    context,
-                    "⚠️ Prolonged Stay Alert",
-                    "You are staying too long in a risky area."
-            );
-
-            db.addEmergencyEvent(
-                    "GEOFENCE_DWELL",
-                    geofenceId,
-                    "User stayed too long"
-            );
-
-        } else if (transition == Geofence.GEOFENCE_TRANSITION_EXIT) {
+        // Several geofences can fire in one broadcast; every one of them is handled
+        List<String> ids = new ArrayList<>(geofenceList.size());
+        for (Geofence geofence : geofenceList) ids.add(geofence.getRequestId());
+
+        Context appContext = context.getApplicationContext();
+        long deadline = SystemClock.elapsedRealtime() + RECEIVE_BUDGET_MS;
+        PendingResult result = goAsync();
+        executor.execute(() -> {
+            try {
+                handleTransitions(
+                        appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE),
+                        ZoneMonitor.getInstance(appContext).awaitRegistry(REGISTRY_WAIT_MS),
+                        EventJournal.getInstance(appContext),
+                        AlertNotifier.getInstance(appContext),
+                        transition, ids, deadline);
+            } finally {
+                result.finish();
+            }
+        });
+    }
 
-            NotificationHelper.showEmergencyNotification(
-                    context,
-                    "✅ Safe Zone",
-                    "You exited the monitored area."
-            );
+    // Executor thread. True when every event was committed and posted before the deadline.
+    static boolean handleTransitions(SharedPreferences prefs, ZoneRegistry registry, EventJournal journal,
+                                     AlertNotifier notifier, int transition, List<String> ids, long deadline) {
+        // Reported as they come, since anything held back could be lost with the process
+        // once the broadcast ends; flaps are dropped by the filter instead
+        int reported = filterTransitions(prefs, registry, transition, ids, System.currentTimeMillis(),
+                (zone, kind) -> report(zone, kind, notifier, journal));
+        if (reported < ids.size()) {
+            Log.d(TAG, "Dropped " + (ids.size() - reported) + " of " + ids.size() + " geofence transition(s)");
+        }
 
-            db.addEmergencyEvent(
-                    "GEOFENCE_EXIT",
-                    geofenceId,
-                    "User exited zone"
-            );
+        // The process may be killed once the broadcast finishes, so commit and post before that
+        long remaining = deadline - SystemClock.elapsedRealtime();
+        if (!journal.flushAndWait(Math.max(0, remaining))) {
+            Log.w(TAG, "Geofence events not committed within the broadcast budget");
+            return false;
         }
+        remaining = deadline - SystemClock.elapsedRealtime();
+        return notifier.flushAndWait(Math.max(0, remaining));
     }
 
-    private void handleEnter(Context context, String geofenceId, DatabaseHelper db) {
-
-        String title = "⚠️ Area Alert";
-        String message = "You entered a monitored zone.";
-
-        if (geofenceId.contains("UNSAFE")) {
-            title = "⚠️ Unsafe Area";
-            message = "High risk area. Stay alert.";
+    // Runs one broadcast through a ZoneTransitionFilter restored from prefs, saves its state
+    // back and returns how many transitions were passed on to reporter
+    static int filterTransitions(SharedPreferences prefs, ZoneRegistry registry, int transition,
+                                 List<String> ids, long now, Reporter reporter) {
+        ZoneTransitionFilter.Transition kind = toTransition(transition);
+        if (kind == null) return 0;
+
+        int[] passedOn = new int[1];
+        ZoneTransitionFilter filter = new ZoneTransitionFilter(0, 0, ZoneMonitor.COOLDOWN_MS, 0,
+                (zoneId, passed, time) -> {
+                    passedOn[0]++;
+                    reporter.report(registry.resolve(zoneId), passed);
+                });
+        for (String id : ids) {
+            String saved = prefs.getString(id, null);
+            int colon = saved == null ? -1 : saved.indexOf(':');
+            if (colon < 0) continue;
+            try {
+                filter.restoreGeofenceZone(id, saved.startsWith("1"), Long.parseLong(saved.substring(colon + 1)));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring saved state for " + id + ": " + saved);
+            }
+        }
 
-        } else if (geofenceId.contains("ACCIDENT")) {
-            title = "⚠️ Accident Zone";
-            message = "Accident-prone area. Drive carefully.";
+        for (String id : ids) filter.onGeofenceEvent(id, kind, now);
 
-        } else if (geofenceId.contains("DISASTER")) {
-            title = "⚠️ Disaster Zone";
-            message = "Disaster-affected area. Follow safety rules.";
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String id : ids) {
+            long last = filter.lastPassedOn(id);
+            if (last != Long.MIN_VALUE) editor.putString(id, (filter.isInside(id) ? "1:" : "0:") + last);
         }
+        // Worker thread, and the broadcast must not end before this is on disk
+        editor.commit();
+        return passedOn[0];
+    }
 
-        NotificationHelper.showEmergencyNotification(context, title, message);
+    private static ZoneTransitionFilter.Transition toTransition(int transition) {
+        switch (transition) {
+            case Geofence.GEOFENCE_TRANSITION_ENTER:
+                return ZoneTransitionFilter.Transition.ENTER;
+            case Geofence.GEOFENCE_TRANSITION_DWELL:
+                return ZoneTransitionFilter.Transition.DWELL;
+            case Geofence.GEOFENCE_TRANSITION_EXIT:
+                return ZoneTransitionFilter.Transition.EXIT;
+            default:
+                return null;
+        }
+    }
 
-        db.addEmergencyEvent(
-                "GEOFENCE_ENTER",
-                geofenceId,
-                "User entered zone"
-        );
+    private static void report(ZoneRegistry.Zone zone, ZoneTransitionFilter.Transition transition,
+                               AlertNotifier notifier, EventJournal journal) {
+        switch (transition) {
+            case ENTER:
+                notifier.post("GEOFENCE_ENTER", zone.type, zone.id, zone.type.title, zone.message);
+                journal.record("GEOFENCE_ENTER", zone.id, "User entered zone (severity " + zone.severity + ")");
+                break;
+
+            case DWELL:
+                notifier.post(
+                        "GEOFENCE_DWELL",
+                        zone.type,
+                        zone.id,
+                        "⚠️ Prolonged Stay Alert",
+                        "You are staying too long in a risky area."
+                );
+                journal.record("GEOFENCE_DWELL", zone.id, "User stayed too long");
+                break;
+
+            case EXIT:
+                notifier.post(
+                        "GEOFENCE_EXIT",
+                        zone.type,
+                        zone.id,
+                        "✅ Safe Zone",
+                        "You exited the monitored area."
+                );
+                journal.record("GEOFENCE_EXIT", zone.id, "User exited zone");
+                break;
+        }
     }
 }
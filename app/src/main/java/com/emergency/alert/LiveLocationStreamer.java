@@ -0,0 +1,156 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.location.Location;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Live location updates to the emergency contacts while emergency mode is on. Fed every fix
+// from LocationTrackingService, it only sends when the user has moved far enough or the
+// last update is getting old, and never queues a new update while the previous one is
+// still waiting in the outbox. Updates are single-segment SMS: the move since the last
+// update plus a short map link. onLocation runs on the location pipeline thread; start,
+// stop and the outbox callbacks on the main thread.
+final class LiveLocationStreamer {
+
+    private static final String TAG = "LiveLocationStreamer";
+
+    static final float MIN_DISTANCE_METERS = 150f;
+    static final long MAX_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    static final long MIN_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // Fixes vaguer than this are noise for a live trail
+    private static final float MAX_ACCURACY_METERS = 100f;
+
+    // GSM 7-bit only and well under the 160 characters of a single segment
+    static final int MAX_UPDATE_CHARS = 120;
+    private static final String[] COMPASS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private final Context appContext;
+    private final MessagingEngine engine;
+    private final MessagingEngine.Listener listener = this::onDispatchUpdated;
+
+    private volatile List<DatabaseHelper.EmergencyContact> contacts;
+    private volatile long inFlightDispatchId = -1;
+    private volatile boolean running;
+    // Pipeline thread only
+    private Location lastSent;
+    private int updateNumber;
+
+    LiveLocationStreamer(Context context) {
+        this(context, MessagingEngine.getInstance(context.getApplicationContext()));
+    }
+
+    // Visible for fake transports
+    LiveLocationStreamer(Context context, MessagingEngine engine) {
+        this.appContext = context.getApplicationContext();
+        this.engine = engine;
+    }
+
+    void start() {
+        if (running) return;
+        startStreaming();
+        AsyncDatabase.getInstance(appContext).submit(DatabaseHelper::getAllEmergencyContacts, loaded -> {
+            contacts = loaded;
+            Log.d(TAG, "Streaming to " + loaded.size() + " contact(s)");
+        });
+    }
+
+    // Visible for tests: streams to contacts loaded elsewhere
+    void start(List<DatabaseHelper.EmergencyContact> contacts) {
+        if (running) return;
+        this.contacts = contacts;
+        startStreaming();
+    }
+
+    private void startStreaming() {
+        running = true;
+        engine.addListener(listener);
+    }
+
+    void stop() {
+        running = false;
+        engine.removeListener(listener);
+    }
+
+    void onLocation(Location location) {
+        List<DatabaseHelper.EmergencyContact> contacts = this.contacts;
+        if (!running || contacts == null || contacts.isEmpty()) return;
+        if (location.hasAccuracy() && location.getAccuracy() > MAX_ACCURACY_METERS) return;
+        // The previous update is still queued (rate limit); the next fix will carry the move
+        if (inFlightDispatchId >= 0) return;
+        if (!shouldSend(lastSent, location)) return;
+
+        String message = formatUpdate(++updateNumber, lastSent, location);
+        inFlightDispatchId = engine.share(contacts, message);
+        lastSent = location;
+        Log.d(TAG, "Live update " + updateNumber + " queued: " + message.replace('\n', ' '));
+    }
+
+    private void onDispatchUpdated(MessagingEngine.Summary summary) {
+        if (summary.dispatchId == inFlightDispatchId && summary.isSettled()) inFlightDispatchId = -1;
+    }
+
+    static boolean shouldSend(Location last, Location fix) {
+        if (last == null) return true;
+        return shouldSend(fix.getTime() - last.getTime(), last.getAccuracy() + fix.getAccuracy(),
+                last.distanceTo(fix));
+    }
+
+    static boolean shouldSend(long elapsedMs, float accuracySum, float distance) {
+        if (elapsedMs < MIN_INTERVAL_MS) return false;
+        if (elapsedMs >= MAX_INTERVAL_MS) return true;
+
+        // Jitter within the two accuracy circles is not movement
+        return distance >= Math.max(MIN_DISTANCE_METERS, accuracySum);
+    }
+
+    static String formatUpdate(int number, Location last, Location fix) {
+        float accuracy = fix.hasAccuracy() ? fix.getAccuracy() : -1;
+        if (last == null) {
+            return formatUpdate(number, fix.getTime(), fix.getLatitude(), fix.getLongitude(), accuracy, -1, 0, 0);
+        }
+        return formatUpdate(number, fix.getTime(), fix.getLatitude(), fix.getLongitude(), accuracy,
+                last.distanceTo(fix), last.bearingTo(fix), fix.getTime() - last.getTime());
+    }
+
+    // e.g. "LIVE #3 14:05 moved 230m NE 12km/h\nhttps://maps.google.com/?q=12.97160,77.59460 +/-8m";
+    // accuracy < 0 is unknown, distance < 0 means there is no previous update
+    static String formatUpdate(int number, long fixTime, double lat, double lng, float accuracy,
+                               float distance, float bearing, long elapsedMs) {
+        Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(fixTime);
+
+        StringBuilder sb = new StringBuilder(MAX_UPDATE_CHARS);
+        sb.append(String.format(Locale.US, "LIVE #%d %02d:%02d", number,
+                time.get(Calendar.HOUR_OF_DAY), time.get(Calendar.MINUTE)));
+
+        if (distance >= 0) {
+            sb.append(" moved ").append(formatDistance(distance));
+            if (distance >= 1) sb.append(' ').append(compass(bearing));
+
+            long seconds = TimeUnit.MILLISECONDS.toSeconds(elapsedMs);
+            if (seconds > 0) sb.append(' ').append(Math.round(distance / seconds * 3.6f)).append("km/h");
+        }
+
+        // 5 decimals is about a metre, enough for a map pin
+        sb.append(String.format(Locale.US, "\nhttps://maps.google.com/?q=%.5f,%.5f", lat, lng));
+        if (accuracy >= 0) sb.append(" +/-").append(Math.round(accuracy)).append('m');
+
+        return sb.toString();
+    }
+
+    private static String formatDistance(float meters) {
+        return meters < 1000
+                ? Math.round(meters) + "m"
+                : String.format(Locale.US, "%.1fkm", meters / 1000);
+    }
+
+    private static String compass(float bearing) {
+        int index = Math.round(((bearing % 360) + 360) % 360 / 45f) % COMPASS.length;
+        return COMPASS[index];
+    }
+}
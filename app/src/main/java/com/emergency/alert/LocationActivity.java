@@ -6,8 +6,6 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
@@ -22,8 +20,6 @@ import androidx.core.app.ActivityCompat;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -32,7 +28,10 @@ public class LocationActivity extends AppCompatActivity {
     private TextView tvLatitude, tvLongitude, tvAddress, tvAccuracy;
     private Button btnRefresh, btnCopy, btnOpenMaps, btnShareContacts;
     private FusedLocationProviderClient fusedLocationClient;
-    private DatabaseHelper dbHelper;
+    private AsyncDatabase asyncDb;
+    private MessagingEngine engine;
+    private final MessagingEngine.Listener shareListener = this::onShareUpdated;
+    private long activeShareId = -1;
 
     private double currentLatitude = 0;
     private double currentLongitude = 0;
@@ -44,7 +43,8 @@ public class LocationActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_location);
 
-        dbHelper = new DatabaseHelper(this);
+        asyncDb = AsyncDatabase.getInstance(this);
+        engine = MessagingEngine.getInstance(this);
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
 
         initializeViews();
@@ -52,6 +52,18 @@ public class LocationActivity extends AppCompatActivity {
         getCurrentLocation();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        engine.addListener(shareListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        engine.removeListener(shareListener);
+    }
+
     private void initializeViews() {
         tvLatitude = findViewById(R.id.tv_latitude);
         tvLongitude = findViewById(R.id.tv_longitude);
@@ -110,36 +122,12 @@ public class LocationActivity extends AppCompatActivity {
         tvAccuracy.setText(String.format(Locale.US, "🎯 Accuracy: ±%.1f meters", location.getAccuracy()));
     }
 
+    // Cached per ~150 m cell, so refreshing in place does not hit the geocoder again
     private void getAddressFromLocation(Location location) {
-        Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-        try {
-            List<Address> addresses = geocoder.getFromLocation(
-                    location.getLatitude(),
-                    location.getLongitude(),
-                    1
-            );
-
-            if (addresses != null && !addresses.isEmpty()) {
-                Address address = addresses.get(0);
-                StringBuilder fullAddress = new StringBuilder("📫 Address:\n");
-
-                if (address.getFeatureName() != null)
-                    fullAddress.append(address.getFeatureName()).append(", ");
-                if (address.getLocality() != null)
-                    fullAddress.append(address.getLocality()).append(", ");
-                if (address.getAdminArea() != null)
-                    fullAddress.append(address.getAdminArea()).append(", ");
-                if (address.getCountryName() != null)
-                    fullAddress.append(address.getCountryName());
-
-                tvAddress.setText(fullAddress.toString());
-            } else {
-                tvAddress.setText("📫 Address: Not available");
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Geocoder error", e);
-            tvAddress.setText("📫 Address: Unable to retrieve");
-        }
+        ReverseGeocoder.getInstance(this).lookup(location.getLatitude(), location.getLongitude(), address -> {
+            if (isDestroyed()) return;
+            tvAddress.setText(address != null ? "📫 Address:\n" + address : "📫 Address: Not available");
+        });
     }
 
     private void copyLocationToClipboard() {
@@ -188,8 +176,14 @@ public class LocationActivity extends AppCompatActivity {
             return;
         }
 
-        List<DatabaseHelper.EmergencyContact> contacts = dbHelper.getAllEmergencyContacts();
+        long span = PhaseTracer.begin();
+        asyncDb.submit(this, DatabaseHelper::getAllEmergencyContacts, contacts -> {
+            PhaseTracer.end(PhaseTracer.Phase.SHARE_CONTACTS, span);
+            shareLocationWithContacts(contacts);
+        });
+    }
 
+    private void shareLocationWithContacts(List<DatabaseHelper.EmergencyContact> contacts) {
         if (contacts.isEmpty()) {
             Toast.makeText(this, "No emergency contacts found. Please add contacts first.",
                     Toast.LENGTH_LONG).show();
@@ -197,8 +191,11 @@ public class LocationActivity extends AppCompatActivity {
         }
 
         // Check SMS permission
-        if (ActivityCompat.checkSelfPermission(this,
-                Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+        long span = PhaseTracer.begin();
+        boolean canSend = ActivityCompat.checkSelfPermission(this,
+                Manifest.permission.SEND_SMS) == PackageManager.PERMISSION_GRANTED;
+        PhaseTracer.end(PhaseTracer.Phase.SHARE_PERMISSIONS, span);
+        if (!canSend) {
             Toast.makeText(this, "SMS permission required. Requesting...",
                     Toast.LENGTH_LONG).show();
             ActivityCompat.requestPermissions(this,
@@ -207,44 +204,32 @@ public class LocationActivity extends AppCompatActivity {
             return;
         }
 
+        span = PhaseTracer.begin();
         String locationMessage = String.format(Locale.US,
                 "📍 I'm sharing my location with you:\n\nLatitude: %.6f\nLongitude: %.6f\n\nOpen in Google Maps:\nhttps://maps.google.com/?q=%.6f,%.6f",
                 currentLatitude, currentLongitude, currentLatitude, currentLongitude);
+        PhaseTracer.end(PhaseTracer.Phase.SHARE_BUILD_MESSAGE, span);
+
+        // Shares go through the same rate-limited outbox as SOS alerts, behind any SOS traffic
+        int ahead = engine.getQueueDepth();
+        span = PhaseTracer.begin();
+        activeShareId = engine.share(contacts, locationMessage);
+        PhaseTracer.end(PhaseTracer.Phase.SHARE_ENQUEUE, span);
+        Log.d(TAG, "Location share " + activeShareId + " queued for " + contacts.size() +
+                " contact(s), " + ahead + " message(s) ahead");
+
+        Toast.makeText(this, ahead > 0
+                        ? "📍 Sharing location with " + contacts.size() + " contact(s), " + ahead + " message(s) ahead in queue..."
+                        : "📍 Sharing location with " + contacts.size() + " contact(s)...",
+                Toast.LENGTH_SHORT).show();
+    }
 
-        int successCount = 0;
-        int failCount = 0;
-
-        Log.d(TAG, "Attempting to send location to " + contacts.size() + " contacts");
-
-        for (DatabaseHelper.EmergencyContact contact : contacts) {
-            try {
-                android.telephony.SmsManager smsManager = android.telephony.SmsManager.getDefault();
-
-                // Split long messages if needed
-                ArrayList<String> parts = smsManager.divideMessage(locationMessage);
-
-                Log.d(TAG, "Sending to: " + contact.name + " (" + contact.phone + "), Parts: " + parts.size());
-
-                if (parts.size() > 1) {
-                    // Send multi-part SMS
-                    smsManager.sendMultipartTextMessage(contact.phone, null, parts, null, null);
-                } else {
-                    // Send single SMS
-                    smsManager.sendTextMessage(contact.phone, null, locationMessage, null, null);
-                }
-
-                successCount++;
-                Log.d(TAG, "✅ Location sent to: " + contact.name + " (" + contact.phone + ")");
-
-            } catch (SecurityException e) {
-                failCount++;
-                Log.e(TAG, "❌ SMS permission denied for " + contact.name, e);
-            } catch (Exception e) {
-                failCount++;
-                Log.e(TAG, "❌ Failed to send to " + contact.name + " (" + contact.phone + ")", e);
-            }
-        }
+    private void onShareUpdated(MessagingEngine.Summary summary) {
+        if (summary.dispatchId != activeShareId || !summary.isSettled()) return;
+        activeShareId = -1;
 
+        int successCount = summary.sent + summary.delivered;
+        int failCount = summary.failed;
         if (successCount > 0 && failCount == 0) {
             Toast.makeText(this,
                     "✅ Location shared with all " + successCount + " contact(s)!",
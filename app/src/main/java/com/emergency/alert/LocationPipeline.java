@@ -0,0 +1,167 @@
+package com.emergency.alert;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Owns everything that happens to a fix after the fused provider delivers it, on one
+// dedicated thread instead of the main looper: intake (register callback() with looper()),
+// filtering, and fan-out to consumers. Each consumer has a bounded mailbox drained on its
+// own handler; when a consumer falls behind the oldest fixes are dropped, and a capacity
+// of 1 makes it latest-wins. Consumers that touch the disk or do real work get a worker
+// thread of their own, so they can never hold up intake.
+final class LocationPipeline {
+
+    private static final String TAG = "LocationPipeline";
+
+    interface Consumer {
+        void onFix(Location fix);
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<HandlerThread> workers = new ArrayList<>(); // main thread only
+
+    // Pipeline thread only
+    private long lastAcceptedTime = Long.MIN_VALUE;
+    private long accepted;
+    private long rejected;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            if (result == null) return;
+            // Batched deliveries carry several fixes, oldest first
+            for (Location fix : result.getLocations()) publish(fix);
+        }
+    };
+
+    LocationPipeline() {
+        thread = new HandlerThread("location-pipeline", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    LocationCallback callback() {
+        return callback;
+    }
+
+    Looper looper() {
+        return thread.getLooper();
+    }
+
+    // Consumer runs on the pipeline thread
+    void subscribe(String name, int capacity, Consumer consumer) {
+        subscribe(name, capacity, handler, consumer);
+    }
+
+    void subscribe(String name, int capacity, Handler target, Consumer consumer) {
+        subscriptions.add(new Subscription(name, capacity, target, consumer));
+    }
+
+    // A background thread for one slow consumer; quit() stops it with the pipeline
+    Handler newWorker(String name) {
+        HandlerThread worker = new HandlerThread("location-" + name, Process.THREAD_PRIORITY_BACKGROUND);
+        worker.start();
+        workers.add(worker);
+        return new Handler(worker.getLooper());
+    }
+
+    // Delivers what is already queued, then stops the threads
+    void quit() {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.dropped > 0) {
+                Log.d(TAG, subscription.name + " fell behind, " + subscription.dropped + " fix(es) conflated");
+            }
+        }
+        handler.post(() -> Log.d(TAG, accepted + " fix(es) accepted, " + rejected + " rejected"));
+        thread.quitSafely();
+        for (HandlerThread worker : workers) worker.quitSafely();
+    }
+
+    // Pipeline thread only
+    private void publish(Location fix) {
+        if (!accept(fix)) {
+            rejected++;
+            return;
+        }
+        accepted++;
+        lastAcceptedTime = fix.getTime();
+        for (Subscription subscription : subscriptions) subscription.offer(fix);
+    }
+
+    private boolean accept(Location fix) {
+        // Redelivered or out-of-order fixes would make the trail go backwards
+        if (fix.getTime() <= lastAcceptedTime) return false;
+        double lat = fix.getLatitude();
+        double lng = fix.getLongitude();
+        if (Double.isNaN(lat) || Double.isNaN(lng) || Math.abs(lat) > 90 || Math.abs(lng) > 180) return false;
+        // (0, 0) is what a broken provider reports, not a place anyone is
+        return lat != 0 || lng != 0;
+    }
+
+    private static final class Subscription {
+        final String name;
+        final int capacity;
+        final Handler handler;
+        final Consumer consumer;
+        final Runnable drain = this::drain;
+
+        // Guarded by this
+        private final ArrayDeque<Location> mailbox;
+        private boolean scheduled;
+        volatile long dropped;
+
+        Subscription(String name, int capacity, Handler handler, Consumer consumer) {
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            this.handler = handler;
+            this.consumer = consumer;
+            this.mailbox = new ArrayDeque<>(this.capacity);
+        }
+
+        void offer(Location fix) {
+            synchronized (this) {
+                if (mailbox.size() == capacity) {
+                    mailbox.pollFirst();
+                    dropped++;
+                }
+                mailbox.addLast(fix);
+                if (scheduled) return;
+                scheduled = true;
+            }
+            handler.post(drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Location fix;
+                synchronized (this) {
+                    fix = mailbox.pollFirst();
+                    if (fix == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    consumer.onFix(fix);
+                } catch (RuntimeException e) {
+                    // One broken consumer must not starve the others
+                    Log.e(TAG, name + " failed on a fix", e);
+                }
+            }
+        }
+    }
+}
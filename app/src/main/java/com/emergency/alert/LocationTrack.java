@@ -0,0 +1,288 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Breadcrumb trail of the tracking service. Fixes go into a preallocated ring of parallel
+// primitive arrays (no object per fix); every BATCH_SIZE fixes the pending run is copied
+// out, simplified with Douglas-Peucker and written to location_track in one transaction.
+// The last stored point is carried into the next batch so segments join up.
+final class LocationTrack {
+
+    private static final String TAG = "LocationTrack";
+
+    static final int CAPACITY = 1024;
+    static final int BATCH_SIZE = 120; // 10-20 minutes at the service's 5-10 s interval
+    // Points closer than this to the simplified line are dropped
+    static final double TOLERANCE_METERS = 10;
+    // A gap this long splits the trail; both sides are kept as-is
+    static final long GAP_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+
+    private static volatile LocationTrack instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "location-track");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Ring, guarded by this
+    private final long[] time = new long[CAPACITY];
+    private final double[] latitude = new double[CAPACITY];
+    private final double[] longitude = new double[CAPACITY];
+    private final float[] accuracy = new float[CAPACITY];
+    private int head;    // oldest unflushed point
+    private int pending; // unflushed points
+    private boolean flushQueued;
+
+    // Flush scratch, executor thread only; slot 0 is the carried-over point
+    private final long[] batchTime = new long[CAPACITY + 1];
+    private final double[] batchLatitude = new double[CAPACITY + 1];
+    private final double[] batchLongitude = new double[CAPACITY + 1];
+    private final float[] batchAccuracy = new float[CAPACITY + 1];
+    private final int[] kept = new int[CAPACITY + 1];
+    private final int[] stack = new int[2 * (CAPACITY + 1)];
+    private boolean hasCarry;
+
+    // Counters for the diagnostics screen
+    private volatile long appended;
+    private volatile long stored;
+    private volatile long dropped;
+    private volatile long lastFlushMs = -1;
+
+    static LocationTrack getInstance(Context context) {
+        LocationTrack track = instance;
+        if (track == null) {
+            synchronized (LocationTrack.class) {
+                track = instance;
+                if (track == null) {
+                    track = new LocationTrack(DatabaseHelper.getInstance(context));
+                    instance = track;
+                }
+            }
+        }
+        return track;
+    }
+
+    // dbHelper may be null for a scratch instance that never flushes (benchmarks)
+    LocationTrack(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    void append(Location location) {
+        append(location.getTime(), location.getLatitude(), location.getLongitude(), location.getAccuracy());
+    }
+
+    void append(long fixTime, double lat, double lng, float acc) {
+        boolean flushNow;
+        synchronized (this) {
+            if (pending == CAPACITY) {
+                // The writer fell a whole ring behind; lose the oldest point rather than block
+                head = (head + 1) % CAPACITY;
+                pending--;
+                dropped++;
+            }
+            int slot = (head + pending) % CAPACITY;
+            time[slot] = fixTime;
+            latitude[slot] = lat;
+            longitude[slot] = lng;
+            accuracy[slot] = acc;
+            pending++;
+            appended++;
+
+            flushNow = pending >= BATCH_SIZE && !flushQueued && dbHelper != null;
+            if (flushNow) flushQueued = true;
+        }
+        if (flushNow) executor.execute(this::flushPending);
+    }
+
+    // Writes whatever is pending, e.g. when tracking stops
+    void flush() {
+        if (dbHelper == null) return;
+        synchronized (this) {
+            if (flushQueued || pending == 0) return;
+            flushQueued = true;
+        }
+        executor.execute(this::flushPending);
+    }
+
+    // Executor thread only
+    private void flushPending() {
+        long start = SystemClock.elapsedRealtime();
+        int first = hasCarry ? 0 : 1;
+        int count;
+        synchronized (this) {
+            count = 1 + pending;
+            for (int i = 1; i < count; i++) {
+                int slot = (head + i - 1) % CAPACITY;
+                batchTime[i] = time[slot];
+                batchLatitude[i] = latitude[slot];
+                batchLongitude[i] = longitude[slot];
+                batchAccuracy[i] = accuracy[slot];
+            }
+            head = (head + pending) % CAPACITY;
+            pending = 0;
+            flushQueued = false;
+        }
+        if (count == 1) return; // nothing new
+
+        int keptCount = simplify(batchTime, batchLatitude, batchLongitude, first, count,
+                TOLERANCE_METERS, GAP_MS, kept, stack);
+        // The carried point is already stored
+        if (hasCarry) System.arraycopy(kept, 1, kept, 0, --keptCount);
+
+        try {
+            dbHelper.addTrackPoints(batchTime, batchLatitude, batchLongitude, batchAccuracy, kept, keptCount);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not store " + (count - first) + " track point(s)", e);
+            return;
+        }
+
+        // The last point is always kept, so it becomes the anchor of the next batch
+        int last = count - 1;
+        batchTime[0] = batchTime[last];
+        batchLatitude[0] = batchLatitude[last];
+        batchLongitude[0] = batchLongitude[last];
+        batchAccuracy[0] = batchAccuracy[last];
+        hasCarry = true;
+
+        stored += keptCount;
+        lastFlushMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Stored " + keptCount + " of " + (count - 1) + " point(s) in " + lastFlushMs + " ms");
+    }
+
+    // Douglas-Peucker over points [from, to) of the parallel arrays, iteratively with the
+    // given stack. Gaps longer than gapMs are anchors, so each side is simplified on its
+    // own. Writes the kept indexes in ascending order to out and returns how many.
+    static int simplify(long[] time, double[] lat, double[] lng, int from, int to,
+                        double toleranceMeters, long gapMs, int[] out, int[] stack) {
+        int n = to - from;
+        if (n <= 2) {
+            for (int i = 0; i < n; i++) out[i] = from + i;
+            return n;
+        }
+
+        // out doubles as the keep mask (1 = kept) until the final compaction
+        for (int i = from; i < to; i++) out[i - from] = 0;
+        out[0] = 1;
+        out[n - 1] = 1;
+
+        // Metres per degree at this latitude, for an equirectangular projection
+        double metersPerDegLat = Math.toRadians(1) * EARTH_RADIUS_METERS;
+        double metersPerDegLng = metersPerDegLat * Math.cos(Math.toRadians(lat[from]));
+        double toleranceSq = toleranceMeters * toleranceMeters;
+
+        int top = 0;
+        int anchor = from;
+        for (int i = from + 1; i < to; i++) {
+            boolean gap = time[i] - time[i - 1] > gapMs;
+            if (gap) {
+                out[i - 1 - from] = 1;
+                out[i - from] = 1;
+            }
+            if (gap || i == to - 1) {
+                int end = gap ? i - 1 : i;
+                if (end - anchor > 1) {
+                    stack[top++] = anchor;
+                    stack[top++] = end;
+                }
+                anchor = i;
+            }
+        }
+
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+
+            double ax = 0;
+            double ay = 0;
+            double bx = (lng[end] - lng[start]) * metersPerDegLng;
+            double by = (lat[end] - lat[start]) * metersPerDegLat;
+            double lengthSq = bx * bx + by * by;
+
+            double maxSq = -1;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double px = (lng[i] - lng[start]) * metersPerDegLng;
+                double py = (lat[i] - lat[start]) * metersPerDegLat;
+                double distSq = segmentDistanceSq(px, py, ax, ay, bx, by, lengthSq);
+                if (distSq > maxSq) {
+                    maxSq = distSq;
+                    farthest = i;
+                }
+            }
+
+            if (maxSq > toleranceSq) {
+                out[farthest - from] = 1;
+                if (farthest - start > 1) {
+                    stack[top++] = start;
+                    stack[top++] = farthest;
+                }
+                if (end - farthest > 1) {
+                    stack[top++] = farthest;
+                    stack[top++] = end;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (out[i] == 1) out[count++] = from + i;
+        }
+        return count;
+    }
+
+    private static double segmentDistanceSq(double px, double py, double ax, double ay,
+                                            double bx, double by, double lengthSq) {
+        double t = lengthSq == 0 ? 0 : ((px - ax) * (bx - ax) + (py - ay) * (by - ay)) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double dx = px - (ax + t * (bx - ax));
+        double dy = py - (ay + t * (by - ay));
+        return dx * dx + dy * dy;
+    }
+
+    // Fix time of the i-th unflushed point, oldest first
+    synchronized long pendingTime(int i) {
+        if (i < 0 || i >= pending) throw new IndexOutOfBoundsException(i + " of " + pending);
+        return time[(head + i) % CAPACITY];
+    }
+
+    synchronized int pendingCount() {
+        return pending;
+    }
+
+    long appendedCount() {
+        return appended;
+    }
+
+    long storedCount() {
+        return stored;
+    }
+
+    long droppedCount() {
+        return dropped;
+    }
+
+    long lastFlushMs() {
+        return lastFlushMs;
+    }
+
+    // Average cost of one append in nanoseconds, measured on a scratch ring that never flushes
+    static double measureAppendNanos(int iterations) {
+        LocationTrack scratch = new LocationTrack(null);
+        for (int i = 0; i < iterations; i++) scratch.append(i, 12.97, 77.59, 5f);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) scratch.append(i, 12.97 + i * 1e-6, 77.59, 5f);
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+}
@@ -2,24 +2,45 @@ package com.emergency.alert;
 
 import android.Manifest;
 import android.app.Service;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.location.Location;
+import android.os.BatteryManager;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 
+import java.util.concurrent.TimeUnit;
+
 public class LocationTrackingService extends Service {
 
+    private static final String TAG = "LocationTracking";
+
+    // Set by emergency mode: also stream location updates to the emergency contacts
+    static final String EXTRA_LIVE_UPDATES = "live_updates";
+
     private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
+    private LocationPipeline pipeline;
+    private Handler samplingHandler;
+    private volatile LiveLocationStreamer streamer;
+
+    // Adaptive sampling; sampling thread only
+    private static final long BATTERY_CHECK_MS = TimeUnit.MINUTES.toMillis(1);
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy();
+    private Location previousFix;
+    private long lastBatteryCheck = -BATTERY_CHECK_MS;
+    private int batteryPercent = -1;
+    private boolean charging;
+    private ZoneMonitor zoneMonitor;
 
     @Override
     public void onCreate() {
@@ -47,23 +68,44 @@ public class LocationTrackingService extends Service {
         startLocationUpdates();
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && intent.getBooleanExtra(EXTRA_LIVE_UPDATES, false) && streamer == null) {
+            streamer = new LiveLocationStreamer(this);
+            streamer.start();
+            // Coarse tiers give fixes the streamer rejects; switch up now, not on the next fix
+            if (samplingHandler != null) samplingHandler.post(this::applyLiveSharing);
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    // Fixes are processed off the main looper: cheap consumers on the pipeline thread,
+    // slow ones (disk, zone lookups, battery reads) on workers of their own
     private void startLocationUpdates() {
+        pipeline = new LocationPipeline();
+        samplingHandler = pipeline.newWorker("sampling");
+
+        // The trail wants every fix; the others only care about where we are now
+        pipeline.subscribe("track", LocationTrack.BATCH_SIZE, pipeline.newWorker("track"),
+                LocationTrack.getInstance(this)::append);
+        pipeline.subscribe("sos-payload", 1, SosPayloadCache.getInstance(this)::onLocation);
+        pipeline.subscribe("live-updates", 1, fix -> {
+            LiveLocationStreamer current = streamer;
+            if (current != null) current.onLocation(fix);
+        });
+        // Transitions need every fix, or a quick pass through a small zone is missed
+        zoneMonitor = ZoneMonitor.getInstance(this);
+        pipeline.subscribe("zones", 16, pipeline.newWorker("zones"), zoneMonitor::onFix);
+        pipeline.subscribe("sampling", 1, samplingHandler, this::adaptSampling);
+
+        requestUpdates(samplingPolicy.tier());
+    }
 
+    private void requestUpdates(SamplingPolicy.Tier tier) {
         LocationRequest locationRequest = new LocationRequest.Builder(
-                Priority.PRIORITY_HIGH_ACCURACY,
-                10000
-        ).setMinUpdateIntervalMillis(5000).build();
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(LocationResult result) {
-                if (result == null) return;
-
-                for (Location location : result.getLocations()) {
-                    // Location received (can store or broadcast later)
-                }
-            }
-        };
+                tier.highAccuracy ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY,
+                tier.intervalMs
+        ).setMinUpdateIntervalMillis(tier.minIntervalMs).build();
 
         if (ActivityCompat.checkSelfPermission(
                 this,
@@ -73,23 +115,77 @@ public class LocationTrackingService extends Service {
             return;
         }
 
+        // Re-requesting with the same callback replaces the previous request
         fusedLocationClient.requestLocationUpdates(
                 locationRequest,
-                locationCallback,
-                Looper.getMainLooper()
+                pipeline.callback(),
+                pipeline.looper()
         );
     }
 
+    // Sampling thread
+    private void applyLiveSharing() {
+        SamplingPolicy.Tier before = samplingPolicy.tier();
+        SamplingPolicy.Tier tier = samplingPolicy.setLiveSharing(streamer != null, SystemClock.elapsedRealtime());
+        if (tier != before) {
+            Log.d(TAG, "Sampling " + before + " -> " + tier + " for live updates");
+            requestUpdates(tier);
+        }
+    }
+
+    private void adaptSampling(Location location) {
+        long now = SystemClock.elapsedRealtime();
+
+        float speed;
+        if (location.hasSpeed()) {
+            speed = location.getSpeed();
+        } else if (previousFix != null && location.getTime() > previousFix.getTime()) {
+            speed = previousFix.distanceTo(location) * 1000f / (location.getTime() - previousFix.getTime());
+        } else {
+            speed = 0;
+        }
+        previousFix = location;
+
+        if (now - lastBatteryCheck >= BATTERY_CHECK_MS) {
+            lastBatteryCheck = now;
+            readBattery();
+        }
+
+        SamplingPolicy.Tier before = samplingPolicy.tier();
+        double zoneDistance = zoneMonitor.distanceToNearest(location);
+        SamplingPolicy.Tier tier = samplingPolicy.update(now, speed, batteryPercent, charging, zoneDistance);
+        if (tier != before) {
+            Log.d(TAG, "Sampling " + before + " -> " + tier + " (GPS on ~" +
+                    TimeUnit.MILLISECONDS.toMinutes(samplingPolicy.projectedGpsOnMillis(now)) + " min so far)");
+            requestUpdates(tier);
+        }
+    }
+
+    // Sticky broadcast, so no receiver stays registered
+    private void readBattery() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return;
+
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        batteryPercent = level >= 0 && scale > 0 ? level * 100 / scale : -1;
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (fusedLocationClient != null && locationCallback != null) {
-            fusedLocationClient.removeLocationUpdates(locationCallback);
+        if (streamer != null) streamer.stop();
+        LocationTrack.getInstance(this).flush();
+        if (fusedLocationClient != null && pipeline != null) {
+            fusedLocationClient.removeLocationUpdates(pipeline.callback());
+            pipeline.quit();
         }
     }
 
     @Override
-    public IBinder onBind(android.content.Intent intent) {
+    public IBinder onBind(Intent intent) {
         return null;
     }
 }
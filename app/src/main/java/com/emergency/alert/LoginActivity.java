@@ -14,7 +14,7 @@ public class LoginActivity extends AppCompatActivity {
 
     private EditText etUsername, etPassword;
     private Button btnLogin, btnRegister;
-    private DatabaseHelper dbHelper;
+    private AsyncDatabase asyncDb;
     private SharedPreferences sharedPreferences;
 
     @Override
@@ -22,7 +22,7 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
-        dbHelper = new DatabaseHelper(this);
+        asyncDb = AsyncDatabase.getInstance(this);
         sharedPreferences = getSharedPreferences("EmergencyAlertPrefs", MODE_PRIVATE);
 
         // Check if user already logged in
@@ -61,16 +61,20 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        if (dbHelper.checkUser(username, password)) {
-            SharedPreferences.Editor editor = sharedPreferences.edit();
-            editor.putString("username", username);
-            editor.apply();
-
-            Toast.makeText(this, "Login successful!", Toast.LENGTH_SHORT).show();
-            navigateToMain();
-        } else {
-            Toast.makeText(this, "Invalid credentials", Toast.LENGTH_SHORT).show();
-        }
+        btnLogin.setEnabled(false);
+        asyncDb.submit(this, db -> db.checkUser(username, password), valid -> {
+            btnLogin.setEnabled(true);
+            if (valid) {
+                SharedPreferences.Editor editor = sharedPreferences.edit();
+                editor.putString("username", username);
+                editor.apply();
+
+                Toast.makeText(this, "Login successful!", Toast.LENGTH_SHORT).show();
+                navigateToMain();
+            } else {
+                Toast.makeText(this, "Invalid credentials", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void register() {
@@ -82,12 +86,16 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        if (dbHelper.registerUser(username, password)) {
-            Toast.makeText(this, "Registration successful! Please login.", Toast.LENGTH_SHORT).show();
-            etPassword.setText("");
-        } else {
-            Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
-        }
+        btnRegister.setEnabled(false);
+        asyncDb.submit(this, db -> db.registerUser(username, password), registered -> {
+            btnRegister.setEnabled(true);
+            if (registered) {
+                Toast.makeText(this, "Registration successful! Please login.", Toast.LENGTH_SHORT).show();
+                etPassword.setText("");
+            } else {
+                Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void navigateToMain() {
@@ -16,10 +16,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
@@ -29,10 +27,13 @@ public class MainActivity extends AppCompatActivity {
     private Button btnEmergencyMode, btnSOS, btnCallEmergency;
     private Button btnProfile, btnContacts, btnLocation, btnCalculator, btnWebInfo, btnImageEditor;
 
-    private DatabaseHelper dbHelper;
+    private AsyncDatabase asyncDb;
     private SharedPreferences prefs;
     private boolean isEmergencyMode = false;
 
+    private long activeDispatchId = -1;
+    private final MessagingEngine.Listener sosListener = this::onSOSUpdated;
+
     private static final int PERMISSION_REQUEST = 100;
     private static final int SMS_PERMISSION_REQUEST = 200;
     private static final String TAG = "MainActivity";
@@ -45,7 +46,7 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "onCreate started");
 
         try {
-            dbHelper = new DatabaseHelper(this);
+            asyncDb = AsyncDatabase.getInstance(this);
             Log.d(TAG, "Database initialized");
         } catch (Exception e) {
             Log.e(TAG, "Database initialization failed", e);
@@ -58,9 +59,38 @@ public class MainActivity extends AppCompatActivity {
         setupListeners();
         verifyDatabase();
 
+        // Prune old geofence history once the UI has settled
+        EventRetention.scheduleWhenIdle(this);
+
         Log.d(TAG, "onCreate completed");
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        MessagingEngine.getInstance(this).addListener(sosListener);
+        prewarmSOSPayload();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        MessagingEngine.getInstance(this).removeListener(sosListener);
+    }
+
+    // Seeds the SOS payload from the last known fix so the SOS button never waits for location.
+    // The cache loads the persisted fix off the main thread even without location permission.
+    private void prewarmSOSPayload() {
+        SosPayloadCache payloadCache = SosPayloadCache.getInstance(this);
+        if (ActivityCompat.checkSelfPermission(this,
+                Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+
+        LocationServices.getFusedLocationProviderClient(this).getLastLocation()
+                .addOnSuccessListener(payloadCache::onLocation);
+    }
+
     private void initializeViews() {
         Log.d(TAG, "initializeViews started");
 
@@ -100,7 +130,7 @@ public class MainActivity extends AppCompatActivity {
         btnCalculator.setOnClickListener(v -> startActivity(new Intent(this, CalculatorActivity.class)));
         btnWebInfo.setOnClickListener(v -> startActivity(new Intent(this, WebViewActivity.class)));
         btnImageEditor.setOnClickListener(v -> startActivity(new Intent(this, ImageEditorActivity.class)));
-        btnLocation.setOnClickListener(v -> startLocationTracking());
+        btnLocation.setOnClickListener(v -> startLocationTracking(false));
 
         // Safety Tips button
         try {
@@ -186,7 +216,7 @@ public class MainActivity extends AppCompatActivity {
         if (isEmergencyMode) {
             mainLayout.setBackgroundColor(Color.RED);
             tvStatus.setText("⚠️ EMERGENCY MODE ACTIVE");
-            startLocationTracking();
+            startLocationTracking(true);
 
             Intent i = new Intent(this, MediaService.class);
             i.setAction("PLAY_SIREN");
@@ -205,21 +235,39 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void sendSOS() {
-        if (dbHelper == null) {
+        long tappedAt = PhaseTracer.now();
+        long span = PhaseTracer.begin();
+
+        if (asyncDb == null) {
             Toast.makeText(this, "Database not available", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        List<DatabaseHelper.EmergencyContact> contacts = dbHelper.getAllEmergencyContacts();
+        // Fast path: contacts were warmed by verifyDatabase, no thread hop needed
+        List<DatabaseHelper.EmergencyContact> contacts = DatabaseHelper.getInstance(this).peekEmergencyContacts();
+        if (contacts != null) {
+            PhaseTracer.end(PhaseTracer.Phase.SOS_CONTACTS, span);
+            sendSOS(contacts, tappedAt);
+        } else {
+            asyncDb.submit(this, DatabaseHelper::getAllEmergencyContacts, c -> {
+                PhaseTracer.end(PhaseTracer.Phase.SOS_CONTACTS, span);
+                sendSOS(c, tappedAt);
+            });
+        }
+    }
 
+    private void sendSOS(List<DatabaseHelper.EmergencyContact> contacts, long tappedAt) {
         if (contacts.isEmpty()) {
             Toast.makeText(this, "No emergency contacts. Add contacts first!", Toast.LENGTH_LONG).show();
             return;
         }
 
         // Check SMS permission first
-        if (ActivityCompat.checkSelfPermission(this,
-                Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+        long span = PhaseTracer.begin();
+        boolean canSend = ActivityCompat.checkSelfPermission(this,
+                Manifest.permission.SEND_SMS) == PackageManager.PERMISSION_GRANTED;
+        PhaseTracer.end(PhaseTracer.Phase.SOS_PERMISSIONS, span);
+        if (!canSend) {
             Toast.makeText(this, "SMS permission required. Requesting...", Toast.LENGTH_LONG).show();
             ActivityCompat.requestPermissions(this,
                     new String[]{Manifest.permission.SEND_SMS},
@@ -227,87 +275,54 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Get current location and send SOS with location
-        if (ActivityCompat.checkSelfPermission(this,
-                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-
-            FusedLocationProviderClient fusedLocationClient =
-                    LocationServices.getFusedLocationProviderClient(this);
-
-            fusedLocationClient.getLastLocation()
-                    .addOnSuccessListener(this, location -> {
-                        String sosMessage;
-                        if (location != null) {
-                            double lat = location.getLatitude();
-                            double lng = location.getLongitude();
-                            sosMessage = String.format(java.util.Locale.US,
-                                    "🚨 EMERGENCY! I need help!\n\n" +
-                                            "My Location:\nhttps://maps.google.com/?q=%.6f,%.6f\n\n" +
-                                            "Please respond immediately!",
-                                    lat, lng);
-                            Log.d(TAG, "SOS with location: " + lat + ", " + lng);
-                        } else {
-                            sosMessage = "🚨 EMERGENCY! I need help!\n\nLocation unavailable. Please call me immediately!";
-                            Log.d(TAG, "SOS without location");
-                        }
+        // Never wait for location: send now with the best fix we already have (persisted
+        // across restarts) and let SosLocationRace follow up if a fresh fix is much better
+        span = PhaseTracer.begin();
+        SosPayloadCache payloadCache = SosPayloadCache.getInstance(this);
+        SosPayloadCache.Payload payload = payloadCache.forSend();
+        PhaseTracer.end(PhaseTracer.Phase.SOS_LOCATION, span);
+        Log.d(TAG, payload.hasLocation() ? "SOS with cached location (" + payload.fixAge + ")" : "SOS without location");
 
-                        sendSOSMessages(contacts, sosMessage);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to get location", e);
-                        String sosMessage = "🚨 EMERGENCY! I need help!\n\nPlease call me immediately!";
-                        sendSOSMessages(contacts, sosMessage);
-                    });
-        } else {
-            String sosMessage = "🚨 EMERGENCY! I need help!\n\nPlease call me immediately!";
-            sendSOSMessages(contacts, sosMessage);
+        if (sendSOSMessages(contacts, payload, tappedAt)) {
+            SosLocationRace.start(this, contacts, payload);
         }
     }
 
-    private void sendSOSMessages(List<DatabaseHelper.EmergencyContact> contacts, String message) {
+    private boolean sendSOSMessages(List<DatabaseHelper.EmergencyContact> contacts,
+                                    SosPayloadCache.Payload payload, long tappedAt) {
         // Double-check SMS permission
         if (ActivityCompat.checkSelfPermission(this,
                 Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
             Toast.makeText(this, "❌ SMS permission denied. Cannot send messages.",
                     Toast.LENGTH_LONG).show();
             Log.e(TAG, "SMS permission not granted");
-            return;
+            return false;
         }
 
-        int successCount = 0;
-        int failCount = 0;
+        Log.d(TAG, "Queueing SOS for " + contacts.size() + " contacts");
 
-        Log.d(TAG, "Attempting to send SOS to " + contacts.size() + " contacts");
+        // All recipients go into the outbox at once; results arrive through sosListener
+        long span = PhaseTracer.begin();
+        activeDispatchId = MessagingEngine.getInstance(this).dispatch(contacts, payload, tappedAt);
+        PhaseTracer.end(PhaseTracer.Phase.SOS_ENQUEUE, span);
 
-        for (DatabaseHelper.EmergencyContact c : contacts) {
-            try {
-                android.telephony.SmsManager smsManager = android.telephony.SmsManager.getDefault();
+        // Handed to the journal thread for an immediate commit, without holding up the tap
+        span = PhaseTracer.begin();
+        EventJournal.getInstance(this).recordUrgent("SOS", null,
+                "Queued for " + contacts.size() + " contact(s)");
+        PhaseTracer.end(PhaseTracer.Phase.SOS_JOURNAL, span);
 
-                // Split long messages if needed
-                ArrayList<String> parts = smsManager.divideMessage(message);
-
-                Log.d(TAG, "Sending SMS to: " + c.name + " (" + c.phone + "), Parts: " + parts.size());
-
-                if (parts.size() > 1) {
-                    // Send multi-part SMS
-                    smsManager.sendMultipartTextMessage(c.phone, null, parts, null, null);
-                } else {
-                    // Send single SMS
-                    smsManager.sendTextMessage(c.phone, null, message, null, null);
-                }
+        Toast.makeText(this, "🚨 Sending SOS to " + contacts.size() + " contact(s)...",
+                Toast.LENGTH_SHORT).show();
+        return true;
+    }
 
-                successCount++;
-                Log.d(TAG, "✅ SOS sent successfully to: " + c.name + " (" + c.phone + ")");
+    private void onSOSUpdated(MessagingEngine.Summary summary) {
+        if (summary.dispatchId != activeDispatchId || !summary.isSettled()) return;
+        activeDispatchId = -1;
 
-            } catch (SecurityException e) {
-                failCount++;
-                Log.e(TAG, "❌ SMS permission denied for " + c.name, e);
-                Toast.makeText(this, "SMS permission denied!", Toast.LENGTH_SHORT).show();
-            } catch (Exception e) {
-                failCount++;
-                Log.e(TAG, "❌ Error sending SMS to " + c.name + " (" + c.phone + ")", e);
-            }
-        }
+        int successCount = summary.sent + summary.delivered;
+        int failCount = summary.failed;
 
         // Show detailed result
         if (successCount > 0 && failCount == 0) {
@@ -322,7 +337,7 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void startLocationTracking() {
+    private void startLocationTracking(boolean liveUpdates) {
         if (ContextCompat.checkSelfPermission(this,
                 Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -331,6 +346,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         Intent intent = new Intent(this, LocationTrackingService.class);
+        intent.putExtra(LocationTrackingService.EXTRA_LIVE_UPDATES, liveUpdates);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             startForegroundService(intent);
         } else {
@@ -380,25 +396,32 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void verifyDatabase() {
-        if (dbHelper == null) {
+        if (asyncDb == null) {
             Log.e(TAG, "Database is null");
             Toast.makeText(this, "Database not initialized", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        try {
-            int tipCount = dbHelper.getAllSafetyTips().size();
-            int contactCount = dbHelper.getAllEmergencyContacts().size();
-
-            Log.d(TAG, "✅ Database connected!");
-            Log.d(TAG, "   Safety Tips: " + tipCount);
-            Log.d(TAG, "   Contacts: " + contactCount);
+        asyncDb.submit(this, db -> {
+            // Load contacts into memory now so SOS starts without touching disk
+            db.warmContactCache();
+            return new long[]{db.getSafetyTipCount(), db.getEmergencyContactCount()};
+        }, new AsyncDatabase.Callback<long[]>() {
+            @Override
+            public void onResult(long[] counts) {
+                Log.d(TAG, "✅ Database connected!");
+                Log.d(TAG, "   Safety Tips: " + counts[0]);
+                Log.d(TAG, "   Contacts: " + counts[1]);
+
+                Toast.makeText(MainActivity.this, "DB Ready: " + counts[0] + " tips, " + counts[1] + " contacts",
+                        Toast.LENGTH_SHORT).show();
+            }
 
-            Toast.makeText(this, "DB Ready: " + tipCount + " tips, " + contactCount + " contacts",
-                    Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Database error", e);
-            Toast.makeText(this, "Database error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "❌ Database error", e);
+                Toast.makeText(MainActivity.this, "Database error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,619 @@
+package com.emergency.alert;
+
+import android.app.AlarmManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single SMS engine for SOS alerts and location shares. Every recipient becomes a row in
+// sms_outbox, written in one transaction before anything is sent, and the row tracks
+// QUEUED -> SENDING -> SENT -> DELIVERED from the radio's receipts. Failed sends go back to
+// QUEUED with exponential backoff; since the state lives on disk, a killed process picks up
+// where it left off.
+//
+// Sends are paced by a token bucket so the app never trips the platform's SMS limit
+// (30 messages per 30 minutes by default), which would block sending behind a confirmation
+// dialog. Every part sent is paid for, SOS included. SOS rows go first and may use the
+// whole bucket; routine traffic (location shares, live updates, SOS follow-ups) has to leave
+// SOS_RESERVE tokens behind, so an SOS normally finds them waiting. If an SOS is larger
+// than what is left, the rest of it stays QUEUED until the bucket refills.
+final class MessagingEngine implements SmsTransport.Receipts {
+
+    private static final String TAG = "MessagingEngine";
+
+    static final String TABLE_OUTBOX = "sms_outbox";
+    private static final String COL_ID = "id";
+    private static final String COL_DISPATCH_ID = "dispatch_id"; // groups the rows of one SOS
+    private static final String COL_RECIPIENT = "recipient";
+    private static final String COL_PHONE = "phone";
+    private static final String COL_MESSAGE = "message";
+    private static final String COL_STATE = "state";
+    private static final String COL_ATTEMPTS = "attempts";
+    private static final String COL_PARTS = "parts";
+    private static final String COL_PARTS_PENDING = "parts_pending"; // receipts still expected for the current state
+    private static final String COL_NEXT_ATTEMPT = "next_attempt_at"; // epoch millis
+    private static final String COL_UPDATED = "updated_at";
+    private static final String COL_LAST_ERROR = "last_error";
+    static final String COL_PRIORITY = "priority"; // lower is sent first
+
+    static final int STATE_QUEUED = 0;
+    static final int STATE_SENDING = 1;
+    static final int STATE_SENT = 2;
+    static final int STATE_DELIVERED = 3;
+    static final int STATE_FAILED = 4;
+
+    static final int PRIORITY_SOS = 0;
+    static final int PRIORITY_ROUTINE = 1;
+
+    static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(5);
+    // A send with no receipt after this long is treated as failed (e.g. the process died mid-send)
+    static final long SEND_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+
+    // Tap-to-first-SMS-handed-to-the-radio budget; slower dispatches are logged as warnings
+    static final long FIRST_SEND_BUDGET_MS = 1000;
+
+    // Capacity + refill over one window = 30 parts, so sends can never exceed the platform
+    // default in any 30-minute window (short of a single message longer than the bucket).
+    private static final int BUCKET_CAPACITY = 10;
+    private static final int BUCKET_REFILL = 20;
+    private static final long BUCKET_WINDOW_MS = TimeUnit.MINUTES.toMillis(30);
+    // Tokens routine traffic must leave in the bucket for an SOS
+    private static final int SOS_RESERVE = 4;
+
+    private static final String PREFS = "EmergencyAlertPrefs";
+    private static final String PREF_BUCKET_TOKENS = "sms_bucket_tokens";
+    private static final String PREF_BUCKET_TIME = "sms_bucket_time";
+
+    private static final int PARTS_CACHE_SIZE = 8;
+
+    private static volatile MessagingEngine instance;
+
+    private final Context appContext;
+    private final OutboxStore store;
+    private final SmsTransport transport;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastDispatchId = new AtomicLong();
+    private volatile int queueDepth;
+
+    // Touched only on the executor thread
+    private ScheduledFuture<?> scheduledPump;
+    private final Map<Long, Long> requestedAtNanos = new HashMap<>();
+    private TokenBucket bucket;
+    private long throttledUntil; // wall time the bucket lets the head of the queue go, 0 if not throttled
+    // Parts of recent messages, reused instead of splitting the same text per recipient
+    private final Map<String, ArrayList<String>> partsCache =
+            new LinkedHashMap<String, ArrayList<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ArrayList<String>> eldest) {
+                    return size() > PARTS_CACHE_SIZE;
+                }
+            };
+
+    // The database holding sms_outbox: DatabaseHelper's in the app, any database with
+    // createOutboxTable applied in tests
+    interface OutboxStore {
+        SQLiteDatabase getWritableDatabase();
+    }
+
+    // Wall time for backoff, timeouts and the token bucket; a simulated clock in tests
+    interface Clock {
+        long currentTimeMillis();
+    }
+
+    // Called on the main thread whenever a row of the dispatch changes state
+    interface Listener {
+        void onDispatchUpdated(Summary summary);
+    }
+
+    static class Summary {
+        long dispatchId;
+        int queued;
+        int sending;
+        int sent;
+        int delivered;
+        int failed;
+
+        int total() {
+            return queued + sending + sent + delivered + failed;
+        }
+
+        // Every recipient has either reached the radio or used up its retries
+        boolean isSettled() {
+            return queued == 0 && sending == 0;
+        }
+    }
+
+    static MessagingEngine getInstance(Context context) {
+        MessagingEngine engine = instance;
+        if (engine == null) {
+            synchronized (MessagingEngine.class) {
+                engine = instance;
+                if (engine == null) {
+                    engine = new MessagingEngine(context, DatabaseHelper.getInstance(context)::getWritableDatabase,
+                            new SmsManagerTransport(context), System::currentTimeMillis);
+                    instance = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    // Visible for fake transports, scratch outboxes and simulated clocks
+    MessagingEngine(Context context, OutboxStore store, SmsTransport transport, Clock clock) {
+        this.appContext = context.getApplicationContext();
+        this.store = store;
+        this.transport = transport;
+        this.clock = clock;
+
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "sms-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        executor = pool;
+    }
+
+    static void createOutboxTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " (" +
+                COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_DISPATCH_ID + " INTEGER NOT NULL, " +
+                COL_RECIPIENT + " TEXT, " +
+                COL_PHONE + " TEXT NOT NULL, " +
+                COL_MESSAGE + " TEXT NOT NULL, " +
+                COL_STATE + " INTEGER NOT NULL DEFAULT " + STATE_QUEUED + ", " +
+                COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_PARTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_PARTS_PENDING + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_NEXT_ATTEMPT + " INTEGER NOT NULL, " +
+                COL_UPDATED + " INTEGER NOT NULL, " +
+                COL_LAST_ERROR + " TEXT, " +
+                COL_PRIORITY + " INTEGER NOT NULL DEFAULT " + PRIORITY_SOS + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_state ON " + TABLE_OUTBOX +
+                " (" + COL_STATE + ", " + COL_NEXT_ATTEMPT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_dispatch ON " + TABLE_OUTBOX +
+                " (" + COL_DISPATCH_ID + ")");
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Queues the SOS for every contact ahead of any other traffic and starts sending right
+    // away. Safe to call from the main thread; requestedAt is the PhaseTracer.now() of the SOS
+    // tap, used to measure tap-to-first-send. Returns the id reported to listeners.
+    long dispatch(List<DatabaseHelper.EmergencyContact> contacts, SosPayloadCache.Payload payload, long requestedAt) {
+        return enqueue(contacts, payload.message, payload.parts, PRIORITY_SOS, requestedAt);
+    }
+
+    // Queues a routine message (location share) behind any SOS traffic
+    long share(List<DatabaseHelper.EmergencyContact> contacts, String message) {
+        return enqueue(contacts, message, null, PRIORITY_ROUTINE, 0);
+    }
+
+    // The precise-fix follow-up to an SOS: the alert itself is already out, so this is
+    // paced like any other routine message
+    long followUp(List<DatabaseHelper.EmergencyContact> contacts, SosPayloadCache.Payload payload) {
+        return enqueue(contacts, payload.message, payload.parts, PRIORITY_ROUTINE, 0);
+    }
+
+    // Messages queued or in flight across all dispatches, as of the last pump or receipt
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    private long enqueue(List<DatabaseHelper.EmergencyContact> contacts, String message,
+                         ArrayList<String> parts, int priority, long requestedAt) {
+        long dispatchId = nextDispatchId();
+        List<DatabaseHelper.EmergencyContact> recipients = new ArrayList<>(contacts);
+
+        executor.execute(() -> {
+            if (requestedAt != 0) requestedAtNanos.put(dispatchId, requestedAt);
+            if (parts != null) partsCache.put(message, parts);
+
+            long now = clock.currentTimeMillis();
+            SQLiteDatabase db = store.getWritableDatabase();
+            db.beginTransactionNonExclusive();
+            try {
+                ContentValues values = new ContentValues();
+                for (DatabaseHelper.EmergencyContact contact : recipients) {
+                    values.clear();
+                    values.put(COL_DISPATCH_ID, dispatchId);
+                    values.put(COL_RECIPIENT, contact.name);
+                    values.put(COL_PHONE, contact.phone);
+                    values.put(COL_MESSAGE, message);
+                    values.put(COL_PRIORITY, priority);
+                    values.put(COL_NEXT_ATTEMPT, now);
+                    values.put(COL_UPDATED, now);
+                    db.insert(TABLE_OUTBOX, null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d(TAG, "Dispatch " + dispatchId + " (priority " + priority + ") queued for " +
+                    recipients.size() + " recipient(s)");
+            pump();
+        });
+        return dispatchId;
+    }
+
+    // Resends whatever is due; called on app start, on boot and from the retry alarm
+    void resume() {
+        executor.execute(this::pump);
+    }
+
+    // Runs after everything queued so far, e.g. to finish a receiver's goAsync()
+    void runAfterPendingWork(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    @Override
+    public void onSent(long outboxId, int attempt, boolean success, String error) {
+        executor.execute(() -> {
+            SQLiteDatabase db = store.getWritableDatabase();
+            long now = clock.currentTimeMillis();
+
+            if (!success) {
+                if (isCurrent(db, outboxId, attempt, STATE_SENDING)) {
+                    failAttempt(db, outboxId, attempt, error, now);
+                    afterChange(db, outboxId);
+                }
+                return;
+            }
+
+            // Once the last part is out the counter is re-armed for delivery receipts
+            if (countDownPart(db, outboxId, attempt, STATE_SENDING)) {
+                db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_STATE + " = " + STATE_SENT + ", " +
+                                COL_PARTS_PENDING + " = " + COL_PARTS + ", " + COL_UPDATED + " = ?, " +
+                                COL_LAST_ERROR + " = NULL WHERE " + COL_ID + " = ?",
+                        new Object[]{now, outboxId});
+                afterChange(db, outboxId);
+            }
+        });
+    }
+
+    @Override
+    public void onDelivered(long outboxId, int attempt, boolean success, String error) {
+        executor.execute(() -> {
+            SQLiteDatabase db = store.getWritableDatabase();
+
+            if (!success) {
+                // The message did leave the phone; resending would only duplicate it
+                db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_LAST_ERROR + " = ? WHERE " +
+                        COL_ID + " = ?", new Object[]{error, outboxId});
+                return;
+            }
+
+            if (countDownPart(db, outboxId, attempt, STATE_SENT)) {
+                db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_STATE + " = " + STATE_DELIVERED + ", " +
+                                COL_UPDATED + " = ? WHERE " + COL_ID + " = ?",
+                        new Object[]{clock.currentTimeMillis(), outboxId});
+                afterChange(db, outboxId);
+            }
+        });
+    }
+
+    // Executor thread only
+    private void pump() {
+        SQLiteDatabase db = store.getWritableDatabase();
+        long now = clock.currentTimeMillis();
+
+        // Sends that never got a receipt, most likely because the process died mid-send
+        List<long[]> stale = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + COL_ID + ", " + COL_ATTEMPTS + " FROM " + TABLE_OUTBOX +
+                        " WHERE " + COL_STATE + " = " + STATE_SENDING + " AND " + COL_UPDATED + " < ?",
+                new String[]{String.valueOf(now - SEND_TIMEOUT_MS)});
+        try {
+            while (cursor.moveToNext()) stale.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+        } finally {
+            cursor.close();
+        }
+        for (long[] row : stale) {
+            failAttempt(db, row[0], (int) row[1], "no send receipt", now);
+        }
+
+        List<Outgoing> due = claimDue(db, now);
+        for (Outgoing out : due) {
+            try {
+                ArrayList<String> parts = out.parts;
+                transport.send(out.id, out.attempt, out.phone, parts, this);
+                recordFirstSend(out.dispatchId);
+                db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_PARTS + " = ?, " + COL_PARTS_PENDING +
+                                " = ? WHERE " + COL_ID + " = ? AND " + COL_ATTEMPTS + " = ?",
+                        new Object[]{parts.size(), parts.size(), out.id, out.attempt});
+            } catch (Exception e) {
+                Log.e(TAG, "Send to outbox row " + out.id + " failed", e);
+                failAttempt(db, out.id, out.attempt, String.valueOf(e.getMessage()), now);
+            }
+        }
+
+        for (Long dispatchId : dispatchIdsOf(db, due, stale)) notifyListeners(db, dispatchId);
+        scheduleNextPump(db);
+    }
+
+    private ArrayList<String> partsFor(String message) {
+        ArrayList<String> parts = partsCache.get(message);
+        if (parts == null) {
+            parts = transport.divide(message); // e.g. retries after a restart
+            partsCache.put(message, parts);
+        }
+        return parts;
+    }
+
+    private void recordFirstSend(long dispatchId) {
+        Long requestedAt = requestedAtNanos.remove(dispatchId);
+        if (requestedAt == null) return;
+
+        PhaseTracer.end(PhaseTracer.Phase.SOS_FIRST_SEND, requestedAt);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(PhaseTracer.now() - requestedAt);
+        if (elapsedMs > FIRST_SEND_BUDGET_MS) {
+            Log.w(TAG, "Dispatch " + dispatchId + ": first SMS handed off " + elapsedMs +
+                    " ms after the tap (budget " + FIRST_SEND_BUDGET_MS + " ms)");
+        } else {
+            Log.d(TAG, "Dispatch " + dispatchId + ": first SMS handed off " + elapsedMs + " ms after the tap");
+        }
+    }
+
+    // Moves due QUEUED rows to SENDING in one transaction and bumps their attempt number,
+    // highest priority first, as far as the bucket allows. SOS rows may take the reserve,
+    // routine rows may not; the first row that has to wait holds back everything after it.
+    private List<Outgoing> claimDue(SQLiteDatabase db, long now) {
+        List<Outgoing> due = new ArrayList<>();
+        TokenBucket tokens = bucket();
+        throttledUntil = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            Cursor cursor = db.rawQuery("SELECT " + COL_ID + ", " + COL_DISPATCH_ID + ", " + COL_PHONE + ", " +
+                            COL_MESSAGE + ", " + COL_ATTEMPTS + ", " + COL_PRIORITY + " FROM " + TABLE_OUTBOX +
+                            " WHERE " + COL_STATE + " = " + STATE_QUEUED + " AND " + COL_NEXT_ATTEMPT + " <= ?" +
+                            " ORDER BY " + COL_PRIORITY + ", " + COL_ID,
+                    new String[]{String.valueOf(now)});
+            try {
+                while (cursor.moveToNext()) {
+                    Outgoing out = new Outgoing();
+                    out.id = cursor.getLong(0);
+                    out.dispatchId = cursor.getLong(1);
+                    out.phone = cursor.getString(2);
+                    out.message = cursor.getString(3);
+                    out.attempt = cursor.getInt(4) + 1;
+                    out.parts = partsFor(out.message);
+
+                    int reserve = cursor.getInt(5) == PRIORITY_SOS ? 0 : SOS_RESERVE;
+                    if (!tokens.tryAcquire(out.parts.size(), reserve, now)) {
+                        throttledUntil = now + Math.max(1, tokens.millisUntil(out.parts.size(), reserve, now));
+                        break;
+                    }
+                    due.add(out);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            for (Outgoing out : due) {
+                db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_STATE + " = " + STATE_SENDING + ", " +
+                                COL_ATTEMPTS + " = ?, " + COL_PARTS_PENDING + " = 0, " + COL_UPDATED + " = ? WHERE " +
+                                COL_ID + " = ?",
+                        new Object[]{out.attempt, now, out.id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (!due.isEmpty()) saveBucket(tokens);
+        if (throttledUntil > 0) {
+            Log.d(TAG, "Rate limited: next send in " + (throttledUntil - now) / 1000 + " s, " +
+                    tokens.tokens(now) + " token(s) left");
+        }
+        return due;
+    }
+
+    // Loaded lazily on the executor; a fresh install starts with a full bucket
+    private TokenBucket bucket() {
+        if (bucket == null) {
+            SharedPreferences prefs = appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+            long now = clock.currentTimeMillis();
+            bucket = new TokenBucket(BUCKET_CAPACITY, BUCKET_REFILL, BUCKET_WINDOW_MS,
+                    prefs.getFloat(PREF_BUCKET_TOKENS, BUCKET_CAPACITY),
+                    Math.min(now, prefs.getLong(PREF_BUCKET_TIME, now)));
+        }
+        return bucket;
+    }
+
+    // Persisted so a restart cannot hand out a fresh burst the platform still counts against us
+    private void saveBucket(TokenBucket tokens) {
+        long now = clock.currentTimeMillis();
+        appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                .putFloat(PREF_BUCKET_TOKENS, (float) tokens.tokens(now))
+                .putLong(PREF_BUCKET_TIME, tokens.lastRefill())
+                .apply();
+    }
+
+    private void failAttempt(SQLiteDatabase db, long outboxId, int attempt, String error, long now) {
+        if (attempt >= MAX_ATTEMPTS) {
+            Log.w(TAG, "Outbox row " + outboxId + " failed after " + attempt + " attempt(s): " + error);
+            db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_STATE + " = " + STATE_FAILED + ", " +
+                            COL_UPDATED + " = ?, " + COL_LAST_ERROR + " = ? WHERE " + COL_ID + " = ?",
+                    new Object[]{now, error, outboxId});
+        } else {
+            db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_STATE + " = " + STATE_QUEUED + ", " +
+                            COL_NEXT_ATTEMPT + " = ?, " + COL_UPDATED + " = ?, " + COL_LAST_ERROR + " = ? WHERE " +
+                            COL_ID + " = ?",
+                    new Object[]{now + backoff(attempt), now, error, outboxId});
+        }
+    }
+
+    // 5 s, 10 s, 20 s ... capped at 5 min
+    static long backoff(int attempt) {
+        long delay = BASE_BACKOFF_MS << Math.min(attempt - 1, 16);
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+
+    // Receipts from an older attempt or a row that has moved on are ignored
+    private boolean isCurrent(SQLiteDatabase db, long outboxId, int attempt, int state) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM " + TABLE_OUTBOX + " WHERE " + COL_ID + " = ? AND " +
+                        COL_ATTEMPTS + " = ? AND " + COL_STATE + " = ?",
+                new String[]{String.valueOf(outboxId), String.valueOf(attempt), String.valueOf(state)});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Counts one part receipt; true when it was the last one expected
+    private boolean countDownPart(SQLiteDatabase db, long outboxId, int attempt, int state) {
+        if (!isCurrent(db, outboxId, attempt, state)) return false;
+
+        db.execSQL("UPDATE " + TABLE_OUTBOX + " SET " + COL_PARTS_PENDING + " = MAX(0, " +
+                COL_PARTS_PENDING + " - 1) WHERE " + COL_ID + " = ?", new Object[]{outboxId});
+
+        Cursor cursor = db.rawQuery("SELECT " + COL_PARTS_PENDING + " FROM " + TABLE_OUTBOX +
+                " WHERE " + COL_ID + " = ?", new String[]{String.valueOf(outboxId)});
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) == 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void afterChange(SQLiteDatabase db, long outboxId) {
+        Cursor cursor = db.rawQuery("SELECT " + COL_DISPATCH_ID + " FROM " + TABLE_OUTBOX + " WHERE " +
+                COL_ID + " = ?", new String[]{String.valueOf(outboxId)});
+        long dispatchId = -1;
+        try {
+            if (cursor.moveToFirst()) dispatchId = cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+        if (dispatchId >= 0) notifyListeners(db, dispatchId);
+        scheduleNextPump(db);
+    }
+
+    private List<Long> dispatchIdsOf(SQLiteDatabase db, List<Outgoing> due, List<long[]> stale) {
+        List<Long> ids = new ArrayList<>();
+        for (Outgoing out : due) {
+            if (!ids.contains(out.dispatchId)) ids.add(out.dispatchId);
+        }
+        for (long[] row : stale) {
+            Cursor cursor = db.rawQuery("SELECT " + COL_DISPATCH_ID + " FROM " + TABLE_OUTBOX + " WHERE " +
+                    COL_ID + " = ?", new String[]{String.valueOf(row[0])});
+            try {
+                if (cursor.moveToFirst() && !ids.contains(cursor.getLong(0))) ids.add(cursor.getLong(0));
+            } finally {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    private void notifyListeners(SQLiteDatabase db, long dispatchId) {
+        if (listeners.isEmpty()) return;
+
+        Summary summary = new Summary();
+        summary.dispatchId = dispatchId;
+        Cursor cursor = db.rawQuery("SELECT " + COL_STATE + ", COUNT(*) FROM " + TABLE_OUTBOX + " WHERE " +
+                COL_DISPATCH_ID + " = ? GROUP BY " + COL_STATE, new String[]{String.valueOf(dispatchId)});
+        try {
+            while (cursor.moveToNext()) {
+                int count = cursor.getInt(1);
+                switch (cursor.getInt(0)) {
+                    case STATE_QUEUED: summary.queued = count; break;
+                    case STATE_SENDING: summary.sending = count; break;
+                    case STATE_SENT: summary.sent = count; break;
+                    case STATE_DELIVERED: summary.delivered = count; break;
+                    case STATE_FAILED: summary.failed = count; break;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) listener.onDispatchUpdated(summary);
+        });
+    }
+
+    // Wakes the pump for the next retry, send timeout or token refill: an in-process timer
+    // while we are alive, backed by an alarm in case the process is gone by then
+    private void scheduleNextPump(SQLiteDatabase db) {
+        long next = -1;
+        Cursor cursor = db.rawQuery("SELECT " + COL_STATE + ", COUNT(*), MIN(CASE " + COL_STATE +
+                " WHEN " + STATE_QUEUED + " THEN " + COL_NEXT_ATTEMPT +
+                " ELSE " + COL_UPDATED + " + " + SEND_TIMEOUT_MS + " END) FROM " + TABLE_OUTBOX +
+                " WHERE " + COL_STATE + " IN (" + STATE_QUEUED + ", " + STATE_SENDING + ")" +
+                " GROUP BY " + COL_STATE, null);
+        int depth = 0;
+        try {
+            while (cursor.moveToNext()) {
+                depth += cursor.getInt(1);
+                long at = cursor.getLong(2);
+                // Queued rows that are due but out of tokens wait for the refill
+                if (cursor.getInt(0) == STATE_QUEUED) at = Math.max(at, throttledUntil);
+                next = next < 0 ? at : Math.min(next, at);
+            }
+        } finally {
+            cursor.close();
+        }
+        queueDepth = depth;
+
+        if (scheduledPump != null) scheduledPump.cancel(false);
+        AlarmManager alarms = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
+        if (next < 0) {
+            scheduledPump = null;
+            if (alarms != null) alarms.cancel(SmsStatusReceiver.retryIntent(appContext));
+            return;
+        }
+
+        long delay = Math.max(0, next - clock.currentTimeMillis());
+        scheduledPump = executor.schedule(this::pump, delay, TimeUnit.MILLISECONDS);
+        if (alarms != null) {
+            alarms.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next, SmsStatusReceiver.retryIntent(appContext));
+        }
+    }
+
+    // Wall-clock based so ids stay unique across restarts
+    private long nextDispatchId() {
+        while (true) {
+            long last = lastDispatchId.get();
+            long id = Math.max(clock.currentTimeMillis(), last + 1);
+            if (lastDispatchId.compareAndSet(last, id)) return id;
+        }
+    }
+
+    private static final class Outgoing {
+        long id;
+        long dispatchId;
+        String phone;
+        String message;
+        ArrayList<String> parts;
+        int attempt;
+    }
+}
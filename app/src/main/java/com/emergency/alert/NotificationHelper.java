@@ -10,13 +10,20 @@ import android.os.Build;
 
 import androidx.core.app.NotificationCompat;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class NotificationHelper {
 
     public static final String CHANNEL_ID = "EmergencyAlertChannel";
     private static final String CHANNEL_NAME = "Emergency Alerts";
 
+    // Creating a channel is a binder call; once per process is enough
+    private static volatile boolean channelCreated;
+    private static final AtomicInteger nextId = new AtomicInteger(1000);
+
     // 🔹 Notification Channel (Android 8+)
     public static void createNotificationChannel(Context context) {
+        if (channelCreated) return;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                     CHANNEL_ID,
@@ -30,6 +37,7 @@ public class NotificationHelper {
                     context.getSystemService(NotificationManager.class);
             manager.createNotificationChannel(channel);
         }
+        channelCreated = true;
     }
 
     // 🔹 Foreground Service Notification
@@ -56,6 +64,7 @@ public class NotificationHelper {
     }
 
     // 🔹 Normal Emergency Notifications
+    // Always posted at once as a new notification; zone alerts go through AlertNotifier
     public static void showEmergencyNotification(
             Context context, String title, String message) {
 
@@ -82,6 +91,6 @@ public class NotificationHelper {
         NotificationManager manager =
                 (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 
-        manager.notify((int) System.currentTimeMillis(), builder.build());
+        manager.notify(nextId.getAndIncrement(), builder.build());
     }
 }
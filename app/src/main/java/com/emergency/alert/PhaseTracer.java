@@ -0,0 +1,213 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Monotonic-clock spans around the phases of the SOS and share-location paths.
+// Each phase feeds a fixed-size log-linear histogram; recording is one clock read and
+// one atomic increment, no allocation. Histograms are persisted to preferences a few
+// seconds after the last span, so percentiles accumulate across runs.
+final class PhaseTracer {
+
+    private static final String TAG = "PhaseTracer";
+    private static final String PREFS = "EmergencyAlertTrace";
+    private static final long FLUSH_DELAY_MS = 5000;
+
+    enum Phase {
+        SOS_CONTACTS("SOS contacts"),
+        SOS_PERMISSIONS("SOS permission checks"),
+        SOS_LOCATION("SOS location"),
+        SOS_BUILD_MESSAGE("SOS message build"),
+        SOS_ENQUEUE("SOS enqueue"),
+        SOS_JOURNAL("SOS journal commit"),
+        SOS_FIRST_SEND("SOS tap to first SMS"),
+        SHARE_CONTACTS("Share contacts"),
+        SHARE_PERMISSIONS("Share permission checks"),
+        SHARE_BUILD_MESSAGE("Share message build"),
+        SHARE_ENQUEUE("Share enqueue");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    // 8 sub-buckets per power of two of microseconds (~9% resolution), 1 µs up to ~4.5 min
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 28;
+    static final int BUCKETS = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private static final AtomicLongArray[] histograms = new AtomicLongArray[Phase.values().length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    private static volatile boolean enabled = true;
+    private static volatile SharedPreferences prefs;
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private static final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "phase-tracer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private PhaseTracer() {
+    }
+
+    // Loads the stored histograms in the background; spans recorded meanwhile are kept
+    static void init(Context context) {
+        Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            SharedPreferences p = appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+            for (Phase phase : Phase.values()) {
+                decodeInto(p.getString(phase.name(), null), histograms[phase.ordinal()]);
+            }
+            prefs = p;
+        });
+    }
+
+    static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Raw monotonic timestamp, independent of the enabled flag
+    static long now() {
+        return System.nanoTime();
+    }
+
+    // Start of a span; 0 when tracing is off, which end() ignores
+    static long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void end(Phase phase, long begin) {
+        if (begin == 0 || !enabled) return;
+        record(histograms[phase.ordinal()], System.nanoTime() - begin);
+        scheduleFlush();
+    }
+
+    private static void record(AtomicLongArray histogram, long nanos) {
+        histogram.incrementAndGet(bucketFor(nanos));
+    }
+
+    static int bucketFor(long nanos) {
+        long micros = nanos / 1000;
+        if (micros < 1) return 0;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+
+        int sub = exponent >= SUB_BITS
+                ? (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1)
+                : (int) (micros << (SUB_BITS - exponent)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + sub;
+    }
+
+    // Midpoint of a bucket, in microseconds
+    static double bucketValueMicros(int bucket) {
+        int exponent = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        double low = (double) (SUB_BUCKETS + sub) * (1L << exponent) / SUB_BUCKETS;
+        double width = (double) (1L << exponent) / SUB_BUCKETS;
+        return low + width / 2;
+    }
+
+    static long count(Phase phase) {
+        AtomicLongArray histogram = histograms[phase.ordinal()];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += histogram.get(i);
+        return total;
+    }
+
+    // Percentile (0-100) of a phase in milliseconds, or -1 with no samples
+    static double percentileMs(Phase phase, double percentile) {
+        AtomicLongArray histogram = histograms[phase.ordinal()];
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = histogram.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return bucketValueMicros(i) / 1000.0;
+        }
+        return bucketValueMicros(BUCKETS - 1) / 1000.0;
+    }
+
+    static void reset() {
+        for (AtomicLongArray histogram : histograms) {
+            for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+        }
+        scheduleFlush();
+    }
+
+    private static void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        executor.schedule(() -> {
+            flushScheduled.set(false);
+            flush();
+        }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void flush() {
+        SharedPreferences p = prefs;
+        if (p == null) {
+            // Not loaded yet; writing now would overwrite the stored history
+            scheduleFlush();
+            return;
+        }
+
+        SharedPreferences.Editor editor = p.edit();
+        for (Phase phase : Phase.values()) {
+            editor.putString(phase.name(), encode(histograms[phase.ordinal()]));
+        }
+        editor.apply();
+    }
+
+    // Sparse "bucket:count,bucket:count"
+    private static String encode(AtomicLongArray histogram) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = histogram.get(i);
+            if (count == 0) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(i).append(':').append(count);
+        }
+        return sb.toString();
+    }
+
+    private static void decodeInto(String encoded, AtomicLongArray histogram) {
+        if (encoded == null || encoded.isEmpty()) return;
+        try {
+            for (String entry : encoded.split(",")) {
+                int colon = entry.indexOf(':');
+                int bucket = Integer.parseInt(entry.substring(0, colon));
+                if (bucket >= 0 && bucket < BUCKETS) {
+                    histogram.addAndGet(bucket, Long.parseLong(entry.substring(colon + 1)));
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable histogram", e);
+        }
+    }
+}
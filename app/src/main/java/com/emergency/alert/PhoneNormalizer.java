@@ -0,0 +1,86 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.telephony.TelephonyManager;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Cheap E.164 normalization used as the duplicate key for emergency contacts.
+// Deliberately table-driven instead of a full numbering-plan parser so bulk imports
+// stay in the microseconds-per-number range.
+final class PhoneNormalizer {
+
+    // Numbers this short are service numbers (112, 100, 911) and are kept as dialed
+    private static final int MAX_SHORT_CODE_DIGITS = 6;
+
+    private static final Map<String, String> CALLING_CODES = new HashMap<>();
+
+    static {
+        String[] table = {
+                "IN", "91", "US", "1", "CA", "1", "GB", "44", "IE", "353", "AU", "61", "NZ", "64",
+                "DE", "49", "FR", "33", "ES", "34", "IT", "39", "NL", "31", "BE", "32", "CH", "41",
+                "AT", "43", "SE", "46", "NO", "47", "DK", "45", "FI", "358", "PL", "48", "PT", "351",
+                "BR", "55", "MX", "52", "AR", "54", "ZA", "27", "NG", "234", "KE", "254", "EG", "20",
+                "AE", "971", "SA", "966", "PK", "92", "BD", "880", "LK", "94", "NP", "977", "SG", "65",
+                "MY", "60", "ID", "62", "PH", "63", "TH", "66", "VN", "84", "CN", "86", "JP", "81",
+                "KR", "82", "RU", "7", "TR", "90"
+        };
+        for (int i = 0; i < table.length; i += 2) {
+            CALLING_CODES.put(table[i], table[i + 1]);
+        }
+    }
+
+    private final String callingCode;
+
+    PhoneNormalizer(String regionIso) {
+        this.callingCode = regionIso == null ? null : CALLING_CODES.get(regionIso.toUpperCase(Locale.US));
+    }
+
+    static PhoneNormalizer forDevice(Context context) {
+        String region = null;
+        TelephonyManager telephony = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephony != null) {
+            region = telephony.getSimCountryIso();
+            if (region == null || region.isEmpty()) region = telephony.getNetworkCountryIso();
+        }
+        if (region == null || region.isEmpty()) region = Locale.getDefault().getCountry();
+        return new PhoneNormalizer(region);
+    }
+
+    // "+91 98765-43210", "098765 43210" and "9876543210" all become "+919876543210";
+    // returns null when the input has no digits
+    String normalize(String raw) {
+        if (raw == null) return null;
+
+        StringBuilder digits = new StringBuilder(raw.length());
+        boolean plus = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0) {
+                plus = true;
+            }
+        }
+
+        int length = digits.length();
+        if (length == 0) return null;
+        if (plus) return "+" + digits;
+        if (length <= MAX_SHORT_CODE_DIGITS) return digits.toString();
+        if (length > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            return "+" + digits.substring(2);
+        }
+        if (callingCode == null) return digits.toString();
+        if (digits.charAt(0) == '0') {
+            return "+" + callingCode + digits.substring(1);
+        }
+        // National numbers are at most 10 digits nearly everywhere, so longer ones
+        // that start with our calling code already carry it ("919876543210")
+        if (length >= 11 && digits.indexOf(callingCode) == 0) {
+            return "+" + digits;
+        }
+        return "+" + callingCode + digits;
+    }
+}
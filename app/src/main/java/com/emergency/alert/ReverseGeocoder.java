@@ -0,0 +1,324 @@
+package com.emergency.alert;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Asynchronous reverse geocoding, cached per geohash cell (~150 m). Lookups check an
+// in-memory LRU, then the small geocode_cache table, then the backend (the platform
+// Geocoder, which blocks on the network). Concurrent lookups for one cell share a
+// single backend call. cached() answers from memory only and never blocks, so SOS text
+// building can use it on any thread.
+final class ReverseGeocoder {
+
+    private static final String TAG = "ReverseGeocoder";
+
+    // Pluggable so a fake (e.g. with artificial latency) can stand in for Geocoder
+    interface Backend {
+        // One display line, or null when there is no address for the point
+        String lookup(double latitude, double longitude) throws IOException;
+    }
+
+    interface Callback {
+        // Main thread; null when no address could be found
+        void onAddress(String address);
+    }
+
+    static final String TABLE_GEOCODE = "geocode_cache";
+    static final String COL_GEOHASH = "geohash";
+    static final String COL_ADDRESS = "address";
+    static final String COL_UPDATED = "updated_at";
+
+    static final int GEOHASH_PRECISION = 7;
+    private static final int MEMORY_ENTRIES = 128;
+    private static final int DISK_ROWS = 512;
+    // Older rows are refreshed, but still served if the refresh fails
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(30);
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static volatile ReverseGeocoder instance;
+
+    private final DatabaseHelper dbHelper;
+    private final Executor callbackExecutor;
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(32),
+            r -> {
+                Thread t = new Thread(r, "reverse-geocoder");
+                t.setDaemon(true);
+                return t;
+            });
+    private volatile Backend backend;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    // Counters for the diagnostics screen
+    private volatile long memoryHits;
+    private volatile long diskHits;
+    private volatile long backendCalls;
+    private volatile long joined;
+
+    static ReverseGeocoder getInstance(Context context) {
+        ReverseGeocoder geocoder = instance;
+        if (geocoder == null) {
+            synchronized (ReverseGeocoder.class) {
+                geocoder = instance;
+                if (geocoder == null) {
+                    geocoder = new ReverseGeocoder(DatabaseHelper.getInstance(context),
+                            new PlatformBackend(context.getApplicationContext()));
+                    instance = geocoder;
+                }
+            }
+        }
+        return geocoder;
+    }
+
+    ReverseGeocoder(DatabaseHelper dbHelper, Backend backend) {
+        this(dbHelper, backend, new Handler(Looper.getMainLooper())::post);
+    }
+
+    // dbHelper may be null for a memory-only instance (tests); callbacks run on callbackExecutor
+    ReverseGeocoder(DatabaseHelper dbHelper, Backend backend, Executor callbackExecutor) {
+        this.dbHelper = dbHelper;
+        this.backend = backend;
+        this.callbackExecutor = callbackExecutor;
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    static void createCacheTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_GEOCODE + " (" +
+                COL_GEOHASH + " TEXT PRIMARY KEY, " +
+                COL_ADDRESS + " TEXT NOT NULL, " +
+                COL_UPDATED + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_geocode_updated ON " + TABLE_GEOCODE +
+                " (" + COL_UPDATED + ")");
+    }
+
+    // Memory only, any thread
+    String cached(double latitude, double longitude) {
+        String cell = geohash(latitude, longitude, GEOHASH_PRECISION);
+        synchronized (lock) {
+            String address = memory.get(cell);
+            if (address != null) memoryHits++;
+            return address;
+        }
+    }
+
+    void lookup(double latitude, double longitude, Callback callback) {
+        String cell = geohash(latitude, longitude, GEOHASH_PRECISION);
+        synchronized (lock) {
+            String address = memory.get(cell);
+            if (address != null) {
+                memoryHits++;
+                callbackExecutor.execute(() -> callback.onAddress(address));
+                return;
+            }
+            List<Callback> waiting = inFlight.get(cell);
+            if (waiting != null) {
+                joined++;
+                waiting.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>(2);
+            waiting.add(callback);
+            inFlight.put(cell, waiting);
+        }
+
+        try {
+            executor.execute(() -> {
+                String address = null;
+                try {
+                    address = resolve(cell, latitude, longitude);
+                } catch (RuntimeException e) {
+                    // Waiters must still hear back, or the cell stays in flight for good
+                    Log.e(TAG, "Lookup failed for " + cell, e);
+                } finally {
+                    complete(cell, address);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Too many lookups queued, dropping " + cell);
+            complete(cell, null);
+        }
+    }
+
+    // Warms the cache for a point, e.g. from the tracking service; no-op when cached
+    void prefetch(double latitude, double longitude, Callback callback) {
+        if (cached(latitude, longitude) != null) return;
+        lookup(latitude, longitude, callback);
+    }
+
+    // Executor thread
+    private String resolve(String cell, double latitude, double longitude) {
+        String stale = null;
+        SQLiteDatabase db = dbHelper != null ? dbHelper.getWritableDatabase() : null;
+        if (db != null) {
+            Cursor cursor = db.rawQuery("SELECT " + COL_ADDRESS + ", " + COL_UPDATED + " FROM " + TABLE_GEOCODE +
+                    " WHERE " + COL_GEOHASH + " = ?", new String[]{cell});
+            try {
+                if (cursor.moveToFirst()) {
+                    if (System.currentTimeMillis() - cursor.getLong(1) < MAX_AGE_MS) {
+                        diskHits++;
+                        return cursor.getString(0);
+                    }
+                    stale = cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        String address;
+        try {
+            backendCalls++;
+            address = backend.lookup(latitude, longitude);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Geocoder error", e);
+            return stale;
+        }
+        if (address == null) return stale;
+        if (db != null) store(db, cell, address);
+        return address;
+    }
+
+    private static void store(SQLiteDatabase db, String cell, String address) {
+        ContentValues values = new ContentValues();
+        values.put(COL_GEOHASH, cell);
+        values.put(COL_ADDRESS, address);
+        values.put(COL_UPDATED, System.currentTimeMillis());
+        db.beginTransactionNonExclusive();
+        try {
+            db.insertWithOnConflict(TABLE_GEOCODE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            // Keep the table small: only the most recently resolved cells
+            db.execSQL("DELETE FROM " + TABLE_GEOCODE + " WHERE " + COL_GEOHASH + " NOT IN (SELECT " +
+                    COL_GEOHASH + " FROM " + TABLE_GEOCODE + " ORDER BY " + COL_UPDATED + " DESC LIMIT " +
+                    DISK_ROWS + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void complete(String cell, String address) {
+        List<Callback> waiting;
+        synchronized (lock) {
+            if (address != null) memory.put(cell, address);
+            waiting = inFlight.remove(cell);
+        }
+        if (waiting == null) return;
+        callbackExecutor.execute(() -> {
+            for (Callback callback : waiting) callback.onAddress(address);
+        });
+    }
+
+    long memoryHits() {
+        return memoryHits;
+    }
+
+    long diskHits() {
+        return diskHits;
+    }
+
+    long backendCalls() {
+        return backendCalls;
+    }
+
+    long joinedLookups() {
+        return joined;
+    }
+
+    static String geohash(double latitude, double longitude, int precision) {
+        double latMin = -90, latMax = 90;
+        double lngMin = -180, lngMax = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true; // bits alternate longitude, latitude
+        int bit = 0;
+        int ch = 0;
+        int length = 0;
+        while (length < precision) {
+            if (evenBit) {
+                double mid = (lngMin + lngMax) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    lngMin = mid;
+                } else {
+                    ch <<= 1;
+                    lngMax = mid;
+                }
+            } else {
+                double mid = (latMin + latMax) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    latMin = mid;
+                } else {
+                    ch <<= 1;
+                    latMax = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash[length++] = BASE32.charAt(ch);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    // The platform Geocoder, formatted the way LocationActivity always showed addresses
+    static final class PlatformBackend implements Backend {
+        private final Context appContext;
+
+        PlatformBackend(Context appContext) {
+            this.appContext = appContext;
+        }
+
+        // Blocking; the listener variant needs API 33
+        @Override
+        public String lookup(double latitude, double longitude) throws IOException {
+            if (!Geocoder.isPresent()) return null;
+            List<Address> addresses = new Geocoder(appContext, Locale.getDefault())
+                    .getFromLocation(latitude, longitude, 1);
+            if (addresses == null || addresses.isEmpty()) return null;
+
+            Address address = addresses.get(0);
+            StringBuilder line = new StringBuilder();
+            if (address.getFeatureName() != null) line.append(address.getFeatureName()).append(", ");
+            if (address.getLocality() != null) line.append(address.getLocality()).append(", ");
+            if (address.getAdminArea() != null) line.append(address.getAdminArea()).append(", ");
+            if (address.getCountryName() != null) line.append(address.getCountryName());
+            return line.length() > 0 ? line.toString() : null;
+        }
+    }
+}
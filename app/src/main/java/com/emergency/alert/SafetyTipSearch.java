@@ -0,0 +1,144 @@
+package com.emergency.alert;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// FTS4 index over safety_tips(title, content). The FTS table is external-content,
+// so it stores only the index and is kept in sync by triggers on safety_tips.
+final class SafetyTipSearch {
+
+    static final String TABLE_TIPS_FTS = "safety_tips_fts";
+
+    // Title hits count more than body hits when ranking
+    private static final double TITLE_WEIGHT = 4.0;
+    private static final double CONTENT_WEIGHT = 1.0;
+
+    private SafetyTipSearch() {
+    }
+
+    static void createSearchIndex(SQLiteDatabase db) {
+        String tips = DatabaseHelper.TABLE_TIPS;
+        String id = DatabaseHelper.COL_TIP_ID;
+        String title = DatabaseHelper.COL_TIP_TITLE;
+        String content = DatabaseHelper.COL_TIP_CONTENT;
+
+        // prefix index keeps 2- and 3-letter search-as-you-type prefixes off the full term scan
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_TIPS_FTS + " USING fts4(" +
+                "content=\"" + tips + "\", prefix=\"2,3\", " + title + ", " + content + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS safety_tips_fts_ai AFTER INSERT ON " + tips + " BEGIN " +
+                "INSERT INTO " + TABLE_TIPS_FTS + " (docid, " + title + ", " + content + ") " +
+                "VALUES (new." + id + ", new." + title + ", new." + content + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS safety_tips_fts_bd BEFORE DELETE ON " + tips + " BEGIN " +
+                "DELETE FROM " + TABLE_TIPS_FTS + " WHERE docid = old." + id + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS safety_tips_fts_bu BEFORE UPDATE ON " + tips + " BEGIN " +
+                "DELETE FROM " + TABLE_TIPS_FTS + " WHERE docid = old." + id + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS safety_tips_fts_au AFTER UPDATE ON " + tips + " BEGIN " +
+                "INSERT INTO " + TABLE_TIPS_FTS + " (docid, " + title + ", " + content + ") " +
+                "VALUES (new." + id + ", new." + title + ", new." + content + "); END");
+
+        // Facet counts come from this index instead of a table scan
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_tips_category ON " + tips +
+                " (" + DatabaseHelper.COL_TIP_CATEGORY + ")");
+    }
+
+    // Re-indexes rows that existed before the triggers did
+    static void rebuild(SQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_TIPS_FTS + " (" + TABLE_TIPS_FTS + ") VALUES ('rebuild')");
+    }
+
+    // Turns free text into an FTS prefix query ("cpr ste" -> "cpr* ste*"), or null if nothing is searchable
+    static String toMatchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !isWordChar(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && isWordChar(text.charAt(i))) i++;
+            if (i > start) {
+                if (query.length() > 0) query.append(' ');
+                query.append(text, start, i).append('*');
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    // Vowel signs (Devanagari matras and the like) are combining marks, not letters, but
+    // belong to the word; the simple tokenizer indexes them as part of it
+    private static boolean isWordChar(char c) {
+        if (Character.isLetterOrDigit(c)) return true;
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    // Ranked tip ids for a MATCH query; only ids and matchinfo are read at this stage
+    static List<Integer> rankedIds(SQLiteDatabase db, String matchQuery, String category, int limit) {
+        String sql = "SELECT docid, matchinfo(" + TABLE_TIPS_FTS + ", 'pcx') FROM " + TABLE_TIPS_FTS +
+                " WHERE " + TABLE_TIPS_FTS + " MATCH ?";
+        String[] args;
+        if (category == null) {
+            args = new String[]{matchQuery};
+        } else {
+            sql += " AND docid IN (SELECT " + DatabaseHelper.COL_TIP_ID + " FROM " + DatabaseHelper.TABLE_TIPS +
+                    " WHERE " + DatabaseHelper.COL_TIP_CATEGORY + " = ?)";
+            args = new String[]{matchQuery, category};
+        }
+
+        long[] ids;
+        double[] scores;
+        int count = 0;
+        Cursor cursor = db.rawQuery(sql, args);
+        try {
+            ids = new long[cursor.getCount()];
+            scores = new double[ids.length];
+            while (cursor.moveToNext()) {
+                ids[count] = cursor.getLong(0);
+                scores[count] = score(cursor.getBlob(1));
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        final double[] s = scores;
+        Arrays.sort(order, (a, b) -> Double.compare(s[b], s[a]));
+
+        int size = Math.min(limit, count);
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add((int) ids[order[i]]);
+        return result;
+    }
+
+    // matchinfo 'pcx': phrase count, column count, then per phrase/column
+    // (hits in this row, hits in all rows, rows with a hit)
+    static double score(byte[] blob) {
+        if (blob == null) return 0;
+        ByteBuffer info = ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int base = 8 + 12 * (p * columns + c);
+                int hitsHere = info.getInt(base);
+                int rowsWithHit = info.getInt(base + 8);
+                if (hitsHere == 0) continue;
+                double weight = c == 0 ? TITLE_WEIGHT : CONTENT_WEIGHT;
+                // rarer terms weigh more, a crude idf
+                score += weight * hitsHere / Math.max(1, rowsWithHit);
+            }
+        }
+        return score;
+    }
+}
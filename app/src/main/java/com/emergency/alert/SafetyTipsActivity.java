@@ -1,45 +1,76 @@
 package com.emergency.alert;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.TextView;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SafetyTipsActivity extends AppCompatActivity {
 
+    static final int SEARCH_LIMIT = 50;
+
     private ListView lvSafetyTips;
-    private DatabaseHelper dbHelper;
+    private EditText etSearch;
+    private TextView tvCategories;
+    private AsyncDatabase asyncDb;
     private List<DatabaseHelper.SafetyTip> tipsList;
     private ArrayAdapter<String> adapter;
     private List<String> displayList;
 
+    // Results of superseded keystrokes are dropped
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_safety_tips);
 
-        dbHelper = new DatabaseHelper(this);
+        asyncDb = AsyncDatabase.getInstance(this);
         tipsList = new ArrayList<>();
         displayList = new ArrayList<>();
 
         initializeViews();
         loadSafetyTips();
+        loadCategoryCounts();
         setupListeners();
     }
 
     private void initializeViews() {
         lvSafetyTips = findViewById(R.id.lv_safety_tips);
+        etSearch = findViewById(R.id.et_tip_search);
+        tvCategories = findViewById(R.id.tv_tip_categories);
         adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, displayList);
         lvSafetyTips.setAdapter(adapter);
     }
 
     private void loadSafetyTips() {
-        tipsList = dbHelper.getAllSafetyTips();
+        search("");
+    }
+
+    private void loadCategoryCounts() {
+        asyncDb.submit(this, DatabaseHelper::getSafetyTipCategoryCounts, counts -> {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (sb.length() > 0) sb.append("  •  ");
+                sb.append(entry.getKey()).append(" (").append(entry.getValue()).append(")");
+            }
+            tvCategories.setText(sb.toString());
+        });
+    }
+
+    private void showTips(List<DatabaseHelper.SafetyTip> tips) {
+        tipsList = tips;
         displayList.clear();
 
         for (DatabaseHelper.SafetyTip tip : tipsList) {
@@ -49,11 +80,41 @@ public class SafetyTipsActivity extends AppCompatActivity {
         adapter.notifyDataSetChanged();
     }
 
+    private void search(String text) {
+        int generation = searchGeneration.incrementAndGet();
+
+        asyncDb.submit(this, db -> {
+            if (generation != searchGeneration.get()) return null;
+            return text.trim().isEmpty()
+                    ? db.getAllSafetyTips()
+                    : db.searchSafetyTips(text, null, SEARCH_LIMIT);
+        }, results -> {
+            if (results != null && generation == searchGeneration.get()) {
+                showTips(results);
+            }
+        });
+    }
+
     private void setupListeners() {
         lvSafetyTips.setOnItemClickListener((parent, view, position, id) -> {
             DatabaseHelper.SafetyTip tip = tipsList.get(position);
             showTipDetails(tip);
         });
+
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
     }
 
     private void showTipDetails(DatabaseHelper.SafetyTip tip) {
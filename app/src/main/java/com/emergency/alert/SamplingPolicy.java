@@ -0,0 +1,145 @@
+package com.emergency.alert;
+
+import java.util.concurrent.TimeUnit;
+
+// Picks how hard LocationTrackingService samples: fast or near a monitored zone gets
+// frequent high-accuracy fixes, standing still gets network-grade fixes, and a low battery
+// caps everything but the zone case. While live updates are being shared the policy never
+// drops below ACTIVE: the cheaper tiers give network-grade fixes that LiveLocationStreamer
+// rejects, which would stall the updates. Plain Java with the clock passed in, so it can be
+// replayed against recorded traces.
+//
+// Hysteresis: every threshold has separate enter/leave values, and a move to a cheaper tier
+// only happens once that tier has been justified for DOWNGRADE_HOLD_MS without a break.
+// Moves to a more expensive tier are immediate.
+final class SamplingPolicy {
+
+    enum Tier {
+        // highAccuracy, interval, min interval, estimated share of time the GPS is powered
+        LOW(false, TimeUnit.MINUTES.toMillis(2), TimeUnit.MINUTES.toMillis(1), 0.0),
+        BALANCED(false, TimeUnit.SECONDS.toMillis(30), TimeUnit.SECONDS.toMillis(15), 0.05),
+        ACTIVE(true, TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(5), 0.6),
+        HIGH(true, TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(2), 1.0);
+
+        final boolean highAccuracy;
+        final long intervalMs;
+        final long minIntervalMs;
+        final double gpsOnFraction;
+
+        Tier(boolean highAccuracy, long intervalMs, long minIntervalMs, double gpsOnFraction) {
+            this.highAccuracy = highAccuracy;
+            this.intervalMs = intervalMs;
+            this.minIntervalMs = minIntervalMs;
+            this.gpsOnFraction = gpsOnFraction;
+        }
+    }
+
+    // Speed, m/s (smoothed)
+    static final float FAST_ENTER = 5f;   // ~18 km/h: cycling, driving
+    static final float FAST_LEAVE = 3.5f;
+    static final float MOVING_ENTER = 1f; // walking
+    static final float MOVING_LEAVE = 0.5f;
+
+    // Distance to the nearest monitored zone, metres
+    static final double ZONE_NEAR_ENTER = 500;
+    static final double ZONE_NEAR_LEAVE = 700;
+    static final double ZONE_APPROACH_ENTER = 2000;
+    static final double ZONE_APPROACH_LEAVE = 2500;
+
+    // Battery percent, ignored while charging
+    static final int BATTERY_LOW_ENTER = 15;
+    static final int BATTERY_LOW_LEAVE = 20;
+
+    static final long DOWNGRADE_HOLD_MS = TimeUnit.MINUTES.toMillis(2);
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    private Tier tier = Tier.ACTIVE; // the service's historical fixed setting
+    private Tier pendingDowngrade;
+    private long pendingSince;
+
+    private float speed = -1;
+    private boolean fast;
+    private boolean moving;
+    private boolean zoneNear;
+    private boolean zoneApproach;
+    private boolean batteryLow;
+    private boolean liveSharing;
+
+    private long tierSince = -1;
+    private long gpsOnMillis;
+
+    Tier tier() {
+        return tier;
+    }
+
+    // Returns the tier to use now; starting to share moves up at once if needed, stopping
+    // lets the usual downgrade hold apply
+    Tier setLiveSharing(boolean on, long now) {
+        liveSharing = on;
+        if (on && tier.ordinal() < Tier.ACTIVE.ordinal()) {
+            if (tierSince < 0) tierSince = now;
+            pendingDowngrade = null;
+            switchTo(Tier.ACTIVE, now);
+        }
+        return tier;
+    }
+
+    // Feeds one observation and returns the tier to use now. zoneDistanceMeters is
+    // Double.POSITIVE_INFINITY when no zone is known.
+    Tier update(long now, float speedMps, int batteryPercent, boolean charging, double zoneDistanceMeters) {
+        if (tierSince < 0) tierSince = now;
+
+        speed = speed < 0 ? speedMps : speed + SPEED_SMOOTHING * (speedMps - speed);
+        fast = speed >= (fast ? FAST_LEAVE : FAST_ENTER);
+        moving = speed >= (moving ? MOVING_LEAVE : MOVING_ENTER);
+        zoneNear = zoneDistanceMeters <= (zoneNear ? ZONE_NEAR_LEAVE : ZONE_NEAR_ENTER);
+        zoneApproach = zoneDistanceMeters <= (zoneApproach ? ZONE_APPROACH_LEAVE : ZONE_APPROACH_ENTER);
+        batteryLow = !charging && batteryPercent >= 0
+                && batteryPercent <= (batteryLow ? BATTERY_LOW_LEAVE : BATTERY_LOW_ENTER);
+
+        Tier wanted = wantedTier();
+        if (wanted.ordinal() >= tier.ordinal()) {
+            pendingDowngrade = null;
+            if (wanted != tier) switchTo(wanted, now);
+        } else if (pendingDowngrade == null || wanted.ordinal() > pendingDowngrade.ordinal()) {
+            // A downgrade starts (or a shallower one restarts) the hold
+            pendingDowngrade = wanted;
+            pendingSince = now;
+        } else if (now - pendingSince >= DOWNGRADE_HOLD_MS) {
+            // Step down only as far as was justified for the whole hold
+            switchTo(pendingDowngrade, now);
+            pendingDowngrade = null;
+        }
+        return tier;
+    }
+
+    private Tier wantedTier() {
+        // Being near a zone is what the tracking is for; a low battery does not override it
+        if (zoneNear) return Tier.HIGH;
+
+        Tier wanted;
+        if (fast) wanted = Tier.HIGH;
+        else if (moving || zoneApproach) wanted = Tier.ACTIVE;
+        else wanted = Tier.BALANCED;
+
+        if (batteryLow) {
+            if (wanted == Tier.HIGH) wanted = Tier.ACTIVE;
+            else if (wanted == Tier.BALANCED) wanted = Tier.LOW;
+        }
+        // Contacts are following along; that outweighs the battery too
+        if (liveSharing && wanted.ordinal() < Tier.ACTIVE.ordinal()) wanted = Tier.ACTIVE;
+        return wanted;
+    }
+
+    private void switchTo(Tier next, long now) {
+        gpsOnMillis += (long) ((now - tierSince) * tier.gpsOnFraction);
+        tier = next;
+        tierSince = now;
+    }
+
+    // Estimated milliseconds the GPS receiver has been powered under this policy so far
+    long projectedGpsOnMillis(long now) {
+        if (tierSince < 0) return 0;
+        return gpsOnMillis + (long) ((now - tierSince) * tier.gpsOnFraction);
+    }
+}
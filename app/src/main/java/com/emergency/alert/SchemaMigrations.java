@@ -0,0 +1,272 @@
+package com.emergency.alert;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Versioned, in-place schema upgrades for DatabaseHelper.
+// Each upgrade step runs inside onUpgrade and must stay cheap (ALTER TABLE, small tables).
+// Anything proportional to table size is registered as a backfill instead and
+// finished later on a background thread, one bounded chunk per transaction.
+final class SchemaMigrations {
+
+    private static final String TAG = "SchemaMigrations";
+
+    static final String TABLE_BACKFILLS = "schema_backfills";
+    private static final String COL_BACKFILL_NAME = "name";
+    private static final String COL_BACKFILL_LAST_ID = "last_id";
+
+    static final int CHUNK_SIZE = 2000;
+
+    // Backfill names are persisted, never rename them
+    static final String BACKFILL_EVENT_TIME = "emergency_events.event_time";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "schema-backfill"));
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private SchemaMigrations() {
+    }
+
+    static void createBackfillTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_BACKFILLS + " (" +
+                COL_BACKFILL_NAME + " TEXT PRIMARY KEY, " +
+                COL_BACKFILL_LAST_ID + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    static void upgrade(PhoneNormalizer normalizer, SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.d(TAG, "Upgrading schema to v" + version);
+            switch (version) {
+                case 2:
+                    upgradeToV2(db);
+                    break;
+                case 3:
+                    EventRetention.createRollupTable(db);
+                    break;
+                case 4:
+                    // safety_tips is small (bundled content), so indexing it inline is cheap
+                    SafetyTipSearch.createSearchIndex(db);
+                    SafetyTipSearch.rebuild(db);
+                    break;
+                case 5:
+                    upgradeToV5(db, normalizer);
+                    break;
+                case 6:
+                    MessagingEngine.createOutboxTable(db);
+                    break;
+                case 7:
+                    // A v5 database gets the current outbox shape from step 6 already
+                    if (!hasColumn(db, MessagingEngine.TABLE_OUTBOX, MessagingEngine.COL_PRIORITY)) {
+                        db.execSQL("ALTER TABLE " + MessagingEngine.TABLE_OUTBOX + " ADD COLUMN " +
+                                MessagingEngine.COL_PRIORITY + " INTEGER NOT NULL DEFAULT " +
+                                MessagingEngine.PRIORITY_SOS);
+                    }
+                    break;
+                case 8:
+                    DatabaseHelper.createTrackTable(db);
+                    break;
+                case 9:
+                    ReverseGeocoder.createCacheTable(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to schema version " + version);
+            }
+        }
+    }
+
+    // v2: epoch-millis event_time next to the v1 text event_date
+    private static void upgradeToV2(SQLiteDatabase db) {
+        createBackfillTable(db);
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_EVENTS +
+                " ADD COLUMN " + DatabaseHelper.COL_EVENT_TIME + " INTEGER");
+        enqueueBackfill(db, BACKFILL_EVENT_TIME);
+    }
+
+    // v5: normalized phone column plus a unique index on it. Contact lists are a handful
+    // of rows, so normalizing inline is fine. Existing duplicates keep their oldest row.
+    private static void upgradeToV5(SQLiteDatabase db, PhoneNormalizer normalizer) {
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_CONTACTS +
+                " ADD COLUMN " + DatabaseHelper.COL_CONTACT_PHONE_NORMALIZED + " TEXT");
+
+        Set<String> seen = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COL_CONTACT_ID + ", " +
+                DatabaseHelper.COL_CONTACT_PHONE + " FROM " + DatabaseHelper.TABLE_CONTACTS +
+                " ORDER BY " + DatabaseHelper.COL_CONTACT_ID, null);
+        try {
+            while (cursor.moveToNext()) {
+                String id = String.valueOf(cursor.getLong(0));
+                String normalized = normalizer.normalize(cursor.getString(1));
+                if (normalized == null) continue;
+
+                if (seen.add(normalized)) {
+                    db.execSQL("UPDATE " + DatabaseHelper.TABLE_CONTACTS + " SET " +
+                                    DatabaseHelper.COL_CONTACT_PHONE_NORMALIZED + " = ? WHERE " +
+                                    DatabaseHelper.COL_CONTACT_ID + " = ?",
+                            new Object[]{normalized, id});
+                } else {
+                    db.delete(DatabaseHelper.TABLE_CONTACTS, DatabaseHelper.COL_CONTACT_ID + " = ?",
+                            new String[]{id});
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        DatabaseHelper.createContactIndexes(db);
+    }
+
+    private static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(cursor.getColumnIndexOrThrow("name")))) return true;
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void enqueueBackfill(SQLiteDatabase db, String name) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_BACKFILLS + " (" + COL_BACKFILL_NAME + ") VALUES (?)",
+                new Object[]{name});
+    }
+
+    private static Backfill backfillFor(String name) {
+        if (BACKFILL_EVENT_TIME.equals(name)) return new EventTimeBackfill();
+        return null;
+    }
+
+    // Resumes any unfinished backfills; safe to call on every open
+    static void runPendingBackfills(DatabaseHelper helper) {
+        if (!running.compareAndSet(false, true)) return;
+
+        executor.execute(() -> {
+            try {
+                SQLiteDatabase db = helper.getWritableDatabase();
+                for (String[] pending : loadPending(db)) {
+                    runBackfill(db, pending[0], Long.parseLong(pending[1]), Integer.MAX_VALUE);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Backfill failed, will resume on next open", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    static List<String[]> loadPending(SQLiteDatabase db) {
+        List<String[]> pending = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + COL_BACKFILL_NAME + ", " + COL_BACKFILL_LAST_ID +
+                " FROM " + TABLE_BACKFILLS, null);
+        try {
+            while (cursor.moveToNext()) {
+                pending.add(new String[]{cursor.getString(0), String.valueOf(cursor.getLong(1))});
+            }
+        } finally {
+            cursor.close();
+        }
+        return pending;
+    }
+
+    // Stops after maxChunks committed chunks; the saved position lets the next call resume
+    static void runBackfill(SQLiteDatabase db, String name, long lastId, int maxChunks) {
+        Backfill backfill = backfillFor(name);
+        if (backfill == null) {
+            Log.w(TAG, "Unknown backfill " + name + ", dropping it");
+            db.delete(TABLE_BACKFILLS, COL_BACKFILL_NAME + "=?", new String[]{name});
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        int chunks = 0;
+
+        while (true) {
+            long next;
+            db.beginTransactionNonExclusive();
+            try {
+                next = backfill.runChunk(db, lastId, CHUNK_SIZE);
+                if (next < 0) {
+                    backfill.complete(db);
+                    db.delete(TABLE_BACKFILLS, COL_BACKFILL_NAME + "=?", new String[]{name});
+                } else {
+                    db.execSQL("UPDATE " + TABLE_BACKFILLS + " SET " + COL_BACKFILL_LAST_ID +
+                            " = ? WHERE " + COL_BACKFILL_NAME + " = ?", new Object[]{next, name});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            chunks++;
+            if (next < 0) break;
+            lastId = next;
+            if (chunks >= maxChunks) {
+                Log.d(TAG, "Backfill " + name + " paused at id " + lastId);
+                return;
+            }
+        }
+
+        Log.d(TAG, "Backfill " + name + " finished: " + chunks + " chunk(s) in " +
+                (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    interface Backfill {
+        // Processes up to chunkSize rows with id > afterId and returns the last id handled,
+        // or -1 when there is nothing left
+        long runChunk(SQLiteDatabase db, long afterId, int chunkSize);
+
+        // Runs once, in the same transaction as the final chunk
+        void complete(SQLiteDatabase db);
+    }
+
+    // Converts v1 local-time text dates into epoch millis, then builds the timeline indexes
+    private static final class EventTimeBackfill implements Backfill {
+
+        @Override
+        public long runChunk(SQLiteDatabase db, long afterId, int chunkSize) {
+            Cursor cursor = db.rawQuery("SELECT MAX(" + DatabaseHelper.COL_EVENT_ID + ") FROM (" +
+                            "SELECT " + DatabaseHelper.COL_EVENT_ID + " FROM " + DatabaseHelper.TABLE_EVENTS +
+                            " WHERE " + DatabaseHelper.COL_EVENT_ID + " > ? ORDER BY " +
+                            DatabaseHelper.COL_EVENT_ID + " LIMIT ?)",
+                    new String[]{String.valueOf(afterId), String.valueOf(chunkSize)});
+            long upTo = -1;
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    upTo = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (upTo < 0) return -1;
+
+            db.execSQL("UPDATE " + DatabaseHelper.TABLE_EVENTS + " SET " + DatabaseHelper.COL_EVENT_TIME +
+                            " = COALESCE(CAST(strftime('%s', " + DatabaseHelper.COL_EVENT_DATE +
+                            ", 'utc') AS INTEGER) * 1000, 0)" +
+                            " WHERE " + DatabaseHelper.COL_EVENT_ID + " > ? AND " +
+                            DatabaseHelper.COL_EVENT_ID + " <= ? AND " +
+                            DatabaseHelper.COL_EVENT_TIME + " IS NULL",
+                    new Object[]{afterId, upTo});
+            return upTo;
+        }
+
+        @Override
+        public void complete(SQLiteDatabase db) {
+            DatabaseHelper.createEventIndexes(db);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.emergency.alert;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.telephony.SmsManager;
+
+import java.util.ArrayList;
+
+// Real transport: SmsManager with per-part sent/delivered PendingIntents that land in
+// SmsStatusReceiver, so receipts arrive even if the process was killed meanwhile.
+final class SmsManagerTransport implements SmsTransport {
+
+    private final Context context;
+
+    SmsManagerTransport(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public ArrayList<String> divide(String message) {
+        return SmsManager.getDefault().divideMessage(message);
+    }
+
+    @Override
+    public void send(long outboxId, int attempt, String destination, ArrayList<String> parts, Receipts receipts) {
+        SmsManager smsManager = SmsManager.getDefault();
+        int count = parts.size();
+
+        if (count > 1) {
+            ArrayList<PendingIntent> sent = new ArrayList<>(count);
+            ArrayList<PendingIntent> delivered = new ArrayList<>(count);
+            for (int part = 0; part < count; part++) {
+                sent.add(SmsStatusReceiver.sentIntent(context, outboxId, attempt, part));
+                delivered.add(SmsStatusReceiver.deliveredIntent(context, outboxId, attempt, part));
+            }
+            smsManager.sendMultipartTextMessage(destination, null, parts, sent, delivered);
+        } else {
+            smsManager.sendTextMessage(destination, null, parts.get(0),
+                    SmsStatusReceiver.sentIntent(context, outboxId, attempt, 0),
+                    SmsStatusReceiver.deliveredIntent(context, outboxId, attempt, 0));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.emergency.alert;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.telephony.SmsMessage;
+
+// Sent/delivered receipts for outbox messages, retry alarms and boot; all of it is
+// handed to MessagingEngine, which keeps the state in the outbox table.
+public class SmsStatusReceiver extends BroadcastReceiver {
+
+    static final String ACTION_SENT = "com.emergency.alert.SMS_SENT";
+    static final String ACTION_DELIVERED = "com.emergency.alert.SMS_DELIVERED";
+    static final String ACTION_RETRY = "com.emergency.alert.SMS_RETRY";
+
+    private static final String EXTRA_OUTBOX_ID = "outbox_id";
+    private static final String EXTRA_ATTEMPT = "attempt";
+
+    // TP-Status values below this are "completed"; 0x20-0x3F is still being retried by the SMSC
+    private static final int STATUS_PENDING = 0x20;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (action == null) return;
+
+        MessagingEngine engine = MessagingEngine.getInstance(context);
+        long id = intent.getLongExtra(EXTRA_OUTBOX_ID, -1);
+        int attempt = intent.getIntExtra(EXTRA_ATTEMPT, -1);
+
+        switch (action) {
+            case ACTION_SENT: {
+                int result = getResultCode();
+                engine.onSent(id, attempt, result == Activity.RESULT_OK,
+                        result == Activity.RESULT_OK ? null : "send result " + result);
+                break;
+            }
+            case ACTION_DELIVERED: {
+                int status = deliveryStatus(intent);
+                if (status >= STATUS_PENDING && status < 0x40) return; // final report follows
+                engine.onDelivered(id, attempt, status < STATUS_PENDING,
+                        status < STATUS_PENDING ? null : "delivery status " + status);
+                break;
+            }
+            case ACTION_RETRY:
+            case Intent.ACTION_BOOT_COMPLETED:
+                engine.resume();
+                break;
+            default:
+                return;
+        }
+
+        // Keep the process alive until the engine has written the outcome
+        PendingResult pending = goAsync();
+        engine.runAfterPendingWork(pending::finish);
+    }
+
+    private static int deliveryStatus(Intent intent) {
+        byte[] pdu = intent.getByteArrayExtra("pdu");
+        if (pdu == null) return 0;
+        SmsMessage message = SmsMessage.createFromPdu(pdu, intent.getStringExtra("format"));
+        return message == null ? 0 : message.getStatus();
+    }
+
+    static PendingIntent sentIntent(Context context, long outboxId, int attempt, int part) {
+        return receipt(context, ACTION_SENT, outboxId, attempt, part);
+    }
+
+    static PendingIntent deliveredIntent(Context context, long outboxId, int attempt, int part) {
+        return receipt(context, ACTION_DELIVERED, outboxId, attempt, part);
+    }
+
+    static PendingIntent retryIntent(Context context) {
+        Intent intent = new Intent(context, SmsStatusReceiver.class).setAction(ACTION_RETRY);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static PendingIntent receipt(Context context, String action, long outboxId, int attempt, int part) {
+        // The data uri makes every part of every attempt a distinct PendingIntent
+        Intent intent = new Intent(context, SmsStatusReceiver.class)
+                .setAction(action)
+                .setData(Uri.parse("sms-outbox://" + outboxId + "/" + attempt + "/" + part))
+                .putExtra(EXTRA_OUTBOX_ID, outboxId)
+                .putExtra(EXTRA_ATTEMPT, attempt);
+
+        // The radio adds result extras (pdu, errorCode), so these must stay mutable
+        int flags = PendingIntent.FLAG_ONE_SHOT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) flags |= PendingIntent.FLAG_MUTABLE;
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+}
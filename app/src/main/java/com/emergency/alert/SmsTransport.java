@@ -0,0 +1,22 @@
+package com.emergency.alert;
+
+import java.util.ArrayList;
+
+// How MessagingEngine hands a message to the radio. Outcomes are reported later through
+// Receipts, once per message part; SmsManagerTransport does that via PendingIntent
+// broadcasts, a local fake can call them directly.
+interface SmsTransport {
+
+    interface Receipts {
+        void onSent(long outboxId, int attempt, boolean success, String error);
+
+        void onDelivered(long outboxId, int attempt, boolean success, String error);
+    }
+
+    // Splits a message into radio-sized parts; callers cache the result where they can
+    ArrayList<String> divide(String message);
+
+    // Must not block; expect one sent and one delivered receipt per part.
+    // Throwing counts as a failed attempt.
+    void send(long outboxId, int attempt, String destination, ArrayList<String> parts, Receipts receipts) throws Exception;
+}
@@ -0,0 +1,148 @@
+package com.emergency.alert;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Second stage of an SOS. The first message goes out immediately with the best cached fix;
+// this then asks for a fresh high-accuracy fix with a hard timeout and sends one short
+// follow-up, but only if the new fix is materially better than what was already sent.
+final class SosLocationRace {
+
+    private static final String TAG = "SosLocationRace";
+
+    static final long FIX_TIMEOUT_MS = 30_000;
+    // The new fix has to be this much tighter to be worth another SMS
+    private static final float MIN_ACCURACY_GAIN_METERS = 20f;
+    // ...or this far from what was sent, beyond the sent fix's own accuracy
+    private static final float MIN_MOVE_METERS = 50f;
+
+    private final Context appContext;
+    private final List<DatabaseHelper.EmergencyContact> contacts;
+    private final Location sent; // null when the first message had no location
+    private final FusedLocationProviderClient client;
+    private final CancellationTokenSource cancellation = new CancellationTokenSource();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread only
+    private boolean timedOut;
+    private boolean finished;
+
+    private SosLocationRace(Context context, List<DatabaseHelper.EmergencyContact> contacts,
+                            SosPayloadCache.Payload sent) {
+        this.appContext = context.getApplicationContext();
+        this.contacts = new ArrayList<>(contacts);
+        this.sent = sent.location;
+        this.client = LocationServices.getFusedLocationProviderClient(appContext);
+    }
+
+    // Call on the main thread right after the first SOS was queued
+    static void start(Context context, List<DatabaseHelper.EmergencyContact> contacts,
+                      SosPayloadCache.Payload sent) {
+        if (ContextCompat.checkSelfPermission(context,
+                Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        new SosLocationRace(context, contacts, sent).run();
+    }
+
+    @SuppressLint("MissingPermission") // checked in start()
+    private void run() {
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setDurationMillis(FIX_TIMEOUT_MS)
+                .setMaxUpdateAgeMillis(0)
+                .build();
+
+        // The request's duration is only a hint to the provider; this makes the timeout hard
+        mainHandler.postDelayed(this::onTimeout, FIX_TIMEOUT_MS);
+        client.getCurrentLocation(request, cancellation.getToken())
+                .addOnSuccessListener(fresh -> {
+                    if (fresh != null) {
+                        finish(fresh);
+                    } else if (!finished) {
+                        // No fix in time from the provider's side; the last known one may still help
+                        Log.w(TAG, "Fresh fix came back empty");
+                        useLastLocation();
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Fresh fix failed", e);
+                    if (!timedOut) finish(null);
+                });
+    }
+
+    @SuppressLint("MissingPermission")
+    private void onTimeout() {
+        if (finished) return;
+        timedOut = true;
+        cancellation.cancel();
+        Log.w(TAG, "No fresh fix within " + FIX_TIMEOUT_MS + " ms");
+
+        if (sent != null) {
+            finish(null);
+            return;
+        }
+        // The first message had no location at all; whatever the provider has beats nothing
+        useLastLocation();
+    }
+
+    // finish() still decides whether it is worth a follow-up
+    @SuppressLint("MissingPermission")
+    private void useLastLocation() {
+        client.getLastLocation()
+                .addOnSuccessListener(this::finish)
+                .addOnFailureListener(e -> finish(null));
+    }
+
+    private void finish(Location fresh) {
+        if (finished) return;
+        finished = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        if (fresh == null) return;
+
+        SosPayloadCache payloadCache = SosPayloadCache.getInstance(appContext);
+        payloadCache.onLocation(fresh);
+
+        if (!isMateriallyBetter(sent, fresh)) {
+            Log.d(TAG, "Fresh fix (±" + fresh.getAccuracy() + " m) adds nothing, no follow-up");
+            return;
+        }
+
+        SosPayloadCache.Payload followUp = payloadCache.buildFollowUp(fresh);
+        MessagingEngine.getInstance(appContext).followUp(contacts, followUp);
+        EventJournal.getInstance(appContext).record("SOS",
+                String.format(Locale.US, "%.6f,%.6f", fresh.getLatitude(), fresh.getLongitude()),
+                "Follow-up with precise location for " + contacts.size() + " contact(s)");
+        Log.d(TAG, "Follow-up queued with fix ±" + fresh.getAccuracy() + " m");
+    }
+
+    static boolean isMateriallyBetter(Location sent, Location fresh) {
+        if (sent == null) return true;
+
+        float sentAccuracy = sent.hasAccuracy() ? sent.getAccuracy() : Float.MAX_VALUE;
+        float freshAccuracy = fresh.hasAccuracy() ? fresh.getAccuracy() : Float.MAX_VALUE;
+
+        // Outside the circle that was sent: the person moved, or the old fix was wrong
+        if (sent.distanceTo(fresh) > Math.max(MIN_MOVE_METERS, sentAccuracy)) return true;
+        // Same place, much tighter circle
+        return freshAccuracy <= sentAccuracy / 2 && sentAccuracy - freshAccuracy >= MIN_ACCURACY_GAIN_METERS;
+    }
+}
@@ -0,0 +1,266 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Keeps the SOS text ready to send: formatted and already split into SMS parts.
+// It is rebuilt in the background whenever a new location fix moves us far enough,
+// so pressing SOS costs nothing but handing these parts to the outbox.
+// The last good fix is also persisted, so a cold process has a location to send at once.
+final class SosPayloadCache {
+
+    private static final String TAG = "SosPayloadCache";
+
+    // Plain GSM characters only: a single emoji or symbol outside the GSM alphabet switches
+    // the whole message to UCS-2, which cuts a part from 153 to 67 characters
+    private static final String MESSAGE_WITH_LOCATION = "EMERGENCY! I need help!\n\n" +
+            "My Location:\nhttps://maps.google.com/?q=%.6f,%.6f\n(+/-%d m, %s)\n%s\n" +
+            "Please respond immediately!";
+    private static final String MESSAGE_NO_LOCATION =
+            "EMERGENCY! I need help!\n\nLocation unavailable. Please call me immediately!";
+    // Fits in a single SMS
+    private static final String MESSAGE_FOLLOW_UP =
+            "SOS update - precise location: https://maps.google.com/?q=%.6f,%.6f (+/-%d m)";
+
+    // The address line is left out rather than push the SOS past this many parts per contact
+    private static final int MAX_PARTS_WITH_ADDRESS = 2;
+
+    // Smaller moves do not change the map link meaningfully
+    private static final float MIN_MOVE_METERS = 10f;
+    // Fixes vaguer than this are not worth keeping across restarts
+    private static final float MAX_PERSISTED_ACCURACY_METERS = 500f;
+    // How long an SOS pressed during a cold start waits for the persisted fix before
+    // going out without one (SosLocationRace then follows up with a location)
+    static final long PRELOAD_WAIT_MS = 150;
+
+    static final String PREFS = "EmergencyAlertPrefs";
+    static final String PREF_FIX_LAT = "last_fix_lat";
+    static final String PREF_FIX_LNG = "last_fix_lng";
+    static final String PREF_FIX_ACCURACY = "last_fix_accuracy";
+    static final String PREF_FIX_TIME = "last_fix_time";
+    static final String PREF_FIX_PROVIDER = "last_fix_provider";
+
+    private static volatile SosPayloadCache instance;
+
+    private final Context appContext;
+    private final SmsTransport transport;
+    private final ReverseGeocoder geocoder;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sos-payload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Payload current;
+    private Future<?> preload; // guarded by this
+
+    static final class Payload {
+        final String message;
+        final ArrayList<String> parts;
+        final Location location; // null when built without a fix
+        final String fixAge;     // age as stated in the message, null without a fix
+        final long builtAt;      // elapsedRealtime
+
+        Payload(String message, ArrayList<String> parts, Location location, String fixAge) {
+            this.message = message;
+            this.parts = parts;
+            this.location = location;
+            this.fixAge = fixAge;
+            this.builtAt = SystemClock.elapsedRealtime();
+        }
+
+        boolean hasLocation() {
+            return location != null;
+        }
+    }
+
+    static SosPayloadCache getInstance(Context context) {
+        SosPayloadCache cache = instance;
+        if (cache == null) {
+            synchronized (SosPayloadCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new SosPayloadCache(context, new SmsManagerTransport(context));
+                    cache.warm();
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    // Visible for fake transports
+    SosPayloadCache(Context context, SmsTransport transport) {
+        this.appContext = context.getApplicationContext();
+        this.transport = transport;
+        this.geocoder = ReverseGeocoder.getInstance(appContext);
+    }
+
+    // Reads the persisted fix (and with it the prefs file) and prepares the text, off the
+    // main thread, so forSend() never touches the disk. Later calls do nothing.
+    void warm() {
+        synchronized (this) {
+            if (preload != null) return;
+            preload = executor.submit(() -> {
+                if (current == null) current = build(loadLastFix());
+            });
+        }
+    }
+
+    // The payload to send now, never null. The stated age of the fix is coarse, so the
+    // prepared text is reused unless it would now understate how old the fix is.
+    Payload forSend() {
+        Payload payload = current;
+        if (payload == null) payload = awaitPreload();
+        if (!payload.hasLocation()) return payload;
+        if (describeAge(payload.location).equals(payload.fixAge)) return payload;
+        return buildNow(payload.location);
+    }
+
+    // Pressed during a cold start, before the preload finished
+    private Payload awaitPreload() {
+        warm();
+        Future<?> pending;
+        synchronized (this) {
+            pending = preload;
+        }
+        try {
+            pending.get(PRELOAD_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            Log.w(TAG, "Persisted fix not ready, sending without a location", e);
+        }
+        Payload payload = current;
+        return payload != null ? payload : build(null);
+    }
+
+    // One-part message for the follow-up with a fresh fix; not cached
+    Payload buildFollowUp(Location location) {
+        String message = String.format(Locale.US, MESSAGE_FOLLOW_UP,
+                location.getLatitude(), location.getLongitude(), Math.round(location.getAccuracy()));
+        return new Payload(message, split(message), location, describeAge(location));
+    }
+
+    // Feed every new fix here; the rebuild happens off the caller's thread
+    void onLocation(Location location) {
+        if (location == null) return;
+
+        // Resolve the address ahead of time; the text is rebuilt once it arrives
+        geocoder.prefetch(location.getLatitude(), location.getLongitude(), address -> {
+            if (address != null) executor.execute(this::addAddress);
+        });
+
+        executor.execute(() -> {
+            Payload payload = current;
+            // Standing still only rebuilds when the stated age or accuracy would change
+            if (payload != null && payload.hasLocation()
+                    && payload.location.distanceTo(location) < MIN_MOVE_METERS
+                    && describeAge(location).equals(payload.fixAge)
+                    && location.getAccuracy() > payload.location.getAccuracy() / 2) {
+                return;
+            }
+            current = build(location);
+            saveLastFix(location);
+        });
+    }
+
+    // Executor thread only
+    private void addAddress() {
+        Payload payload = current;
+        if (payload == null || !payload.hasLocation()) return;
+        String address = geocoder.cached(payload.location.getLatitude(), payload.location.getLongitude());
+        if (address != null && !payload.message.contains(address)) current = build(payload.location);
+    }
+
+    // Synchronous build for when nothing usable was cached yet; also refreshes the cache
+    Payload buildNow(Location location) {
+        Payload payload = build(location);
+        if (location != null || current == null) current = payload;
+        return payload;
+    }
+
+    private Payload build(Location location) {
+        if (location == null) return new Payload(MESSAGE_NO_LOCATION, split(MESSAGE_NO_LOCATION), null, null);
+
+        String age = describeAge(location);
+        // Memory-cached only; never waits on the geocoder
+        String address = geocoder.cached(location.getLatitude(), location.getLongitude());
+        if (address != null) {
+            String message = format(location, age, "Near: " + address + "\n");
+            ArrayList<String> parts = split(message);
+            // e.g. a long or non-Latin address that would turn the text into UCS-2
+            if (parts.size() <= MAX_PARTS_WITH_ADDRESS) return new Payload(message, parts, location, age);
+        }
+        String message = format(location, age, "");
+        return new Payload(message, split(message), location, age);
+    }
+
+    private static String format(Location location, String age, String near) {
+        return String.format(Locale.US, MESSAGE_WITH_LOCATION, location.getLatitude(), location.getLongitude(),
+                Math.round(location.getAccuracy()), age, near);
+    }
+
+    private ArrayList<String> split(String message) {
+        ArrayList<String> parts;
+        try {
+            parts = transport.divide(message);
+        } catch (Exception e) {
+            // No telephony stack (e.g. a Wi-Fi tablet); let the send attempt report it
+            Log.w(TAG, "Could not pre-split SOS message", e);
+            parts = null;
+        }
+        if (parts == null || parts.isEmpty()) {
+            parts = new ArrayList<>(1);
+            parts.add(message);
+        }
+        return parts;
+    }
+
+    static String describeAge(Location location) {
+        long ageMs = Math.max(0, System.currentTimeMillis() - location.getTime());
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(ageMs);
+        if (minutes < 1) return "just now";
+        if (minutes < 60) return minutes + " min ago";
+        long hours = TimeUnit.MILLISECONDS.toHours(ageMs);
+        if (hours < 48) return hours + " h ago";
+        return TimeUnit.MILLISECONDS.toDays(ageMs) + " days ago";
+    }
+
+    // Executor thread only
+    private void saveLastFix(Location location) {
+        if (!location.hasAccuracy() || location.getAccuracy() > MAX_PERSISTED_ACCURACY_METERS) return;
+
+        appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                .putLong(PREF_FIX_LAT, Double.doubleToRawLongBits(location.getLatitude()))
+                .putLong(PREF_FIX_LNG, Double.doubleToRawLongBits(location.getLongitude()))
+                .putFloat(PREF_FIX_ACCURACY, location.getAccuracy())
+                .putLong(PREF_FIX_TIME, location.getTime())
+                .putString(PREF_FIX_PROVIDER, location.getProvider())
+                .apply();
+    }
+
+    private Location loadLastFix() {
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (!prefs.contains(PREF_FIX_TIME)) return null;
+
+        Location location = new Location(prefs.getString(PREF_FIX_PROVIDER, "persisted"));
+        location.setLatitude(Double.longBitsToDouble(prefs.getLong(PREF_FIX_LAT, 0)));
+        location.setLongitude(Double.longBitsToDouble(prefs.getLong(PREF_FIX_LNG, 0)));
+        location.setAccuracy(prefs.getFloat(PREF_FIX_ACCURACY, MAX_PERSISTED_ACCURACY_METERS));
+        location.setTime(prefs.getLong(PREF_FIX_TIME, 0));
+        return location;
+    }
+}
@@ -0,0 +1,56 @@
+package com.emergency.alert;
+
+// Plain token bucket on an injected millisecond clock (no Android types, so it can be
+// driven by a simulated clock). Not thread-safe; MessagingEngine only uses it on its executor.
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerMs;
+
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(int capacity, int refillTokens, long refillPeriodMs, double tokens, long now) {
+        this.capacity = capacity;
+        this.tokensPerMs = (double) refillTokens / refillPeriodMs;
+        this.tokens = Math.min(tokens, capacity);
+        this.lastRefill = now;
+    }
+
+    // Takes n tokens if that leaves at least `reserve` behind. A request larger than the
+    // bucket only needs a full bucket and leaves it in debt, so it is delayed but never stuck.
+    boolean tryAcquire(int n, int reserve, long now) {
+        refill(now);
+        if (tokens < needed(n, reserve)) return false;
+        tokens -= n;
+        return true;
+    }
+
+    // How long until tryAcquire(n, reserve) would succeed; 0 if it would now
+    long millisUntil(int n, int reserve, long now) {
+        refill(now);
+        double missing = needed(n, reserve) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerMs);
+    }
+
+    double tokens(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    long lastRefill() {
+        return lastRefill;
+    }
+
+    private double needed(int n, int reserve) {
+        return Math.min(n + reserve, capacity);
+    }
+
+    private void refill(long now) {
+        // A clock that went backwards (wall-time change) refills nothing
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMs);
+        }
+        lastRefill = now;
+    }
+}
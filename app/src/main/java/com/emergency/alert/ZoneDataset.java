@@ -0,0 +1,287 @@
+package com.emergency.alert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Read-only, memory-mapped view of a binary zone dataset written by
+// tools/zones/src/.../ZoneDatasetConverter.java. Opening maps the file and checks the header;
+// nothing per zone is read or allocated until a query touches it, and only id()
+// creates objects. Pages are loaded lazily by the kernel and can be dropped under
+// memory pressure without touching the Java heap.
+//
+// Layout (little-endian), all coordinates quantized to 1e-7 degree ints:
+//   header      16 ints: magic, version, zone count, vertex count, cell count,
+//               member count, large count, cell size, then the offsets of the
+//               zone, vertex, cell key, cell start, member, large and string
+//               sections and the string section length
+//   zones       ZONE_BYTES each: min lat, min lng, max lat, max lng (int),
+//               vertex start (-1 for circles), vertex count, radius m (float),
+//               id offset (int), id length (short), type ordinal, severity (byte)
+//   vertices    lat, lng int pairs
+//   cell keys   sorted longs, (row << 32 | col) as in ZoneIndex
+//   cell start  cell count + 1 ints into members
+//   members     zone numbers per cell
+//   large       zones too big for the grid, always checked
+//   strings     UTF-8 zone ids
+final class ZoneDataset implements ZoneLookup {
+
+    static final String FILE_NAME = "zones.bin";
+
+    static final int MAGIC = 0x445A4145; // "EAZD"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int ZONE_BYTES = 36;
+    static final double SCALE = 1e7;
+
+    private static final double METERS_PER_DEGREE = 111_195;
+    private static final ZoneIndex.Type[] TYPES = ZoneIndex.Type.values();
+
+    private final ByteBuffer buffer;
+    private final int zoneCount;
+    private final int cellCount;
+    private final int largeCount;
+    private final int cellUnits;
+    private final int zones;
+    private final int vertices;
+    private final int cellKeys;
+    private final int cellStart;
+    private final int members;
+    private final int large;
+    private final int strings;
+
+    static ZoneDataset open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ZoneDataset(buffer.order(ByteOrder.LITTLE_ENDIAN), file.getName());
+        }
+    }
+
+    ZoneDataset(ByteBuffer buffer, String name) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException(name + " is not a zone dataset");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(name + " has unsupported version " + buffer.getInt(4));
+        }
+        zoneCount = buffer.getInt(8);
+        int vertexCount = buffer.getInt(12);
+        cellCount = buffer.getInt(16);
+        int memberCount = buffer.getInt(20);
+        largeCount = buffer.getInt(24);
+        cellUnits = buffer.getInt(28);
+        zones = buffer.getInt(32);
+        vertices = buffer.getInt(36);
+        cellKeys = buffer.getInt(40);
+        cellStart = buffer.getInt(44);
+        members = buffer.getInt(48);
+        large = buffer.getInt(52);
+        strings = buffer.getInt(56);
+        int stringBytes = buffer.getInt(60);
+
+        if (cellUnits != (int) Math.round(ZoneIndex.CELL_DEGREES * SCALE)
+                || !fits(zones, (long) zoneCount * ZONE_BYTES)
+                || !fits(vertices, (long) vertexCount * 8)
+                || !fits(cellKeys, (long) cellCount * 8)
+                || !fits(cellStart, (cellCount + 1L) * 4)
+                || !fits(members, (long) memberCount * 4)
+                || !fits(large, (long) largeCount * 4)
+                || !fits(strings, stringBytes)) {
+            throw new IOException(name + " is truncated or corrupt");
+        }
+    }
+
+    private boolean fits(int offset, long length) {
+        return offset >= HEADER_BYTES && length >= 0 && offset + length <= buffer.capacity();
+    }
+
+    @Override
+    public int size() {
+        return zoneCount;
+    }
+
+    @Override
+    public String id(int zone) {
+        int record = zones + zone * ZONE_BYTES;
+        int offset = buffer.getInt(record + 28);
+        byte[] bytes = new byte[buffer.getShort(record + 32) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(strings + offset + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ZoneIndex.Type type(int zone) {
+        int ordinal = buffer.get(zones + zone * ZONE_BYTES + 34);
+        return ordinal >= 0 && ordinal < TYPES.length ? TYPES[ordinal] : ZoneIndex.Type.GENERIC;
+    }
+
+    @Override
+    public int severity(int zone) {
+        return buffer.get(zones + zone * ZONE_BYTES + 35);
+    }
+
+    @Override
+    public int containing(double lat, double lng, int[] out) {
+        int qLat = quantize(lat);
+        int qLng = quantize(lng);
+        int found = 0;
+
+        int cell = findCell(cellKey(Math.floorDiv(qLat, cellUnits), Math.floorDiv(qLng, cellUnits)));
+        if (cell >= 0) {
+            int end = buffer.getInt(cellStart + (cell + 1) * 4);
+            for (int i = buffer.getInt(cellStart + cell * 4); i < end; i++) {
+                int z = buffer.getInt(members + i * 4);
+                if (contains(z, qLat, qLng)) {
+                    if (found < out.length) out[found] = z;
+                    found++;
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            int z = buffer.getInt(large + i * 4);
+            if (contains(z, qLat, qLng)) {
+                if (found < out.length) out[found] = z;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public double distanceToNearest(double lat, double lng, double maxMeters) {
+        double metersPerDegLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double cellDegrees = cellUnits / SCALE;
+        int rowReach = (int) Math.ceil(maxMeters / METERS_PER_DEGREE / cellDegrees);
+        int colReach = (int) Math.ceil(maxMeters / Math.max(1, metersPerDegLng) / cellDegrees);
+
+        double best = Double.POSITIVE_INFINITY;
+        int row = Math.floorDiv(quantize(lat), cellUnits);
+        int col = Math.floorDiv(quantize(lng), cellUnits);
+        for (int r = row - rowReach; r <= row + rowReach; r++) {
+            for (int c = col - colReach; c <= col + colReach; c++) {
+                int cell = findCell(cellKey(r, c));
+                if (cell < 0) continue;
+                int end = buffer.getInt(cellStart + (cell + 1) * 4);
+                for (int i = buffer.getInt(cellStart + cell * 4); i < end; i++) {
+                    best = Math.min(best, boxDistance(buffer.getInt(members + i * 4), lat, lng, metersPerDegLng));
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            best = Math.min(best, boxDistance(buffer.getInt(large + i * 4), lat, lng, metersPerDegLng));
+        }
+        return best <= maxMeters ? best : Double.POSITIVE_INFINITY;
+    }
+
+    private double boxDistance(int z, double lat, double lng, double metersPerDegLng) {
+        int record = zones + z * ZONE_BYTES;
+        double minLat = buffer.getInt(record) / SCALE;
+        double minLng = buffer.getInt(record + 4) / SCALE;
+        double maxLat = buffer.getInt(record + 8) / SCALE;
+        double maxLng = buffer.getInt(record + 12) / SCALE;
+        double dLat = lat < minLat ? minLat - lat : lat > maxLat ? lat - maxLat : 0;
+        double dLng = lng < minLng ? minLng - lng : lng > maxLng ? lng - maxLng : 0;
+        double dy = dLat * METERS_PER_DEGREE;
+        double dx = dLng * metersPerDegLng;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public double distanceOutside(int z, double lat, double lng) {
+        int qLat = quantize(lat);
+        int qLng = quantize(lng);
+        if (contains(z, qLat, qLng)) return 0;
+
+        int record = zones + z * ZONE_BYTES;
+        int start = buffer.getInt(record + 16);
+        if (start < 0) {
+            double centerLat = ((long) buffer.getInt(record) + buffer.getInt(record + 8)) / 2.0 / SCALE;
+            double centerLng = ((long) buffer.getInt(record + 4) + buffer.getInt(record + 12)) / 2.0 / SCALE;
+            double dy = (lat - centerLat) * METERS_PER_DEGREE;
+            double dx = (lng - centerLng) * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            return Math.max(0, Math.sqrt(dx * dx + dy * dy) - buffer.getFloat(record + 24));
+        }
+
+        // Nearest edge, in metres around the point
+        double metersPerDegLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        int count = buffer.getInt(record + 20);
+        int base = vertices + start * 8;
+        double jx = (buffer.getInt(base + (count - 1) * 8 + 4) / SCALE - lng) * metersPerDegLng;
+        double jy = (buffer.getInt(base + (count - 1) * 8) / SCALE - lat) * METERS_PER_DEGREE;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double ix = (buffer.getInt(base + i * 8 + 4) / SCALE - lng) * metersPerDegLng;
+            double iy = (buffer.getInt(base + i * 8) / SCALE - lat) * METERS_PER_DEGREE;
+            best = Math.min(best, ZoneIndex.distanceToSegment(jx, jy, ix, iy));
+            jx = ix;
+            jy = iy;
+        }
+        return best;
+    }
+
+    private boolean contains(int z, int qLat, int qLng) {
+        int record = zones + z * ZONE_BYTES;
+        int minLat = buffer.getInt(record);
+        int minLng = buffer.getInt(record + 4);
+        int maxLat = buffer.getInt(record + 8);
+        int maxLng = buffer.getInt(record + 12);
+        if (qLat < minLat || qLat > maxLat || qLng < minLng || qLng > maxLng) return false;
+
+        int start = buffer.getInt(record + 16);
+        if (start < 0) {
+            double radius = buffer.getFloat(record + 24);
+            double centerLat = ((long) minLat + maxLat) / 2.0 / SCALE;
+            double centerLng = ((long) minLng + maxLng) / 2.0 / SCALE;
+            double dy = (qLat / SCALE - centerLat) * METERS_PER_DEGREE;
+            double dx = (qLng / SCALE - centerLng) * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            return dx * dx + dy * dy <= radius * radius;
+        }
+
+        // Even-odd ray casting, in quantized units
+        int count = buffer.getInt(record + 20);
+        boolean inside = false;
+        int base = vertices + start * 8;
+        long jLat = buffer.getInt(base + (count - 1) * 8);
+        long jLng = buffer.getInt(base + (count - 1) * 8 + 4);
+        for (int i = 0; i < count; i++) {
+            long iLat = buffer.getInt(base + i * 8);
+            long iLng = buffer.getInt(base + i * 8 + 4);
+            if ((iLat > qLat) != (jLat > qLat)
+                    && qLng < (double) (jLng - iLng) * (qLat - iLat) / (jLat - iLat) + iLng) {
+                inside = !inside;
+            }
+            jLat = iLat;
+            jLng = iLng;
+        }
+        return inside;
+    }
+
+    // Binary search over the sorted cell keys; -1 when the cell has no zones
+    private int findCell(long key) {
+        int lo = 0;
+        int hi = cellCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = buffer.getLong(cellKeys + mid * 8);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    static int quantize(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+}
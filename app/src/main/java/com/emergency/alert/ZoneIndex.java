@@ -0,0 +1,413 @@
+package com.emergency.alert;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Immutable spatial index over typed risk zones (circles and polygons), for point-in-zone
+// checks on every tracked fix. Zones are bucketed into a fixed lat/lng grid; a query hashes
+// the fix's cell and tests only that cell's zones, bounding box first. Zones too big for the
+// grid are kept in a short list that is always checked. Queries allocate nothing.
+// Storage is parallel arrays, so tens of thousands of zones cost no per-zone objects.
+final class ZoneIndex implements ZoneLookup {
+
+    enum Type {
+        UNSAFE("⚠️ Unsafe Area", "High risk area. Stay alert."),
+        ACCIDENT("⚠️ Accident Zone", "Accident-prone area. Drive carefully."),
+        DISASTER("⚠️ Disaster Zone", "Disaster-affected area. Follow safety rules."),
+        GENERIC("⚠️ Area Alert", "You entered a monitored zone.");
+
+        final String title;
+        final String message;
+
+        Type(String title, String message) {
+            this.title = title;
+            this.message = message;
+        }
+    }
+
+    // ~1.1 km of latitude; most hazard zones touch a handful of cells
+    static final double CELL_DEGREES = 0.01;
+    // Zones spanning more cells than this go to the always-checked list
+    private static final int MAX_CELLS_PER_ZONE = 1024;
+
+    private static final double METERS_PER_DEGREE = 111_195;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    static final ZoneIndex EMPTY_INDEX = new Builder().build();
+
+    // Per zone
+    private final String[] ids;
+    private final Type[] types;
+    private final int[] severities;
+    private final double[] minLat, minLng, maxLat, maxLng;
+    private final double[] radius;   // metres; 0 for polygons
+    private final int[] vertexStart; // polygons: offset into vertexLat/vertexLng, -1 for circles
+    private final int[] vertexCount;
+    private final double[] vertexLat, vertexLng;
+
+    // Grid: open-addressing cell table pointing into one member array
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] cellLength;
+    private final int[] members;
+    private final int[] largeZones;
+
+    private ZoneIndex(Builder b) {
+        int n = b.count;
+        ids = Arrays.copyOf(b.ids, n);
+        types = Arrays.copyOf(b.types, n);
+        severities = Arrays.copyOf(b.severities, n);
+        minLat = Arrays.copyOf(b.minLat, n);
+        minLng = Arrays.copyOf(b.minLng, n);
+        maxLat = Arrays.copyOf(b.maxLat, n);
+        maxLng = Arrays.copyOf(b.maxLng, n);
+        radius = Arrays.copyOf(b.radius, n);
+        vertexStart = Arrays.copyOf(b.vertexStart, n);
+        vertexCount = Arrays.copyOf(b.vertexCount, n);
+        vertexLat = Arrays.copyOf(b.vertexLat, b.vertexTotal);
+        vertexLng = Arrays.copyOf(b.vertexLng, b.vertexTotal);
+
+        // Pass 1: count (cell, zone) pairs per cell
+        int large = 0;
+        int pairs = 0;
+        for (int z = 0; z < n; z++) {
+            long cells = cellSpan(z);
+            if (cells > MAX_CELLS_PER_ZONE) large++;
+            else pairs += (int) cells;
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(16, pairs * 2 - 1)) << 1;
+        cellKeys = new long[tableSize];
+        Arrays.fill(cellKeys, EMPTY);
+        cellStart = new int[tableSize];
+        cellLength = new int[tableSize];
+        largeZones = new int[large];
+        members = new int[pairs];
+
+        large = 0;
+        for (int z = 0; z < n; z++) {
+            if (cellSpan(z) > MAX_CELLS_PER_ZONE) {
+                largeZones[large++] = z;
+                continue;
+            }
+            forEachCell(z, (key) -> cellLength[slotFor(key, true)]++);
+        }
+
+        // Pass 2: prefix offsets, then fill
+        int offset = 0;
+        for (int i = 0; i < tableSize; i++) {
+            cellStart[i] = offset;
+            offset += cellLength[i];
+            cellLength[i] = 0;
+        }
+        for (int z = 0; z < n; z++) {
+            if (cellSpan(z) > MAX_CELLS_PER_ZONE) continue;
+            final int zone = z;
+            forEachCell(z, (key) -> {
+                int slot = slotFor(key, false);
+                members[cellStart[slot] + cellLength[slot]++] = zone;
+            });
+        }
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public String id(int zone) {
+        return ids[zone];
+    }
+
+    @Override
+    public Type type(int zone) {
+        return types[zone];
+    }
+
+    @Override
+    public int severity(int zone) {
+        return severities[zone];
+    }
+
+    @Override
+    public int containing(double lat, double lng, int[] out) {
+        int found = 0;
+        int slot = slotFor(cellKey(cellOf(lat), cellOf(lng)), false);
+        if (slot >= 0) {
+            int end = cellStart[slot] + cellLength[slot];
+            for (int i = cellStart[slot]; i < end; i++) {
+                int z = members[i];
+                if (contains(z, lat, lng)) {
+                    if (found < out.length) out[found] = z;
+                    found++;
+                }
+            }
+        }
+        for (int z : largeZones) {
+            if (contains(z, lat, lng)) {
+                if (found < out.length) out[found] = z;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // Visible for tests: how many zones containing() tests for this point
+    int candidates(double lat, double lng) {
+        int slot = slotFor(cellKey(cellOf(lat), cellOf(lng)), false);
+        return (slot >= 0 ? cellLength[slot] : 0) + largeZones.length;
+    }
+
+    @Override
+    public double distanceToNearest(double lat, double lng, double maxMeters) {
+        double metersPerDegLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        int rowReach = (int) Math.ceil(maxMeters / METERS_PER_DEGREE / CELL_DEGREES);
+        int colReach = (int) Math.ceil(maxMeters / Math.max(1, metersPerDegLng) / CELL_DEGREES);
+
+        double best = Double.POSITIVE_INFINITY;
+        int row = cellOf(lat);
+        int col = cellOf(lng);
+        for (int r = row - rowReach; r <= row + rowReach; r++) {
+            for (int c = col - colReach; c <= col + colReach; c++) {
+                int slot = slotFor(cellKey(r, c), false);
+                if (slot < 0) continue;
+                int end = cellStart[slot] + cellLength[slot];
+                for (int i = cellStart[slot]; i < end; i++) {
+                    best = Math.min(best, boxDistance(members[i], lat, lng, metersPerDegLng));
+                }
+            }
+        }
+        for (int z : largeZones) best = Math.min(best, boxDistance(z, lat, lng, metersPerDegLng));
+        return best <= maxMeters ? best : Double.POSITIVE_INFINITY;
+    }
+
+    private double boxDistance(int z, double lat, double lng, double metersPerDegLng) {
+        double dLat = lat < minLat[z] ? minLat[z] - lat : lat > maxLat[z] ? lat - maxLat[z] : 0;
+        double dLng = lng < minLng[z] ? minLng[z] - lng : lng > maxLng[z] ? lng - maxLng[z] : 0;
+        double dy = dLat * METERS_PER_DEGREE;
+        double dx = dLng * metersPerDegLng;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public double distanceOutside(int z, double lat, double lng) {
+        if (contains(z, lat, lng)) return 0;
+
+        if (vertexStart[z] < 0) {
+            double centerLat = (minLat[z] + maxLat[z]) / 2;
+            double centerLng = (minLng[z] + maxLng[z]) / 2;
+            double dy = (lat - centerLat) * METERS_PER_DEGREE;
+            double dx = (lng - centerLng) * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            return Math.max(0, Math.sqrt(dx * dx + dy * dy) - radius[z]);
+        }
+
+        // Nearest edge, in metres around the point
+        double metersPerDegLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double best = Double.POSITIVE_INFINITY;
+        int start = vertexStart[z];
+        int end = start + vertexCount[z];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+            best = Math.min(best, distanceToSegment(
+                    (vertexLng[j] - lng) * metersPerDegLng, (vertexLat[j] - lat) * METERS_PER_DEGREE,
+                    (vertexLng[i] - lng) * metersPerDegLng, (vertexLat[i] - lat) * METERS_PER_DEGREE));
+        }
+        return best;
+    }
+
+    // Distance from the origin to segment a-b
+    static double distanceToSegment(double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSq));
+        double x = ax + t * dx;
+        double y = ay + t * dy;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    private boolean contains(int z, double lat, double lng) {
+        if (lat < minLat[z] || lat > maxLat[z] || lng < minLng[z] || lng > maxLng[z]) return false;
+
+        if (vertexStart[z] < 0) {
+            double centerLat = (minLat[z] + maxLat[z]) / 2;
+            double centerLng = (minLng[z] + maxLng[z]) / 2;
+            double dy = (lat - centerLat) * METERS_PER_DEGREE;
+            double dx = (lng - centerLng) * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            return dx * dx + dy * dy <= radius[z] * radius[z];
+        }
+
+        // Even-odd ray casting
+        boolean inside = false;
+        int start = vertexStart[z];
+        int end = start + vertexCount[z];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+            if ((vertexLat[i] > lat) != (vertexLat[j] > lat)
+                    && lng < (vertexLng[j] - vertexLng[i]) * (lat - vertexLat[i])
+                    / (vertexLat[j] - vertexLat[i]) + vertexLng[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private long cellSpan(int z) {
+        long rows = cellOf(maxLat[z]) - cellOf(minLat[z]) + 1L;
+        long cols = cellOf(maxLng[z]) - cellOf(minLng[z]) + 1L;
+        return rows * cols;
+    }
+
+    private interface CellVisitor {
+        void visit(long key);
+    }
+
+    private void forEachCell(int z, CellVisitor visitor) {
+        int rowEnd = cellOf(maxLat[z]);
+        int colEnd = cellOf(maxLng[z]);
+        for (int r = cellOf(minLat[z]); r <= rowEnd; r++) {
+            for (int c = cellOf(minLng[z]); c <= colEnd; c++) visitor.visit(cellKey(r, c));
+        }
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    // Slot of the cell, inserting it if asked; -1 when absent
+    private int slotFor(long key, boolean insert) {
+        int mask = cellKeys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (true) {
+            long k = cellKeys[slot];
+            if (k == key) return slot;
+            if (k == EMPTY) {
+                if (!insert) return -1;
+                cellKeys[slot] = key;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Average nanoseconds per containing() call on a synthetic index of zoneCount circles and
+    // polygons spread over a 2x2 degree area, for the diagnostics screen
+    static double measureLookupNanos(int zoneCount, int queries) {
+        Random random = new Random(42);
+        Builder builder = new Builder();
+        for (int i = 0; i < zoneCount; i++) {
+            double lat = 12 + random.nextDouble() * 2;
+            double lng = 77 + random.nextDouble() * 2;
+            if (i % 2 == 0) {
+                builder.addCircle("Z" + i, Type.GENERIC, 1, lat, lng, 50 + random.nextInt(450));
+            } else {
+                double d = 0.001 + random.nextDouble() * 0.004;
+                builder.addPolygon("Z" + i, Type.GENERIC, 1,
+                        new double[]{lat, lat + d, lat + d, lat},
+                        new double[]{lng, lng, lng + d, lng + d});
+            }
+        }
+        ZoneIndex index = builder.build();
+
+        double[] qLat = new double[queries];
+        double[] qLng = new double[queries];
+        for (int i = 0; i < queries; i++) {
+            qLat[i] = 12 + random.nextDouble() * 2;
+            qLng[i] = 77 + random.nextDouble() * 2;
+        }
+
+        int[] out = new int[8];
+        int sink = 0;
+        for (int i = 0; i < queries; i++) sink += index.containing(qLat[i], qLng[i], out); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) sink += index.containing(qLat[i], qLng[i], out);
+        long elapsed = System.nanoTime() - start;
+        return sink < 0 ? -1 : (double) elapsed / queries;
+    }
+
+    static final class Builder {
+        private int count;
+        private String[] ids = new String[16];
+        private Type[] types = new Type[16];
+        private int[] severities = new int[16];
+        private double[] minLat = new double[16], minLng = new double[16];
+        private double[] maxLat = new double[16], maxLng = new double[16];
+        private double[] radius = new double[16];
+        private int[] vertexStart = new int[16];
+        private int[] vertexCount = new int[16];
+        private int vertexTotal;
+        private double[] vertexLat = new double[64], vertexLng = new double[64];
+
+        Builder addCircle(String id, Type type, int severity, double lat, double lng, double radiusMeters) {
+            int z = add(id, type, severity);
+            double dLat = radiusMeters / METERS_PER_DEGREE;
+            double dLng = radiusMeters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+            minLat[z] = lat - dLat;
+            maxLat[z] = lat + dLat;
+            minLng[z] = lng - dLng;
+            maxLng[z] = lng + dLng;
+            radius[z] = radiusMeters;
+            vertexStart[z] = -1;
+            return this;
+        }
+
+        // Simple ring, not closed (the last vertex connects back to the first)
+        Builder addPolygon(String id, Type type, int severity, double[] lats, double[] lngs) {
+            if (lats.length < 3 || lats.length != lngs.length) {
+                throw new IllegalArgumentException("Polygon " + id + " needs 3+ matching vertices");
+            }
+            int z = add(id, type, severity);
+            if (vertexTotal + lats.length > vertexLat.length) {
+                int size = Math.max(vertexLat.length * 2, vertexTotal + lats.length);
+                vertexLat = Arrays.copyOf(vertexLat, size);
+                vertexLng = Arrays.copyOf(vertexLng, size);
+            }
+            double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+            double loLng = Double.MAX_VALUE, hiLng = -Double.MAX_VALUE;
+            for (int i = 0; i < lats.length; i++) {
+                vertexLat[vertexTotal + i] = lats[i];
+                vertexLng[vertexTotal + i] = lngs[i];
+                loLat = Math.min(loLat, lats[i]);
+                hiLat = Math.max(hiLat, lats[i]);
+                loLng = Math.min(loLng, lngs[i]);
+                hiLng = Math.max(hiLng, lngs[i]);
+            }
+            minLat[z] = loLat;
+            maxLat[z] = hiLat;
+            minLng[z] = loLng;
+            maxLng[z] = hiLng;
+            vertexStart[z] = vertexTotal;
+            vertexCount[z] = lats.length;
+            vertexTotal += lats.length;
+            return this;
+        }
+
+        private int add(String id, Type type, int severity) {
+            if (count == ids.length) {
+                int size = count * 2;
+                ids = Arrays.copyOf(ids, size);
+                types = Arrays.copyOf(types, size);
+                severities = Arrays.copyOf(severities, size);
+                minLat = Arrays.copyOf(minLat, size);
+                minLng = Arrays.copyOf(minLng, size);
+                maxLat = Arrays.copyOf(maxLat, size);
+                maxLng = Arrays.copyOf(maxLng, size);
+                radius = Arrays.copyOf(radius, size);
+                vertexStart = Arrays.copyOf(vertexStart, size);
+                vertexCount = Arrays.copyOf(vertexCount, size);
+            }
+            ids[count] = id;
+            types[count] = type;
+            severities[count] = severity;
+            return count++;
+        }
+
+        ZoneIndex build() {
+            return new ZoneIndex(this);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.emergency.alert;
+
+// Read side of a zone set, shared by the in-memory ZoneIndex and the memory-mapped
+// ZoneDataset. Zones are addressed by position; only id() may allocate.
+interface ZoneLookup {
+
+    int size();
+
+    String id(int zone);
+
+    ZoneIndex.Type type(int zone);
+
+    int severity(int zone);
+
+    // Writes the zones containing the point to out (as many as fit) and returns how many
+    // contain it in total
+    int containing(double lat, double lng, int[] out);
+
+    // Metres from the point to the zone's edge, 0 when inside
+    double distanceOutside(int zone, double lat, double lng);
+
+    // Approximate distance in metres to the nearest zone's bounding box within maxMeters,
+    // or Double.POSITIVE_INFINITY; 0 when inside a box
+    double distanceToNearest(double lat, double lng, double maxMeters);
+}
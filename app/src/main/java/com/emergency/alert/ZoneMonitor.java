@@ -0,0 +1,267 @@
+package com.emergency.alert;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// In-process zone engine: checks every tracked fix against the loaded zones and turns
+// containment changes into ENTER / EXIT / DWELL transitions, raised through the same
+// AlertNotifier and emergency_events paths as GeofenceBroadcastReceiver. Works for any
+// number of zones, unlike the 100 geofences Play services allows per app. Zones come from
+// the dataset bundled as assets/zones.bin, if the build has one; without it the index is
+// empty and every fix costs one empty lookup.
+final class ZoneMonitor {
+
+    private static final String TAG = "ZoneMonitor";
+
+    // Transition debouncing, see ZoneTransitionFilter
+    static final double BUFFER_METERS = 30;
+    static final long CONFIRM_MS = TimeUnit.SECONDS.toMillis(20);
+    static final long COOLDOWN_MS = TimeUnit.MINUTES.toMillis(2);
+    static final long DWELL_MS = TimeUnit.MINUTES.toMillis(10);
+    // Zones overlapping one point beyond this are still tracked on the next fixes
+    private static final int MAX_CONTAINING = 32;
+
+    private static volatile ZoneMonitor instance;
+
+    private final Context appContext;
+    private volatile ZoneLookup index = ZoneIndex.EMPTY_INDEX;
+    private volatile ZoneRegistry registry = ZoneRegistry.EMPTY;
+    private volatile long datasetLoadMs = -1;
+    private final CountDownLatch datasetLoaded = new CountDownLatch(1);
+
+    // Zones worker thread only
+    private final ZoneTransitionFilter filter = new ZoneTransitionFilter(
+            BUFFER_METERS, CONFIRM_MS, COOLDOWN_MS, DWELL_MS, this::onTransition);
+    private final Map<String, Tracked> tracked = new HashMap<>();
+    private final int[] containing = new int[MAX_CONTAINING];
+    private long generation;
+
+    // Copies of the filter's counters for the diagnostics screen
+    private volatile long rawTransitions;
+    private volatile long suppressedTransitions;
+
+    static ZoneMonitor getInstance(Context context) {
+        ZoneMonitor monitor = instance;
+        if (monitor == null) {
+            synchronized (ZoneMonitor.class) {
+                monitor = instance;
+                if (monitor == null) {
+                    monitor = new ZoneMonitor(context.getApplicationContext());
+                    instance = monitor;
+                }
+            }
+        }
+        return monitor;
+    }
+
+    private ZoneMonitor(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    // Swaps in a new zone set; zones are matched by id, so ones kept across the swap
+    // do not re-fire ENTER, and ones that are gone exit
+    void setIndex(ZoneLookup index) {
+        this.registry = new ZoneRegistry(index);
+        this.index = index;
+    }
+
+    ZoneLookup index() {
+        return index;
+    }
+
+    // For geofence broadcasts, which can arrive in a process that is still mapping the dataset
+    ZoneRegistry awaitRegistry(long timeoutMs) {
+        try {
+            if (!datasetLoaded.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Zone dataset still loading, geofence zones resolve as generic");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return registry;
+    }
+
+    // Installs the bundled dataset if needed and maps it. Mapping is cheap but still touches
+    // the disk, so it runs on its own thread rather than in Application.onCreate.
+    void loadDatasetAsync() {
+        Thread loader = new Thread(this::loadDataset, "zone-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void loadDataset() {
+        try {
+            mapDataset();
+        } finally {
+            datasetLoaded.countDown();
+        }
+    }
+
+    private void mapDataset() {
+        File file = new File(appContext.getFilesDir(), ZoneDataset.FILE_NAME);
+        installBundledDataset(file);
+        if (!file.exists()) {
+            Log.i(TAG, "No zone dataset installed, nothing to monitor");
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        try {
+            ZoneDataset dataset = ZoneDataset.open(file);
+            datasetLoadMs = SystemClock.elapsedRealtime() - start;
+            setIndex(dataset);
+            Log.d(TAG, "Mapped " + dataset.size() + " zone(s) in " + datasetLoadMs + " ms");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not load " + file, e);
+        }
+    }
+
+    // Assets are compressed inside the APK and cannot be mapped, so the dataset is copied out
+    // once, and again whenever the APK is newer than the copy (an app update)
+    private void installBundledDataset(File file) {
+        File apk = new File(appContext.getApplicationInfo().sourceDir);
+        if (file.exists() && file.lastModified() >= apk.lastModified()) return;
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (InputStream in = appContext.getAssets().open(ZoneDataset.FILE_NAME);
+             OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        } catch (FileNotFoundException e) {
+            return; // this build bundles no dataset
+        } catch (IOException e) {
+            Log.e(TAG, "Could not install the bundled zone dataset", e);
+            temp.delete();
+            return;
+        }
+        // A rename never leaves a half-written dataset behind
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Could not move the zone dataset into place");
+            temp.delete();
+        }
+    }
+
+    long datasetLoadMs() {
+        return datasetLoadMs;
+    }
+
+    // Distance to the nearest zone for SamplingPolicy, or Double.POSITIVE_INFINITY
+    double distanceToNearest(Location fix) {
+        return index.distanceToNearest(fix.getLatitude(), fix.getLongitude(),
+                SamplingPolicy.ZONE_APPROACH_LEAVE);
+    }
+
+    // Zones worker thread only
+    void onFix(Location fix) {
+        ZoneLookup zones = index;
+        double lat = fix.getLatitude();
+        double lng = fix.getLongitude();
+        long now = fix.getTime();
+        long seen = ++generation;
+
+        int found = zones.containing(lat, lng, containing);
+        if (found > MAX_CONTAINING) {
+            Log.w(TAG, found + " overlapping zones at one point, checking " + MAX_CONTAINING);
+            found = MAX_CONTAINING;
+        }
+
+        for (int i = 0; i < found; i++) {
+            int zone = containing[i];
+            String id = zones.id(zone);
+            Tracked state = tracked.get(id);
+            if (state == null || state.source != zones) {
+                state = new Tracked(zones, zone);
+                tracked.put(id, state);
+            }
+            state.seen = seen;
+            filter.observe(id, now, 0);
+        }
+
+        // Zones we were in (or entering) and are not in now: how far out decides the exit
+        for (Map.Entry<String, Tracked> entry : tracked.entrySet()) {
+            Tracked state = entry.getValue();
+            if (state.seen == seen) continue;
+            double outside = state.source == zones
+                    ? zones.distanceOutside(state.zone, lat, lng)
+                    : Double.POSITIVE_INFINITY; // the zone set was swapped and it is gone
+            filter.observe(entry.getKey(), now, outside);
+        }
+
+        filter.poll(now);
+        Iterator<String> it = tracked.keySet().iterator();
+        while (it.hasNext()) {
+            if (!filter.isTracking(it.next())) it.remove();
+        }
+
+        rawTransitions = filter.rawTransitions();
+        suppressedTransitions = filter.suppressedTransitions();
+    }
+
+    long rawTransitions() {
+        return rawTransitions;
+    }
+
+    long suppressedTransitions() {
+        return suppressedTransitions;
+    }
+
+    private void onTransition(String zoneId, ZoneTransitionFilter.Transition transition, long time) {
+        ZoneIndex.Type type = tracked.get(zoneId).type;
+        switch (transition) {
+            case ENTER:
+                enter(zoneId, type);
+                break;
+            case DWELL:
+                dwell(zoneId, type);
+                break;
+            case EXIT:
+                exit(zoneId, type);
+                break;
+        }
+    }
+
+    private void enter(String zoneId, ZoneIndex.Type type) {
+        AlertNotifier.getInstance(appContext).post("GEOFENCE_ENTER", type, zoneId, type.title, type.message);
+        EventJournal.getInstance(appContext).record("GEOFENCE_ENTER", zoneId, "User entered zone");
+    }
+
+    private void dwell(String zoneId, ZoneIndex.Type type) {
+        AlertNotifier.getInstance(appContext).post("GEOFENCE_DWELL", type, zoneId,
+                "⚠️ Prolonged Stay Alert", "You are staying too long in a risky area.");
+        EventJournal.getInstance(appContext).record("GEOFENCE_DWELL", zoneId, "User stayed too long");
+    }
+
+    private void exit(String zoneId, ZoneIndex.Type type) {
+        AlertNotifier.getInstance(appContext).post("GEOFENCE_EXIT", type, zoneId,
+                "✅ Safe Zone", "You exited the monitored area.");
+        EventJournal.getInstance(appContext).record("GEOFENCE_EXIT", zoneId, "User exited zone");
+    }
+
+    private static final class Tracked {
+        final ZoneLookup source;
+        final int zone;
+        final ZoneIndex.Type type;
+        long seen;
+
+        Tracked(ZoneLookup source, int zone) {
+            this.source = source;
+            this.zone = zone;
+            this.type = source.type(zone);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.emergency.alert;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Geofence request id -> zone metadata (type, severity, message), built once per zone set
+// when ZoneMonitor installs it, so a burst of geofence transitions costs one hash lookup
+// each. An id the zone set does not contain resolves to a GENERIC zone.
+final class ZoneRegistry {
+
+    static final ZoneRegistry EMPTY = new ZoneRegistry(ZoneIndex.EMPTY_INDEX);
+
+    static final class Zone {
+        final String id;
+        final ZoneIndex.Type type;
+        final int severity;
+        final String message;
+
+        Zone(String id, ZoneIndex.Type type, int severity) {
+            this.id = id;
+            this.type = type;
+            this.severity = severity;
+            this.message = type.message;
+        }
+    }
+
+    private final Map<String, Zone> zones;
+
+    ZoneRegistry(ZoneLookup lookup) {
+        int size = lookup.size();
+        zones = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            Zone zone = new Zone(lookup.id(i), lookup.type(i), lookup.severity(i));
+            zones.put(zone.id, zone);
+        }
+    }
+
+    Zone resolve(String id) {
+        Zone zone = zones.get(id);
+        return zone != null ? zone : new Zone(id, ZoneIndex.Type.GENERIC, 0);
+    }
+
+    boolean contains(String id) {
+        return zones.containsKey(id);
+    }
+
+    int size() {
+        return zones.size();
+    }
+}
@@ -0,0 +1,221 @@
+package com.emergency.alert;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Per-zone state machine that turns noisy inside/outside observations into stable
+// ENTER / DWELL / EXIT transitions. Plain Java with the clock passed in, so it can be
+// replayed against recorded traces.
+//
+//   OUTSIDE --inside--> ENTERING --held--> INSIDE --beyond buffer--> EXITING --held--> OUTSIDE
+//
+// - Entering needs the point inside the zone; leaving needs it more than bufferMeters
+//   outside the edge, so walking along the boundary does not flap.
+// - A pending ENTER or EXIT is confirmed only after minDwellMs without a reversal.
+// - After a transition is emitted, the opposite one waits out cooldownMs; a reversal
+//   before then cancels it.
+// - DWELL fires once per stay, dwellAlertMs after the confirmed enter.
+//
+// Fed either by fixes (observe, with the distance to the zone edge), where a pending
+// transition is confirmed by a later observe() or poll(), or by raw geofence events
+// (onGeofenceEvent), which are decided on the spot because nothing may come after them.
+// Not thread-safe; callers confine it to one thread.
+final class ZoneTransitionFilter {
+
+    enum Transition {
+        ENTER, DWELL, EXIT
+    }
+
+    interface Listener {
+        void onTransition(String zoneId, Transition transition, long time);
+    }
+
+    private enum State {
+        OUTSIDE, ENTERING, INSIDE, EXITING
+    }
+
+    // Far enough back that no cooldown applies
+    private static final long NEVER = Long.MIN_VALUE / 2;
+
+    private final double bufferMeters;
+    private final long minDwellMs;
+    private final long cooldownMs;
+    private final long dwellAlertMs;
+    private final Listener listener;
+
+    private final Map<String, Zone> zones = new HashMap<>();
+
+    // Counters: raw = inside/outside flips observed, emitted = ENTER/EXIT passed on
+    private long raw;
+    private long emitted;
+
+    // dwellAlertMs <= 0 disables DWELL
+    ZoneTransitionFilter(double bufferMeters, long minDwellMs, long cooldownMs, long dwellAlertMs,
+                         Listener listener) {
+        this.bufferMeters = bufferMeters;
+        this.minDwellMs = minDwellMs;
+        this.cooldownMs = cooldownMs;
+        this.dwellAlertMs = dwellAlertMs;
+        this.listener = listener;
+    }
+
+    // metersOutside is 0 when the point is inside the zone, else the distance to its edge
+    void observe(String zoneId, long now, double metersOutside) {
+        boolean inside = metersOutside <= 0;
+        Zone zone = zones.get(zoneId);
+        if (zone == null) {
+            if (!inside) return; // never seen and still outside: nothing to track
+            zone = new Zone();
+            zones.put(zoneId, zone);
+        }
+        if (inside != zone.rawInside) {
+            zone.rawInside = inside;
+            raw++;
+        }
+
+        switch (zone.state) {
+            case OUTSIDE:
+                if (inside) zone.pend(State.ENTERING, now);
+                break;
+            case ENTERING:
+                if (!inside) zone.state = State.OUTSIDE; // flap, nothing emitted
+                break;
+            case INSIDE:
+                if (metersOutside > bufferMeters) zone.pend(State.EXITING, now);
+                break;
+            case EXITING:
+                if (metersOutside <= bufferMeters) zone.state = State.INSIDE;
+                break;
+        }
+        mature(zoneId, zone, now);
+    }
+
+    // Raw geofence transitions. Nothing is held back: an ENTER or EXIT within cooldownMs of
+    // the last one passed on for the zone is a flap and dropped, and so is an EXIT for a zone
+    // not entered; a repeated ENTER after the cooldown means an EXIT was missed and is passed
+    // on. DWELL is passed on once per stay.
+    void onGeofenceEvent(String zoneId, Transition transition, long now) {
+        Zone zone = zones.get(zoneId);
+        if (zone == null) {
+            zone = new Zone();
+            zones.put(zoneId, zone);
+        }
+
+        if (transition == Transition.DWELL) {
+            if (zone.state == State.INSIDE && zone.dwellReported) return;
+            zone.state = State.INSIDE;
+            zone.dwellReported = true;
+            listener.onTransition(zoneId, Transition.DWELL, now);
+            return;
+        }
+
+        boolean inside = transition == Transition.ENTER;
+        if (inside != zone.rawInside) {
+            zone.rawInside = inside;
+            raw++;
+        }
+        if (now - zone.lastEmitted < cooldownMs) return;
+        if (!inside && zone.state == State.OUTSIDE) return;
+
+        zone.lastEmitted = now;
+        emitted++;
+        if (inside) {
+            zone.state = State.INSIDE;
+            zone.enteredAt = now;
+            zone.dwellReported = false;
+        } else {
+            zone.state = State.OUTSIDE;
+        }
+        listener.onTransition(zoneId, transition, now);
+    }
+
+    // Geofence state carried over from an earlier process (see lastPassedOn)
+    void restoreGeofenceZone(String zoneId, boolean inside, long lastPassedOn) {
+        Zone zone = new Zone();
+        zone.state = inside ? State.INSIDE : State.OUTSIDE;
+        zone.rawInside = inside;
+        zone.enteredAt = lastPassedOn;
+        zone.lastEmitted = lastPassedOn;
+        zones.put(zoneId, zone);
+    }
+
+    // Time of the last ENTER or EXIT passed on for the zone, or Long.MIN_VALUE
+    long lastPassedOn(String zoneId) {
+        Zone zone = zones.get(zoneId);
+        return zone == null || zone.lastEmitted == NEVER ? Long.MIN_VALUE : zone.lastEmitted;
+    }
+
+    // Confirms pending transitions whose time has come and forgets zones that have been
+    // left for good; call regularly (every fix)
+    void poll(long now) {
+        Iterator<Map.Entry<String, Zone>> it = zones.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Zone> entry = it.next();
+            Zone zone = entry.getValue();
+            mature(entry.getKey(), zone, now);
+            if (zone.state == State.OUTSIDE && now - zone.lastEmitted >= cooldownMs) it.remove();
+        }
+    }
+
+    boolean isTracking(String zoneId) {
+        return zones.containsKey(zoneId);
+    }
+
+    // Confirmed inside (an EXIT may be pending)
+    boolean isInside(String zoneId) {
+        Zone zone = zones.get(zoneId);
+        return zone != null && (zone.state == State.INSIDE || zone.state == State.EXITING);
+    }
+
+    long rawTransitions() {
+        return raw;
+    }
+
+    long emittedTransitions() {
+        return emitted;
+    }
+
+    long suppressedTransitions() {
+        return Math.max(0, raw - emitted);
+    }
+
+    private void mature(String zoneId, Zone zone, long now) {
+        if (zone.state == State.ENTERING || zone.state == State.EXITING) {
+            long confirmAt = Math.max(zone.pendingSince + minDwellMs, zone.lastEmitted + cooldownMs);
+            if (now < confirmAt) return;
+
+            zone.lastEmitted = now;
+            emitted++;
+            if (zone.state == State.ENTERING) {
+                zone.state = State.INSIDE;
+                zone.enteredAt = zone.pendingSince;
+                zone.dwellReported = false;
+                listener.onTransition(zoneId, Transition.ENTER, now);
+            } else {
+                zone.state = State.OUTSIDE;
+                listener.onTransition(zoneId, Transition.EXIT, now);
+            }
+        }
+
+        if (zone.state == State.INSIDE && dwellAlertMs > 0 && !zone.dwellReported
+                && now - zone.enteredAt >= dwellAlertMs) {
+            zone.dwellReported = true;
+            listener.onTransition(zoneId, Transition.DWELL, now);
+        }
+    }
+
+    private static final class Zone {
+        State state = State.OUTSIDE;
+        boolean rawInside;
+        long pendingSince;
+        long enteredAt;
+        boolean dwellReported;
+        long lastEmitted = NEVER;
+
+        void pend(State next, long now) {
+            state = next;
+            pendingSince = now;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.emergency.alert;
+
+import android.Manifest;
+import android.app.Application;
+import android.app.Notification;
+
+import androidx.core.app.NotificationCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+// Counts what reaches the NotificationManager. The coalescing delay runs in real time;
+// the heads-up interval is measured on Robolectric's SystemClock, which only moves when told to.
+@RunWith(RobolectricTestRunner.class)
+public class AlertNotifierTest {
+
+    private final List<Notification> posted = Collections.synchronizedList(new ArrayList<>());
+    private AlertNotifier notifier;
+
+    @Before
+    public void setUp() {
+        Application app = RuntimeEnvironment.getApplication();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        notifier = new AlertNotifier(app, (id, notification) -> posted.add(notification));
+    }
+
+    @Test
+    public void burstWithinTheCoalesceWindowIsOnePost() throws Exception {
+        long start = System.nanoTime();
+        burst(50);
+        long burstMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("burst took " + burstMs + " ms", burstMs < AlertNotifier.COALESCE_MS);
+
+        Thread.sleep(2 * AlertNotifier.COALESCE_MS);
+        assertTrue(notifier.flushAndWait(5000));
+
+        assertEquals(50, notifier.receivedCount());
+        assertEquals(1, posted.size());
+        assertEquals(1, notifier.postedCount());
+        assertHeadsUp(posted.get(0));
+        assertEquals(50, posted.get(0).number);
+    }
+
+    @Test
+    public void secondBurstWithinTheMinuteLandsSilently() {
+        burst(10);
+        assertTrue(notifier.flushAndWait(5000));
+
+        ShadowSystemClock.advanceBy(30, TimeUnit.SECONDS);
+        burst(10);
+        assertTrue(notifier.flushAndWait(5000));
+
+        assertEquals(2, posted.size());
+        assertHeadsUp(posted.get(0));
+        assertSilent(posted.get(1));
+
+        // Once the interval has passed the next update may pop up again
+        ShadowSystemClock.advanceBy(AlertNotifier.HEADS_UP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        burst(1);
+        assertTrue(notifier.flushAndWait(5000));
+        assertEquals(3, posted.size());
+        assertHeadsUp(posted.get(2));
+    }
+
+    @Test
+    public void flushWithNothingNewPostsNothing() {
+        burst(3);
+        assertTrue(notifier.flushAndWait(5000));
+        assertTrue(notifier.flushAndWait(5000));
+        assertEquals(1, posted.size());
+    }
+
+    private void burst(int zones) {
+        for (int i = 0; i < zones; i++) {
+            notifier.post("GEOFENCE_ENTER", ZoneIndex.Type.UNSAFE, "UNSAFE_" + i,
+                    ZoneIndex.Type.UNSAFE.title, ZoneIndex.Type.UNSAFE.message);
+        }
+    }
+
+    private static void assertHeadsUp(Notification notification) {
+        assertEquals(NotificationCompat.PRIORITY_HIGH, notification.priority);
+        assertNotNull(notification.vibrate);
+    }
+
+    private static void assertSilent(Notification notification) {
+        assertTrue(notification.priority < NotificationCompat.PRIORITY_HIGH);
+        assertNull(notification.vibrate);
+    }
+}
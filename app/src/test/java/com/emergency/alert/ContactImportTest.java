@@ -0,0 +1,133 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Imports into database files, so every commit pays for its journal write
+@RunWith(RobolectricTestRunner.class)
+public class ContactImportTest {
+
+    private static final String TAG = "ContactImportTest";
+    private static final String BULK_DB = "contact-import-bulk-test.db";
+    private static final String PER_ROW_DB = "contact-import-per-row-test.db";
+    private static final int ENTRIES = 10000;
+
+    private Application app;
+    private DatabaseHelper bulk;
+    private DatabaseHelper perRow;
+
+    @Before
+    public void setUp() {
+        app = RuntimeEnvironment.getApplication();
+        app.deleteDatabase(BULK_DB);
+        app.deleteDatabase(PER_ROW_DB);
+        bulk = new DatabaseHelper(app, BULK_DB);
+        perRow = new DatabaseHelper(app, PER_ROW_DB);
+        bulk.getWritableDatabase();
+        perRow.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        bulk.close();
+        perRow.close();
+        app.deleteDatabase(BULK_DB);
+        app.deleteDatabase(PER_ROW_DB);
+    }
+
+    @Test
+    public void oneTransactionBeatsARowAtATime() throws IOException {
+        // Same parsing and insert code on both sides; warm it up before timing
+        importBoth(csv(8, 1000));
+
+        long[] ms = importBoth(csv(9, ENTRIES));
+        long bulkMs = ms[0];
+        long perRowMs = ms[1];
+
+        Log.i(TAG, ENTRIES + " contacts: one transaction " + bulkMs + " ms, per row " + perRowMs + " ms");
+        assertTrue("one transaction " + bulkMs + " ms, per row " + perRowMs + " ms", bulkMs < perRowMs);
+    }
+
+    @Test
+    public void uniqueIndexRejectsTheSameNumberInAnotherFormat() throws IOException {
+        assertTrue(bulk.addEmergencyContact("Asha", "+91 98765 43210", "Sister") > 0);
+        assertEquals(-1, bulk.addEmergencyContact("Asha Rao", "0091 98765-43210", "Sister"));
+
+        // The index itself refuses it, not only the OR IGNORE insert
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_CONTACT_NAME, "Asha");
+        values.put(DatabaseHelper.COL_CONTACT_PHONE, "9876543210");
+        values.put(DatabaseHelper.COL_CONTACT_PHONE_NORMALIZED, "+919876543210");
+        try {
+            bulk.getWritableDatabase().insertOrThrow(DatabaseHelper.TABLE_CONTACTS, null, values);
+            fail("duplicate normalized number was inserted");
+        } catch (SQLiteConstraintException expected) {
+        }
+
+        // Repeats within the file and against saved contacts both count as duplicates
+        String csv = "name,phone,relation\n" +
+                "Asha,+91-98765-43210,Sister\n" +
+                "Ravi,+91 91234 56789,Brother\n" +
+                "Ravi again,+91 91234-56789,Brother\n" +
+                "Meera,+91 99887 76655,Friend\n";
+        DatabaseHelper.ImportResult result = bulk.importEmergencyContacts(
+                new ContactImporter(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(2, result.imported);
+        assertEquals(2, result.duplicates);
+        assertEquals(3, DatabaseUtils.queryNumEntries(bulk.getReadableDatabase(), DatabaseHelper.TABLE_CONTACTS));
+    }
+
+    // Returns {one transaction, per row} in ms
+    private long[] importBoth(byte[] file) throws IOException {
+        long before = bulk.getEmergencyContactCount();
+        long start = System.nanoTime();
+        DatabaseHelper.ImportResult result = bulk.importEmergencyContacts(
+                new ContactImporter(new ByteArrayInputStream(file)));
+        long bulkMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The path before the bulk import: one autocommitted insert per parsed contact
+        start = System.nanoTime();
+        int added = 0;
+        try (ContactImporter importer = new ContactImporter(new ByteArrayInputStream(file))) {
+            DatabaseHelper.EmergencyContact row = new DatabaseHelper.EmergencyContact();
+            while (importer.next(row)) {
+                if (perRow.addEmergencyContact(row.name, row.phone, row.relation) > 0) added++;
+            }
+        }
+        long perRowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(0, result.duplicates);
+        assertEquals(result.imported, added);
+        assertEquals(before + result.imported, bulk.getEmergencyContactCount());
+        assertEquals(bulk.getEmergencyContactCount(), perRow.getEmergencyContactCount());
+        return new long[]{bulkMs, perRowMs};
+    }
+
+    // Distinct numbers for each prefix digit
+    private static byte[] csv(int prefix, int entries) {
+        StringBuilder csv = new StringBuilder("name,phone,relation\n");
+        for (int i = 0; i < entries; i++) {
+            csv.append("Contact ").append(i).append(",+91 ").append(prefix).append(100000000 + i).append(",Friend\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
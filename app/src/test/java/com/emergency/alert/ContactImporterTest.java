@@ -0,0 +1,113 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContactImporterTest {
+
+    @Test
+    public void splitsQuotedFieldsAndEscapedQuotes() {
+        assertEquals(Arrays.asList("Asha", "98765 43210", "Sister"),
+                ContactImporter.splitCsv("Asha,98765 43210,Sister", ','));
+        assertEquals(Arrays.asList("Rao, Asha", "say \"hi\"", ""),
+                ContactImporter.splitCsv("\"Rao, Asha\",\"say \"\"hi\"\"\",", ','));
+        assertEquals(Arrays.asList(""), ContactImporter.splitCsv("", ','));
+    }
+
+    @Test
+    public void semicolonIsDataInCommaFiles() {
+        assertEquals(Arrays.asList("Asha; Ravi", "98765 43210"),
+                ContactImporter.splitCsv("Asha; Ravi,98765 43210", ','));
+        assertEquals(Arrays.asList("Asha", "98765 43210", "Sister, elder"),
+                ContactImporter.splitCsv("Asha;98765 43210;Sister, elder", ';'));
+    }
+
+    @Test
+    public void separatorComesFromTheFirstLine() {
+        assertEquals(',', ContactImporter.detectSeparator("name,phone,relation"));
+        assertEquals(';', ContactImporter.detectSeparator("name;phone;relation"));
+        assertEquals(',', ContactImporter.detectSeparator("Asha,98765 43210"));
+        // Quoted separators don't count
+        assertEquals(',', ContactImporter.detectSeparator("\"a;b;c\",98765 43210"));
+    }
+
+    @Test
+    public void headerColumnsMatchExactly() throws IOException {
+        List<DatabaseHelper.EmergencyContact> contacts = read(
+                "\uFEFFRelation,Phone,Name\n" +
+                "Sister,98765 43210,Asha\n" +
+                "\n" +
+                ",+91 91234 56789,Ravi\n");
+        assertEquals(2, contacts.size());
+        assertContact(contacts.get(0), "Asha", "98765 43210", "Sister");
+        assertContact(contacts.get(1), "Ravi", "+91 91234 56789", ContactImporter.DEFAULT_RELATION);
+    }
+
+    @Test
+    public void lookalikeHeaderIsTreatedAsData() throws IOException {
+        // "Nickname" and "Phone type" used to be taken as the name and phone columns
+        List<DatabaseHelper.EmergencyContact> contacts = read(
+                "Nickname,Phone type\n" +
+                "Asha,98765 43210\n");
+        assertEquals(2, contacts.size());
+        assertContact(contacts.get(0), "Nickname", "Phone type", ContactImporter.DEFAULT_RELATION);
+        assertContact(contacts.get(1), "Asha", "98765 43210", ContactImporter.DEFAULT_RELATION);
+    }
+
+    @Test
+    public void semicolonFileWithHeader() throws IOException {
+        List<DatabaseHelper.EmergencyContact> contacts = read(
+                "name;phone;relation\r\n" +
+                "\"Rao; Asha\";098765 43210;Sister, elder\r\n");
+        assertEquals(1, contacts.size());
+        assertContact(contacts.get(0), "Rao; Asha", "098765 43210", "Sister, elder");
+    }
+
+    @Test
+    public void vCardWithFoldedLines() throws IOException {
+        List<DatabaseHelper.EmergencyContact> contacts = read(
+                "BEGIN:VCARD\n" +
+                "VERSION:3.0\n" +
+                "FN:Asha\n" +
+                "  Rao\n" +
+                "TEL;TYPE=CELL:tel:+91 98765 43210\n" +
+                "END:VCARD\n" +
+                "BEGIN:VCARD\n" +
+                "FN:No number\n" +
+                "END:VCARD\n" +
+                "BEGIN:VCARD\n" +
+                "TEL:112\n" +
+                "END:VCARD\n");
+        assertEquals(2, contacts.size());
+        assertContact(contacts.get(0), "Asha Rao", "+91 98765 43210", ContactImporter.DEFAULT_RELATION);
+        assertContact(contacts.get(1), "112", "112", ContactImporter.DEFAULT_RELATION);
+    }
+
+    private static List<DatabaseHelper.EmergencyContact> read(String file) throws IOException {
+        List<DatabaseHelper.EmergencyContact> contacts = new ArrayList<>();
+        try (ContactImporter importer = new ContactImporter(
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)))) {
+            DatabaseHelper.EmergencyContact contact = new DatabaseHelper.EmergencyContact();
+            while (importer.next(contact)) {
+                contacts.add(contact);
+                contact = new DatabaseHelper.EmergencyContact();
+            }
+        }
+        return contacts;
+    }
+
+    private static void assertContact(DatabaseHelper.EmergencyContact contact,
+                                      String name, String phone, String relation) {
+        assertEquals(name, contact.name);
+        assertEquals(phone, contact.phone);
+        assertEquals(relation, contact.relation);
+    }
+}
@@ -0,0 +1,118 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Open + insert + query, as a screen or receiver does it: once with a fresh helper per call
+// and ContentValues inserts (how every caller worked before the shared helper), once through
+// the shared helper's compiled insert and contact snapshot. Database file, not in-memory.
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperBenchmarkTest {
+
+    private static final String TAG = "DatabaseHelperBenchmark";
+    private static final String DB_NAME = "helper-benchmark-test.db";
+    private static final int CONTACTS = 20;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 200;
+
+    private Application app;
+    private DatabaseHelper shared;
+
+    @Before
+    public void setUp() {
+        app = RuntimeEnvironment.getApplication();
+        app.deleteDatabase(DB_NAME);
+        shared = new DatabaseHelper(app, DB_NAME);
+        for (int i = 0; i < CONTACTS; i++) {
+            shared.addEmergencyContact("Contact " + i, "+91987654" + (3210 + i), "Friend");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        shared.close();
+        app.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void sharedHelperBeatsAHelperPerCall() {
+        for (int i = 0; i < WARMUP; i++) {
+            perCallRound(i);
+            sharedRound(i);
+        }
+
+        long[] perCall = new long[ROUNDS];
+        long[] sharedRounds = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            perCallRound(i);
+            perCall[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            sharedRound(i);
+            sharedRounds[i] = System.nanoTime() - start;
+        }
+
+        long perCallMedian = median(perCall);
+        long sharedMedian = median(sharedRounds);
+        Log.i(TAG, String.format("open+insert+query median: helper per call %d us, shared helper %d us",
+                TimeUnit.NANOSECONDS.toMicros(perCallMedian), TimeUnit.NANOSECONDS.toMicros(sharedMedian)));
+        assertTrue("shared " + sharedMedian + " ns, per call " + perCallMedian + " ns",
+                sharedMedian < perCallMedian);
+    }
+
+    // The old path: construct, open, insert with ContentValues, query every column, close
+    private void perCallRound(int i) {
+        DatabaseHelper helper = new DatabaseHelper(app, DB_NAME);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COL_EVENT_TYPE, "GEOFENCE_ENTER");
+            values.put(DatabaseHelper.COL_EVENT_TIME, System.currentTimeMillis());
+            values.put(DatabaseHelper.COL_EVENT_LOCATION, "zone-" + i);
+            values.put(DatabaseHelper.COL_EVENT_NOTES, "benchmark");
+            assertTrue(db.insert(DatabaseHelper.TABLE_EVENTS, null, values) > 0);
+
+            Cursor cursor = db.query(DatabaseHelper.TABLE_CONTACTS, null, null, null, null, null, null);
+            try {
+                int rows = 0;
+                while (cursor.moveToNext()) {
+                    cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_CONTACT_PHONE));
+                    rows++;
+                }
+                assertEquals(CONTACTS, rows);
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    private void sharedRound(int i) {
+        assertTrue(shared.addEmergencyEvent("GEOFENCE_ENTER", "zone-" + i, "benchmark") > 0);
+        assertEquals(CONTACTS, shared.getAllEmergencyContacts().size());
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,159 @@
+package com.emergency.alert;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Robolectric runs tests on the main looper thread, so anything here counts as the UI thread
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperTest {
+
+    private DatabaseHelper dbHelper;
+    private ExecutorService background;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication(), null);
+        background = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DatabaseHelper.setMainThreadAccessFatal(false);
+        background.shutdown();
+        background.awaitTermination(5, TimeUnit.SECONDS);
+        dbHelper.close();
+    }
+
+    @Test
+    public void mainThreadAccessThrowsInTestMode() {
+        DatabaseHelper.setMainThreadAccessFatal(true);
+        try {
+            dbHelper.getEmergencyContactCount();
+            fail("read on the main thread");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            dbHelper.addEmergencyContact("Asha", "98765 43210", "Sister");
+            fail("write on the main thread");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void backgroundAccessIsAllowedInTestMode() throws Exception {
+        DatabaseHelper.setMainThreadAccessFatal(true);
+        SQLiteDatabase db = background.submit(dbHelper::getWritableDatabase).get(5, TimeUnit.SECONDS);
+        assertNotNull(db);
+    }
+
+    @Test
+    public void mainThreadAccessIsAllowedOutsideTestMode() {
+        assertNotNull(dbHelper.getReadableDatabase());
+    }
+
+    @Test
+    public void contactSnapshotStaysConsistentUnderConcurrentWrites() throws Exception {
+        final int readers = 4;
+        final int writers = 2;
+        final int addsPerWriter = 200;
+        dbHelper.warmContactCache();
+
+        ExecutorService pool = Executors.newFixedThreadPool(readers + writers);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<Integer>> reads = new ArrayList<>();
+        List<Future<Set<Integer>>> writes = new ArrayList<>();
+        try {
+            for (int r = 0; r < readers; r++) {
+                reads.add(pool.submit(() -> {
+                    go.await();
+                    int passes = 0;
+                    while (writing.get() || passes == 0) {
+                        // A torn copy would show up as a repeated id or a half-built contact
+                        Set<Integer> seen = new HashSet<>();
+                        for (DatabaseHelper.EmergencyContact contact : dbHelper.getAllEmergencyContacts()) {
+                            assertTrue("repeated id " + contact.id, seen.add(contact.id));
+                            assertNotNull(contact.name);
+                            assertNotNull(contact.phone);
+                        }
+                        passes++;
+                    }
+                    return passes;
+                }));
+            }
+            for (int w = 0; w < writers; w++) {
+                final int writer = w;
+                writes.add(pool.submit(() -> {
+                    go.await();
+                    Set<Integer> kept = new HashSet<>();
+                    for (int i = 0; i < addsPerWriter; i++) {
+                        long id = dbHelper.addEmergencyContact("Contact " + writer + "-" + i,
+                                "+9198" + writer + (1000000 + i), "Friend");
+                        assertTrue(id > 0);
+                        // Every other contact is deleted again while readers are iterating
+                        if (i % 2 == 1) {
+                            assertTrue(dbHelper.deleteEmergencyContact((int) id));
+                        } else {
+                            kept.add((int) id);
+                        }
+                    }
+                    return kept;
+                }));
+            }
+            go.countDown();
+
+            Set<Integer> expected = new HashSet<>();
+            for (Future<Set<Integer>> write : writes) expected.addAll(write.get(60, TimeUnit.SECONDS));
+            writing.set(false);
+            // An exception in a reader, ConcurrentModificationException included, fails here
+            for (Future<Integer> read : reads) assertTrue(read.get(60, TimeUnit.SECONDS) > 0);
+
+            assertEquals(writers * addsPerWriter / 2, expected.size());
+            assertEquals(expected, ids(dbHelper.getAllEmergencyContacts()));
+            assertEquals(expected, idsOnDisk());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Set<Integer> ids(List<DatabaseHelper.EmergencyContact> contacts) {
+        Set<Integer> ids = new HashSet<>();
+        for (DatabaseHelper.EmergencyContact contact : contacts) ids.add(contact.id);
+        return ids;
+    }
+
+    private Set<Integer> idsOnDisk() {
+        Set<Integer> ids = new HashSet<>();
+        Cursor cursor = dbHelper.getReadableDatabase().query(DatabaseHelper.TABLE_CONTACTS,
+                new String[]{DatabaseHelper.COL_CONTACT_ID}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) ids.add(cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,83 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.database.DatabaseUtils;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// A database file rather than an in-memory one, so every commit pays for its journal write
+@RunWith(RobolectricTestRunner.class)
+public class EventJournalTest {
+
+    private static final String TAG = "EventJournalTest";
+    private static final String DB_NAME = "event-journal-test.db";
+    private static final int EVENTS = 4096;
+
+    private Application app;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        app = RuntimeEnvironment.getApplication();
+        app.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(app, DB_NAME);
+        dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        app.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void biggerBatchesRecordMoreEventsPerSecond() {
+        double one = eventsPerSecond(1);
+        double sixteen = eventsPerSecond(16);
+        double large = eventsPerSecond(256);
+        Log.i(TAG, String.format("events/s at batch 1: %.0f, 16: %.0f, 256: %.0f", one, sixteen, large));
+
+        // Under load a batch of 1 already coalesces whatever queued during the last commit,
+        // so only the two ends are compared
+        assertTrue(String.format("batch 256 at %.0f events/s, batch 1 at %.0f", large, one), large > one);
+    }
+
+    @Test
+    public void urgentEventIsCommittedWithoutTheFlushDelay() throws Exception {
+        EventJournal journal = new EventJournal(dbHelper, 16, TimeUnit.MINUTES.toMillis(1));
+        journal.record("GEOFENCE_ENTER", "zone-1", "queued first");
+        journal.recordUrgent("SOS", null, "Queued for 2 contact(s)");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (eventRows() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(2, eventRows());
+        assertEquals(0, journal.getPendingCount());
+    }
+
+    private double eventsPerSecond(int batchSize) {
+        long before = eventRows();
+        EventJournal journal = new EventJournal(dbHelper, batchSize, TimeUnit.MINUTES.toMillis(1));
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) journal.record("GEOFENCE_DWELL", "zone-" + i, "bench");
+        assertTrue(journal.flushAndWait(60_000));
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(EVENTS, eventRows() - before);
+        return EVENTS * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private long eventRows() {
+        return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DatabaseHelper.TABLE_EVENTS);
+    }
+}
@@ -0,0 +1,178 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Three years of geofence traffic in a database file, so the vacuum has pages to give back
+@RunWith(RobolectricTestRunner.class)
+public class EventRetentionTest {
+
+    private static final String TAG = "EventRetentionTest";
+    private static final String DB_NAME = "event-retention-test.db";
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long NOW = TimeUnit.DAYS.toMillis(20000) + TimeUnit.HOURS.toMillis(12);
+    private static final int DAYS = 3 * 365;
+    private static final String[] ZONES = {"UNSAFE_1", "UNSAFE_2", "CAUTION_7"};
+
+    private Application app;
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+    private EventRetention.Policy policy;
+
+    // zone|type -> rows that fall outside the window
+    private final Map<String, Long> expiring = new HashMap<>();
+    private long expiringRows;
+    private long recentGeofenceRows;
+    private long sosRows;
+
+    @Before
+    public void setUp() {
+        app = RuntimeEnvironment.getApplication();
+        app.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(app, DB_NAME);
+        db = dbHelper.getWritableDatabase();
+        policy = new EventRetention.Policy();
+        seed();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        app.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void oldGeofenceRowsBecomeRollupsAndTheWindowIsKept() {
+        long rowsBefore = eventRows();
+        long bytesBefore = fileBytes();
+
+        EventRetention.Report report = EventRetention.run(dbHelper, policy, NOW);
+
+        long rowsAfter = eventRows();
+        long bytesAfter = fileBytes();
+        long rollups = DatabaseUtils.queryNumEntries(db, EventRetention.TABLE_ROLLUPS);
+        Log.i(TAG, String.format("rows %d -> %d, %d rollup row(s) from %d group(s), file %d -> %d bytes (%s)",
+                rowsBefore, rowsAfter, rollups, report.rolledUpGroups, bytesBefore, bytesAfter, report));
+
+        assertEquals(expiringRows, report.deletedRows);
+        assertEquals(rowsBefore - expiringRows, rowsAfter);
+
+        // Every expired row is counted exactly once, under its own zone and type
+        assertEquals(expiringRows, DatabaseUtils.longForQuery(db,
+                "SELECT SUM(" + EventRetention.COL_ROLLUP_COUNT + ") FROM " + EventRetention.TABLE_ROLLUPS, null));
+        Cursor totals = db.rawQuery("SELECT " + EventRetention.COL_ROLLUP_ZONE + ", " +
+                EventRetention.COL_ROLLUP_TYPE + ", SUM(" + EventRetention.COL_ROLLUP_COUNT + ") FROM " +
+                EventRetention.TABLE_ROLLUPS + " GROUP BY 1, 2", null);
+        try {
+            assertEquals(expiring.size(), totals.getCount());
+            while (totals.moveToNext()) {
+                String key = totals.getString(0) + "|" + totals.getString(1);
+                assertEquals(key, expiring.get(key), Long.valueOf(totals.getLong(2)));
+            }
+        } finally {
+            totals.close();
+        }
+        // One row per zone, type and day, and the seed has at most one of each a day
+        assertEquals(expiringRows, rollups);
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT MAX(" + EventRetention.COL_ROLLUP_COUNT + ") FROM " +
+                EventRetention.TABLE_ROLLUPS, null));
+
+        // Inside the window nothing is touched, and SOS rows are never touched
+        assertEquals(recentGeofenceRows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_EVENTS,
+                DatabaseHelper.COL_EVENT_TYPE + " LIKE 'GEOFENCE_%'", null));
+        assertEquals(sosRows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_EVENTS,
+                DatabaseHelper.COL_EVENT_TYPE + " = 'SOS'", null));
+
+        assertTrue("reclaimed " + report.bytesReclaimed + " bytes", report.bytesReclaimed > 0);
+        assertTrue("file " + bytesBefore + " -> " + bytesAfter + " bytes", bytesAfter < bytesBefore);
+    }
+
+    @Test
+    public void secondRunFindsNothingToDo() {
+        EventRetention.run(dbHelper, policy, NOW);
+        long rollups = DatabaseUtils.queryNumEntries(db, EventRetention.TABLE_ROLLUPS);
+
+        EventRetention.Report again = EventRetention.run(dbHelper, policy, NOW);
+        assertEquals(0, again.deletedRows);
+        assertEquals(0, again.rolledUpGroups);
+        assertEquals(rollups, DatabaseUtils.queryNumEntries(db, EventRetention.TABLE_ROLLUPS));
+    }
+
+    // Each zone is entered and left every day, with a dwell every third day; an SOS a month
+    private void seed() {
+        long cutoff = NOW - policy.rawGeofenceMaxAgeMs;
+        long firstDay = NOW / DAY_MS - DAYS;
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_EVENTS + " (" +
+                DatabaseHelper.COL_EVENT_TYPE + ", " + DatabaseHelper.COL_EVENT_TIME + ", " +
+                DatabaseHelper.COL_EVENT_LOCATION + ", " + DatabaseHelper.COL_EVENT_NOTES + ") VALUES (?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (long day = firstDay; day <= NOW / DAY_MS; day++) {
+                for (int z = 0; z < ZONES.length; z++) {
+                    long base = day * DAY_MS + TimeUnit.HOURS.toMillis(8) + TimeUnit.MINUTES.toMillis(z);
+                    insert(insert, "GEOFENCE_ENTER", ZONES[z], base, cutoff);
+                    if (day % 3 == 0) insert(insert, "GEOFENCE_DWELL", ZONES[z], base + TimeUnit.MINUTES.toMillis(30), cutoff);
+                    insert(insert, "GEOFENCE_EXIT", ZONES[z], base + TimeUnit.HOURS.toMillis(1), cutoff);
+                }
+                if (day % 30 == 0) insert(insert, "SOS", "12.97160, 77.59460", day * DAY_MS, cutoff);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    private void insert(SQLiteStatement insert, String type, String location, long time, long cutoff) {
+        if (time > NOW) return;
+        insert.bindString(1, type);
+        insert.bindLong(2, time);
+        insert.bindString(3, location);
+        insert.bindString(4, "Seeded " + type.toLowerCase(Locale.US) + " event for retention; " + location);
+        insert.executeInsert();
+
+        if (type.equals("SOS")) {
+            sosRows++;
+        } else if (time < cutoff) {
+            expiring.merge(location + "|" + type, 1L, Long::sum);
+            expiringRows++;
+        } else {
+            recentGeofenceRows++;
+        }
+    }
+
+    private long eventRows() {
+        return DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_EVENTS);
+    }
+
+    // WAL mode: the main file only changes size once the log is checkpointed into it
+    private long fileBytes() {
+        Cursor checkpoint = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        try {
+            checkpoint.moveToFirst();
+        } finally {
+            checkpoint.close();
+        }
+        return new File(db.getPath()).length();
+    }
+}
@@ -0,0 +1,136 @@
+package com.emergency.alert;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+
+import com.google.android.gms.location.Geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+// Each broadcast gets a fresh filter restored from SharedPreferences, as it would in a new process
+@RunWith(RobolectricTestRunner.class)
+public class GeofenceBroadcastReceiverTest {
+
+    private static final List<String> ZONE = Collections.singletonList("UNSAFE_1");
+    private static final int BURST = 50;
+
+    private final List<String> rows = new ArrayList<>();
+    private final GeofenceBroadcastReceiver.Reporter reporter =
+            (zone, transition) -> rows.add(transition + " " + zone.id + " " + zone.type);
+    private SharedPreferences prefs;
+    private ZoneRegistry registry;
+
+    @Before
+    public void setUp() {
+        prefs = RuntimeEnvironment.getApplication()
+                .getSharedPreferences("geofence_transitions_test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+
+        ZoneIndex.Builder zones = new ZoneIndex.Builder()
+                .addCircle("UNSAFE_1", ZoneIndex.Type.UNSAFE, 3, 12.97, 77.59, 200)
+                .addCircle("ACCIDENT_7", ZoneIndex.Type.ACCIDENT, 2, 12.98, 77.60, 200);
+        for (int i = 0; i < BURST; i++) {
+            zones.addCircle("BURST_" + i, ZoneIndex.Type.DISASTER, 4, 13 + i * 0.01, 77.5, 300);
+        }
+        registry = new ZoneRegistry(zones.build());
+    }
+
+    @Test
+    public void enterExitEnterFlapWritesOneRow() {
+        long now = TimeUnit.DAYS.toMillis(20000);
+        broadcast(Geofence.GEOFENCE_TRANSITION_ENTER, ZONE, now);
+        broadcast(Geofence.GEOFENCE_TRANSITION_EXIT, ZONE, now + TimeUnit.SECONDS.toMillis(15));
+        broadcast(Geofence.GEOFENCE_TRANSITION_ENTER, ZONE, now + TimeUnit.SECONDS.toMillis(30));
+
+        assertEquals(Collections.singletonList("ENTER UNSAFE_1 UNSAFE"), rows);
+    }
+
+    @Test
+    public void realExitAfterCooldownIsWritten() {
+        long now = TimeUnit.DAYS.toMillis(20000);
+        broadcast(Geofence.GEOFENCE_TRANSITION_ENTER, ZONE, now);
+        broadcast(Geofence.GEOFENCE_TRANSITION_EXIT, ZONE, now + ZoneMonitor.COOLDOWN_MS);
+
+        assertEquals(Arrays.asList("ENTER UNSAFE_1 UNSAFE", "EXIT UNSAFE_1 UNSAFE"), rows);
+    }
+
+    @Test
+    public void zonesInOneBroadcastAreFilteredIndependently() {
+        long now = TimeUnit.DAYS.toMillis(20000);
+        broadcast(Geofence.GEOFENCE_TRANSITION_ENTER, ZONE, now);
+        int reported = broadcast(Geofence.GEOFENCE_TRANSITION_ENTER,
+                Arrays.asList("UNSAFE_1", "ACCIDENT_7"), now + 1000);
+
+        assertEquals(1, reported);
+        assertEquals(Arrays.asList("ENTER UNSAFE_1 UNSAFE", "ENTER ACCIDENT_7 ACCIDENT"), rows);
+    }
+
+    @Test
+    public void zonesResolveThroughTheRegistry() {
+        assertEquals(2 + BURST, registry.size());
+        ZoneRegistry.Zone zone = registry.resolve("ACCIDENT_7");
+        assertEquals(ZoneIndex.Type.ACCIDENT, zone.type);
+        assertEquals(2, zone.severity);
+        assertEquals(ZoneIndex.Type.ACCIDENT.message, zone.message);
+
+        // No guessing from the id: a zone the dataset does not have is generic
+        ZoneRegistry.Zone unknown = registry.resolve("UNSAFE_99");
+        assertEquals(ZoneIndex.Type.GENERIC, unknown.type);
+        assertEquals(0, unknown.severity);
+    }
+
+    @Test
+    public void fiftyGeofenceBurstIsCommittedInsideTheBroadcastWindow() {
+        Application app = RuntimeEnvironment.getApplication();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        DatabaseHelper dbHelper = new DatabaseHelper(app, null);
+        EventJournal journal = new EventJournal(dbHelper, 16, 2000);
+        List<Integer> posted = Collections.synchronizedList(new ArrayList<>());
+        AlertNotifier notifier = new AlertNotifier(app, (id, notification) -> posted.add(id));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) ids.add("BURST_" + i);
+
+        long start = System.nanoTime();
+        boolean done = GeofenceBroadcastReceiver.handleTransitions(prefs, registry, journal, notifier,
+                Geofence.GEOFENCE_TRANSITION_ENTER, ids,
+                SystemClock.elapsedRealtime() + GeofenceBroadcastReceiver.RECEIVE_BUDGET_MS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(done);
+        assertTrue("burst took " + elapsedMs + " ms", elapsedMs < GeofenceBroadcastReceiver.RECEIVE_BUDGET_MS);
+        assertEquals(BURST, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), "emergency_events",
+                "event_type = 'GEOFENCE_ENTER' AND notes = 'User entered zone (severity 4)'", null));
+        // All fifty fold into one notification
+        assertEquals(1, posted.size());
+        dbHelper.close();
+    }
+
+    @Test
+    public void corruptSavedStateIsIgnored() {
+        prefs.edit().putString("UNSAFE_1", "1:not-a-time").commit();
+        broadcast(Geofence.GEOFENCE_TRANSITION_ENTER, ZONE, 1000);
+        assertEquals(1, rows.size());
+    }
+
+    private int broadcast(int transition, List<String> ids, long now) {
+        return GeofenceBroadcastReceiver.filterTransitions(prefs, registry, transition, ids, now, reporter);
+    }
+}
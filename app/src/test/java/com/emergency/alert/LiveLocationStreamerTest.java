@@ -0,0 +1,79 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LiveLocationStreamerTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void neverMoreThanOncePerMinute() {
+        assertFalse(LiveLocationStreamer.shouldSend(MINUTE - 1, 10, 5_000));
+        assertTrue(LiveLocationStreamer.shouldSend(MINUTE, 10, 5_000));
+    }
+
+    @Test
+    public void sendsOnDistanceOrAge() {
+        assertFalse(LiveLocationStreamer.shouldSend(2 * MINUTE, 10, 149));
+        assertTrue(LiveLocationStreamer.shouldSend(2 * MINUTE, 10, 150));
+        // Standing still still reports every ten minutes
+        assertFalse(LiveLocationStreamer.shouldSend(10 * MINUTE - 1, 10, 0));
+        assertTrue(LiveLocationStreamer.shouldSend(10 * MINUTE, 10, 0));
+    }
+
+    @Test
+    public void jitterInsideAccuracyCirclesIsNotMovement() {
+        // Two 120 m fixes can be 240 m apart without the user moving
+        assertFalse(LiveLocationStreamer.shouldSend(3 * MINUTE, 240, 200));
+        assertTrue(LiveLocationStreamer.shouldSend(3 * MINUTE, 240, 240));
+    }
+
+    @Test
+    public void firstUpdateHasNoMove() {
+        String update = LiveLocationStreamer.formatUpdate(1, at(14, 5), 12.9716, 77.5946, 8.4f, -1, 0, 0);
+        assertEquals("LIVE #1 14:05\nhttps://maps.google.com/?q=12.97160,77.59460 +/-8m", update);
+    }
+
+    @Test
+    public void laterUpdatesCarryDistanceBearingAndSpeed() {
+        String update = LiveLocationStreamer.formatUpdate(3, at(9, 30), 12.97160, 77.59460, 12f,
+                230f, 44f, 69_000);
+        assertEquals("LIVE #3 09:30 moved 230m NE 12km/h\nhttps://maps.google.com/?q=12.97160,77.59460 +/-12m",
+                update);
+    }
+
+    @Test
+    public void compassWrapsAndKilometresKickIn() {
+        assertTrue(LiveLocationStreamer.formatUpdate(2, at(0, 0), 0, 0, -1, 1500f, -10f, 0)
+                .startsWith("LIVE #2 00:00 moved 1.5km N\n"));
+        assertTrue(LiveLocationStreamer.formatUpdate(2, at(0, 0), 0, 0, -1, 500f, 190f, 0)
+                .startsWith("LIVE #2 00:00 moved 500m S\n"));
+        assertTrue(LiveLocationStreamer.formatUpdate(2, at(0, 0), 0, 0, -1, 500f, 290f, 0)
+                .startsWith("LIVE #2 00:00 moved 500m W\n"));
+        // Under a metre there is no meaningful direction
+        assertTrue(LiveLocationStreamer.formatUpdate(2, at(0, 0), 0, 0, -1, 0.4f, 90f, 60_000)
+                .startsWith("LIVE #2 00:00 moved 0m 0km/h\n"));
+    }
+
+    @Test
+    public void worstCaseStillFitsOneGsmSegment() {
+        String update = LiveLocationStreamer.formatUpdate(99999, at(23, 59), -89.99999, -179.99999, 9999f,
+                99999f, 315f, 1_000);
+        assertTrue(update.length() + " chars", update.length() <= LiveLocationStreamer.MAX_UPDATE_CHARS);
+        for (char c : update.toCharArray()) {
+            assertTrue("non-GSM char " + (int) c, c == '\n' || (c >= ' ' && c <= 'z' && c != '`'));
+        }
+    }
+
+    private static long at(int hour, int minute) {
+        Calendar time = Calendar.getInstance();
+        time.set(2026, Calendar.OCTOBER, 17, hour, minute, 0);
+        return time.getTimeInMillis();
+    }
+}
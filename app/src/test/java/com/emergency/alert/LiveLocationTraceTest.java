@@ -0,0 +1,186 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.database.DatabaseUtils;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+// Replays a walk with stops through the streamer and the real outbox, on the trace's own clock
+@RunWith(RobolectricTestRunner.class)
+public class LiveLocationTraceTest {
+
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+    private static final long FIX_INTERVAL_MS = 5_000;
+    private static final double METERS_PER_DEGREE = 111_320;
+    // Every this many fixes the provider reports a wild network fix
+    private static final int NOISY_EVERY = 37;
+    private static final float NOISY_ACCURACY = 300f;
+
+    // minutes, speed in m/s (0 is standing still), bearing in degrees
+    private static final double[][] TRACE = {
+            {12, 1.4, 45},
+            {25, 0, 0},
+            {8, 1.5, 120},
+            {15, 0, 0},
+            {10, 1.3, 270},
+    };
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    private DatabaseHelper dbHelper;
+    private MessagingEngine engine;
+    private LiveLocationStreamer streamer;
+
+    private final SmsTransport radio = new SmsTransport() {
+        @Override
+        public ArrayList<String> divide(String message) {
+            return new ArrayList<>(Collections.singletonList(message));
+        }
+
+        @Override
+        public void send(long outboxId, int attempt, String destination, ArrayList<String> parts,
+                         Receipts receipts) {
+            sentAt.add(clock.get());
+            messages.add(parts.get(0));
+            receipts.onSent(outboxId, attempt, true, null);
+            receipts.onDelivered(outboxId, attempt, true, null);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Application app = RuntimeEnvironment.getApplication();
+        dbHelper = new DatabaseHelper(app, null);
+        engine = new MessagingEngine(app, dbHelper::getWritableDatabase, radio, clock::get);
+        streamer = new LiveLocationStreamer(app, engine);
+
+        DatabaseHelper.EmergencyContact contact = new DatabaseHelper.EmergencyContact();
+        contact.name = "Asha";
+        contact.phone = "+919876543210";
+        streamer.start(Collections.singletonList(contact));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        streamer.stop();
+        idle();
+        dbHelper.close();
+    }
+
+    @Test
+    public void updatesFollowDistanceWalkedAndTimeStood() throws Exception {
+        Random jitter = new Random(7);
+        double north = 0;
+        double east = 0;
+        double walked = 0;
+        long stoodMs = 0;
+        int expectedLow = 0;
+        int fixes = 0;
+
+        for (double[] segment : TRACE) {
+            long segmentMs = TimeUnit.MINUTES.toMillis((long) segment[0]);
+            double speed = segment[1];
+            double bearing = Math.toRadians(segment[2]);
+            float noise = speed > 0 ? 3f : 5f;
+            for (long t = 0; t < segmentMs; t += FIX_INTERVAL_MS) {
+                double step = speed * FIX_INTERVAL_MS / 1000.0;
+                north += step * Math.cos(bearing);
+                east += step * Math.sin(bearing);
+                clock.addAndGet(FIX_INTERVAL_MS);
+
+                Location fix;
+                if (++fixes % NOISY_EVERY == 0) {
+                    fix = fix(north + 400, east - 400, NOISY_ACCURACY, clock.get());
+                } else {
+                    fix = fix(north + (jitter.nextDouble() * 2 - 1) * noise,
+                            east + (jitter.nextDouble() * 2 - 1) * noise, 8f + noise, clock.get());
+                }
+                streamer.onLocation(fix);
+                engine.resume();
+                idle();
+            }
+
+            // The slowest a send can come while walking: a full threshold plus jitter and one step
+            double length = speed * segmentMs / 1000.0;
+            if (speed > 0) {
+                walked += length;
+                expectedLow += (int) (length / (LiveLocationStreamer.MIN_DISTANCE_METERS + 2 * noise
+                        + speed * FIX_INTERVAL_MS / 1000.0));
+            } else {
+                stoodMs += segmentMs;
+                expectedLow += (int) (segmentMs / LiveLocationStreamer.MAX_INTERVAL_MS);
+            }
+        }
+
+        long durationMs = clock.get() - START;
+        int expectedHigh = 1 + (int) (walked / LiveLocationStreamer.MIN_DISTANCE_METERS)
+                + (int) (durationMs / LiveLocationStreamer.MAX_INTERVAL_MS);
+        // Each segment boundary can cost at most one update against the per-segment estimate
+        expectedLow -= TRACE.length;
+        int count = sentAt.size();
+        assertTrue(count + " updates for " + Math.round(walked) + " m walked and " +
+                        TimeUnit.MILLISECONDS.toMinutes(stoodMs) + " min stood, expected " +
+                        expectedLow + ".." + expectedHigh,
+                count >= expectedLow && count <= expectedHigh);
+
+        // Never faster than once a minute, never silent for longer than the interval
+        for (int i = 1; i < count; i++) {
+            long gap = sentAt.get(i) - sentAt.get(i - 1);
+            assertTrue("gap " + gap + " ms before update " + i, gap >= LiveLocationStreamer.MIN_INTERVAL_MS);
+            assertTrue("gap " + gap + " ms before update " + i,
+                    gap <= LiveLocationStreamer.MAX_INTERVAL_MS + FIX_INTERVAL_MS);
+        }
+        assertTrue(START + durationMs - sentAt.get(count - 1)
+                <= LiveLocationStreamer.MAX_INTERVAL_MS + FIX_INTERVAL_MS);
+
+        for (int i = 0; i < count; i++) {
+            String message = messages.get(i);
+            assertTrue(message, message.startsWith("LIVE #" + (i + 1) + " "));
+            assertTrue(message, message.length() <= LiveLocationStreamer.MAX_UPDATE_CHARS);
+            assertTrue("noisy fix sent: " + message, !message.endsWith("+/-" + Math.round(NOISY_ACCURACY) + "m"));
+        }
+        assertEquals(count, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), MessagingEngine.TABLE_OUTBOX,
+                "state = ?", new String[]{String.valueOf(MessagingEngine.STATE_DELIVERED)}));
+    }
+
+    private static Location fix(double north, double east, float accuracy, long time) {
+        double lat = 12.9716;
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setLatitude(lat + north / METERS_PER_DEGREE);
+        fix.setLongitude(77.5946 + east / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat))));
+        fix.setAccuracy(accuracy);
+        fix.setTime(time);
+        return fix;
+    }
+
+    // Receipts are queued behind the first marker; the listener then runs on the main looper
+    private void idle() throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            CountDownLatch done = new CountDownLatch(1);
+            engine.runAfterPendingWork(done::countDown);
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
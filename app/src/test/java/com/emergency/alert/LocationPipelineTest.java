@@ -0,0 +1,111 @@
+package com.emergency.alert;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Handler;
+
+import com.google.android.gms.location.LocationResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Real threads: fixes go in at 100 Hz while two consumers take 20 ms each per fix
+@RunWith(RobolectricTestRunner.class)
+public class LocationPipelineTest {
+
+    private static final int FIXES = 200;
+    private static final long SLOW_CONSUMER_MS = 20;
+    private static final int SLOW_CAPACITY = 16;
+
+    private LocationPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pipeline = new LocationPipeline();
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.quit();
+    }
+
+    @Test
+    public void slowConsumersNeitherDelayIntakeNorQueueWithoutBound() throws Exception {
+        long[] postedAt = new long[FIXES + 1];
+        AtomicLong worstIntakeNanos = new AtomicLong();
+        CountDownLatch intake = new CountDownLatch(FIXES);
+        pipeline.subscribe("intake", FIXES, fix -> {
+            int i = (int) fix.getTime();
+            worstIntakeNanos.accumulateAndGet(System.nanoTime() - postedAt[i], Math::max);
+            intake.countDown();
+        });
+
+        AtomicInteger bounded = new AtomicInteger();
+        AtomicInteger latest = new AtomicInteger();
+        AtomicLong lastBoundedFix = new AtomicLong();
+        pipeline.subscribe("bounded", SLOW_CAPACITY, pipeline.newWorker("bounded"), fix -> {
+            sleep(SLOW_CONSUMER_MS);
+            lastBoundedFix.set(fix.getTime());
+            bounded.incrementAndGet();
+        });
+        pipeline.subscribe("latest", 1, pipeline.newWorker("latest"), fix -> {
+            sleep(SLOW_CONSUMER_MS);
+            latest.incrementAndGet();
+        });
+
+        Handler provider = new Handler(pipeline.looper());
+        for (int i = 1; i <= FIXES; i++) {
+            Location fix = fix(i);
+            postedAt[i] = System.nanoTime();
+            provider.post(() -> pipeline.callback().onLocationResult(
+                    LocationResult.create(Collections.singletonList(fix))));
+            Thread.sleep(10);
+        }
+
+        assertTrue(intake.await(5, TimeUnit.SECONDS));
+        long worstMs = TimeUnit.NANOSECONDS.toMillis(worstIntakeNanos.get());
+        // Run inline, the two consumers would add 40 ms a fix and intake would end seconds behind;
+        // the bound only leaves room for GC and scheduling noise
+        assertTrue("intake took up to " + worstMs + " ms", worstMs < 250);
+
+        // Whatever is left is at most one mailbox plus the fix in hand
+        int boundedAtEnd = bounded.get();
+        int latestAtEnd = latest.get();
+        Thread.sleep((SLOW_CAPACITY + 4) * SLOW_CONSUMER_MS * 2);
+        assertTrue(bounded.get() - boundedAtEnd <= SLOW_CAPACITY + 1);
+        assertTrue(latest.get() - latestAtEnd <= 2);
+        assertTrue("bounded saw " + bounded.get(), bounded.get() < FIXES);
+        assertTrue("latest saw " + latest.get(), latest.get() < FIXES);
+
+        // Drops are oldest first, so the newest fix always gets through
+        assertEquals(FIXES, lastBoundedFix.get());
+    }
+
+    private static Location fix(int i) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setTime(i);
+        fix.setLatitude(12.97 + i * 1e-6);
+        fix.setLongitude(77.59);
+        return fix;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
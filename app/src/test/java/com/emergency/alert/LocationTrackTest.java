@@ -0,0 +1,134 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LocationTrackTest {
+
+    private static final double LAT = 12.97;
+    private static final double LNG = 77.59;
+    // Roughly one metre north at this latitude
+    private static final double METER = 1 / 111_195.0;
+
+    @Test
+    public void ringKeepsNewestPointsWhenFull() {
+        LocationTrack track = new LocationTrack(null);
+        int extra = 5;
+        for (int i = 0; i < LocationTrack.CAPACITY + extra; i++) {
+            track.append(i, LAT, LNG, 5f);
+        }
+
+        assertEquals(LocationTrack.CAPACITY + extra, track.appendedCount());
+        assertEquals(extra, track.droppedCount());
+        assertEquals(LocationTrack.CAPACITY, track.pendingCount());
+        // Oldest survivors first, and the order holds across the wrap
+        for (int i = 0; i < LocationTrack.CAPACITY; i++) {
+            assertEquals(extra + i, track.pendingTime(i));
+        }
+    }
+
+    @Test
+    public void ringWrapsRepeatedly() {
+        LocationTrack track = new LocationTrack(null);
+        int total = 3 * LocationTrack.CAPACITY + 17;
+        for (int i = 0; i < total; i++) track.append(i, LAT, LNG, 5f);
+
+        assertEquals(total - LocationTrack.CAPACITY, track.droppedCount());
+        assertEquals(total - LocationTrack.CAPACITY, track.pendingTime(0));
+        assertEquals(total - 1, track.pendingTime(LocationTrack.CAPACITY - 1));
+    }
+
+    @Test
+    public void shortRunsAreKeptWhole() {
+        Path path = new Path(3);
+        assertArrayEquals(new int[0], path.simplify(0, 0));
+        assertArrayEquals(new int[]{0}, path.simplify(0, 1));
+        assertArrayEquals(new int[]{1, 2}, path.simplify(1, 3));
+    }
+
+    @Test
+    public void straightLineKeepsOnlyEndpoints() {
+        Path path = new Path(50);
+        for (int i = 0; i < 50; i++) path.set(i, i * 10_000L, i * 20 * METER, 0);
+        assertArrayEquals(new int[]{0, 49}, path.simplify(0, 50));
+    }
+
+    @Test
+    public void jitterUnderToleranceIsDropped() {
+        Path path = new Path(40);
+        for (int i = 0; i < 40; i++) {
+            double sideways = (i % 2 == 0 ? 4 : -4) * METER;
+            path.set(i, i * 10_000L, i * 20 * METER, sideways);
+        }
+        assertArrayEquals(new int[]{0, 39}, path.simplify(0, 40));
+    }
+
+    @Test
+    public void cornersAreKept() {
+        // North 200 m, then east 200 m, with points every 20 m
+        Path path = new Path(21);
+        for (int i = 0; i <= 10; i++) path.set(i, i * 10_000L, i * 20 * METER, 0);
+        for (int i = 11; i <= 20; i++) path.set(i, i * 10_000L, 200 * METER, (i - 10) * 20 * METER);
+        assertArrayEquals(new int[]{0, 10, 20}, path.simplify(0, 21));
+    }
+
+    @Test
+    public void spikeAboveToleranceIsKept() {
+        Path path = new Path(11);
+        for (int i = 0; i <= 10; i++) path.set(i, i * 10_000L, i * 20 * METER, 0);
+        path.set(5, 50_000L, 100 * METER, 30 * METER);
+        // The neighbours sit far off the chords to the spike, so they stay too
+        assertArrayEquals(new int[]{0, 4, 5, 6, 10}, path.simplify(0, 11));
+    }
+
+    @Test
+    public void gapSplitsTheTrail() {
+        // One straight line, but the fixes after index 5 come ten minutes later
+        Path path = new Path(12);
+        for (int i = 0; i < 12; i++) {
+            long t = i * 10_000L + (i > 5 ? LocationTrack.GAP_MS * 2 : 0);
+            path.set(i, t, i * 20 * METER, 0);
+        }
+        assertArrayEquals(new int[]{0, 5, 6, 11}, path.simplify(0, 12));
+    }
+
+    @Test
+    public void offsetRangeReturnsAbsoluteIndexes() {
+        // Slot 0 is a carried point that is not part of this range
+        Path path = new Path(31);
+        path.set(0, 0, 500 * METER, 500 * METER);
+        for (int i = 1; i <= 30; i++) path.set(i, i * 10_000L, i * 20 * METER, 0);
+        path.set(15, 150_000L, 300 * METER, -40 * METER);
+        assertArrayEquals(new int[]{1, 14, 15, 16, 30}, path.simplify(1, 31));
+    }
+
+    private static final class Path {
+        final long[] time;
+        final double[] lat;
+        final double[] lng;
+
+        Path(int size) {
+            time = new long[size];
+            lat = new double[size];
+            lng = new double[size];
+        }
+
+        void set(int i, long t, double north, double east) {
+            time[i] = t;
+            lat[i] = LAT + north;
+            lng[i] = LNG + east / Math.cos(Math.toRadians(LAT));
+        }
+
+        int[] simplify(int from, int to) {
+            int[] out = new int[time.length];
+            int[] stack = new int[2 * time.length];
+            int count = LocationTrack.simplify(time, lat, lng, from, to,
+                    LocationTrack.TOLERANCE_METERS, LocationTrack.GAP_MS, out, stack);
+            return Arrays.copyOf(out, count);
+        }
+    }
+}
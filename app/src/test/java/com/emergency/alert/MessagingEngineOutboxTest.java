@@ -0,0 +1,229 @@
+package com.emergency.alert;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Failure injection against a scratch outbox: the radio below fails, stays silent or
+// delivers as each test tells it to, on a simulated clock
+@RunWith(RobolectricTestRunner.class)
+public class MessagingEngineOutboxTest {
+
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+
+    private enum Outcome { FAIL, SENT, DELIVERED, SILENT }
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private SQLiteDatabase db;
+    private final List<MessagingEngine> engines = new ArrayList<>();
+
+    private static final class Radio implements SmsTransport {
+        volatile Outcome outcome = Outcome.DELIVERED;
+        final List<Integer> attempts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public ArrayList<String> divide(String message) {
+            ArrayList<String> parts = new ArrayList<>();
+            for (int i = 0; i < message.length(); i += 160) {
+                parts.add(message.substring(i, Math.min(message.length(), i + 160)));
+            }
+            return parts;
+        }
+
+        @Override
+        public void send(long outboxId, int attempt, String destination, ArrayList<String> parts,
+                         Receipts receipts) {
+            attempts.add(attempt);
+            switch (outcome) {
+                case FAIL:
+                    receipts.onSent(outboxId, attempt, false, "radio off");
+                    break;
+                case SENT:
+                    for (int i = 0; i < parts.size(); i++) receipts.onSent(outboxId, attempt, true, null);
+                    break;
+                case DELIVERED:
+                    for (int i = 0; i < parts.size(); i++) receipts.onSent(outboxId, attempt, true, null);
+                    for (int i = 0; i < parts.size(); i++) receipts.onDelivered(outboxId, attempt, true, null);
+                    break;
+                case SILENT:
+                    break; // the process dies before any receipt comes back
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        MessagingEngine.createOutboxTable(db);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (MessagingEngine engine : engines) idle(engine);
+        db.close();
+    }
+
+    @Test
+    public void transientFailureIsRetriedAfterBackoff() throws Exception {
+        Radio radio = new Radio();
+        radio.outcome = Outcome.FAIL;
+        MessagingEngine engine = engine(radio);
+
+        engine.share(contact(), "Checking in");
+        idle(engine);
+        assertRow(MessagingEngine.STATE_QUEUED, 1);
+        assertEquals(START + MessagingEngine.backoff(1), column("next_attempt_at"));
+        assertEquals("radio off", text("last_error"));
+
+        // Not a moment before the backoff is up
+        radio.outcome = Outcome.DELIVERED;
+        clock.addAndGet(MessagingEngine.backoff(1) - 1);
+        engine.resume();
+        idle(engine);
+        assertEquals(1, radio.attempts.size());
+
+        clock.incrementAndGet();
+        engine.resume();
+        idle(engine);
+        assertEquals(2, radio.attempts.size());
+        assertRow(MessagingEngine.STATE_DELIVERED, 2);
+    }
+
+    @Test
+    public void sixthFailedAttemptIsFinal() throws Exception {
+        Radio radio = new Radio();
+        radio.outcome = Outcome.FAIL;
+        MessagingEngine engine = engine(radio);
+
+        engine.share(contact(), "Checking in");
+        idle(engine);
+        for (int attempt = 1; attempt < MessagingEngine.MAX_ATTEMPTS; attempt++) {
+            assertRow(MessagingEngine.STATE_QUEUED, attempt);
+            clock.addAndGet(MessagingEngine.backoff(attempt));
+            engine.resume();
+            idle(engine);
+        }
+        assertRow(MessagingEngine.STATE_FAILED, MessagingEngine.MAX_ATTEMPTS);
+
+        clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+        engine.resume();
+        idle(engine);
+        assertEquals(MessagingEngine.MAX_ATTEMPTS, radio.attempts.size());
+    }
+
+    @Test
+    public void deliveryReceiptForEveryPartMarksDelivered() throws Exception {
+        Radio radio = new Radio();
+        radio.outcome = Outcome.SENT;
+        MessagingEngine engine = engine(radio);
+
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 200) message.append("Long location share ");
+        engine.share(contact(), message.toString());
+        idle(engine);
+        assertRow(MessagingEngine.STATE_SENT, 1);
+
+        // As SmsStatusReceiver would report them, one per part
+        long id = column("id");
+        engine.onDelivered(id, 1, true, null);
+        idle(engine);
+        assertRow(MessagingEngine.STATE_SENT, 1);
+        engine.onDelivered(id, 1, true, null);
+        idle(engine);
+        assertRow(MessagingEngine.STATE_DELIVERED, 1);
+    }
+
+    @Test
+    public void restartResumesRowsLeftSending() throws Exception {
+        Radio before = new Radio();
+        before.outcome = Outcome.SILENT;
+        MessagingEngine dying = engine(before);
+        dying.share(contact(), "Checking in");
+        idle(dying);
+        assertRow(MessagingEngine.STATE_SENDING, 1);
+        long id = column("id");
+
+        // A new process on the same outbox, after the send timeout has run out
+        Radio after = new Radio();
+        MessagingEngine restarted = engine(after);
+        clock.addAndGet(MessagingEngine.SEND_TIMEOUT_MS + 1);
+        restarted.resume();
+        idle(restarted);
+        assertRow(MessagingEngine.STATE_QUEUED, 1);
+        assertEquals("no send receipt", text("last_error"));
+
+        clock.addAndGet(MessagingEngine.backoff(1));
+        restarted.resume();
+        idle(restarted);
+        assertEquals(Collections.singletonList(2), after.attempts);
+        assertRow(MessagingEngine.STATE_DELIVERED, 2);
+
+        // A receipt for the attempt the old process made changes nothing
+        restarted.onSent(id, 1, false, "late");
+        idle(restarted);
+        assertRow(MessagingEngine.STATE_DELIVERED, 2);
+    }
+
+    private MessagingEngine engine(Radio radio) {
+        MessagingEngine engine = new MessagingEngine(RuntimeEnvironment.getApplication(), () -> db, radio, clock::get);
+        engines.add(engine);
+        return engine;
+    }
+
+    // Twice, because receipts from a pump are queued behind the first marker
+    private static void idle(MessagingEngine engine) throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            CountDownLatch done = new CountDownLatch(1);
+            engine.runAfterPendingWork(done::countDown);
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private void assertRow(int state, int attempts) {
+        assertEquals("state", state, column("state"));
+        assertEquals("attempts", attempts, column("attempts"));
+    }
+
+    private long column(String name) {
+        Cursor cursor = db.rawQuery("SELECT " + name + " FROM " + MessagingEngine.TABLE_OUTBOX, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private String text(String name) {
+        Cursor cursor = db.rawQuery("SELECT " + name + " FROM " + MessagingEngine.TABLE_OUTBOX, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<DatabaseHelper.EmergencyContact> contact() {
+        DatabaseHelper.EmergencyContact contact = new DatabaseHelper.EmergencyContact();
+        contact.name = "Asha";
+        contact.phone = "+919876543210";
+        return Collections.singletonList(contact);
+    }
+}
@@ -0,0 +1,168 @@
+package com.emergency.alert;
+
+import android.database.DatabaseUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Drives the engine against a fake radio on a simulated clock and checks what actually
+// left the phone against the platform's 30 parts per 30 minutes
+@RunWith(RobolectricTestRunner.class)
+public class MessagingEngineRateLimitTest {
+
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(30);
+    private static final int PLATFORM_LIMIT = 30;
+    private static final long STEP = TimeUnit.SECONDS.toMillis(10);
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<long[]> sends = Collections.synchronizedList(new ArrayList<>()); // time, parts, priority
+    private DatabaseHelper dbHelper;
+    private MessagingEngine engine;
+
+    private final SmsTransport radio = new SmsTransport() {
+        @Override
+        public ArrayList<String> divide(String message) {
+            ArrayList<String> parts = new ArrayList<>();
+            for (int i = 0; i < message.length(); i += 160) {
+                parts.add(message.substring(i, Math.min(message.length(), i + 160)));
+            }
+            return parts;
+        }
+
+        @Override
+        public void send(long outboxId, int attempt, String destination, ArrayList<String> parts,
+                         Receipts receipts) {
+            int priority = parts.get(0).startsWith("SOS") ? MessagingEngine.PRIORITY_SOS : MessagingEngine.PRIORITY_ROUTINE;
+            sends.add(new long[]{clock.get(), parts.size(), priority});
+            for (int i = 0; i < parts.size(); i++) receipts.onSent(outboxId, attempt, true, null);
+            for (int i = 0; i < parts.size(); i++) receipts.onDelivered(outboxId, attempt, true, null);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication(), null);
+        engine = new MessagingEngine(RuntimeEnvironment.getApplication(), dbHelper::getWritableDatabase,
+                radio, clock::get);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idle();
+        dbHelper.close();
+    }
+
+    @Test
+    public void twoHundredMessagesStayUnderThePlatformLimit() throws Exception {
+        // A backlog of 150 location shares, then an SOS to two contacts every 20 minutes
+        for (int i = 0; i < 150; i++) engine.share(contacts(1), "Location share " + i);
+        idle();
+
+        List<Long> sosTimes = new ArrayList<>();
+        long end = START + TimeUnit.HOURS.toMillis(10);
+        long nextSos = START + TimeUnit.MINUTES.toMillis(5);
+        while (clock.get() < end) {
+            if (sosTimes.size() < 25 && clock.get() >= nextSos) {
+                engine.dispatch(contacts(2), sos(2), 0);
+                sosTimes.add(clock.get());
+                nextSos += TimeUnit.MINUTES.toMillis(20);
+            }
+            engine.resume();
+            idle();
+            clock.addAndGet(STEP);
+        }
+
+        assertEquals(200, outboxRows(MessagingEngine.STATE_DELIVERED));
+        assertEquals(200, sends.size());
+        assertWithinPlatformLimit();
+
+        // The reserve routine traffic leaves behind means no SOS waited for a refill
+        List<Long> sosSends = new ArrayList<>();
+        for (long[] send : sends) {
+            if (send[2] == MessagingEngine.PRIORITY_SOS) sosSends.add(send[0]);
+        }
+        assertEquals(50, sosSends.size());
+        for (int i = 0; i < sosTimes.size(); i++) {
+            assertEquals("SOS " + i, (long) sosTimes.get(i), (long) sosSends.get(2 * i));
+            assertEquals("SOS " + i, (long) sosTimes.get(i), (long) sosSends.get(2 * i + 1));
+        }
+    }
+
+    @Test
+    public void sosLargerThanTheBucketIsHeldQueued() throws Exception {
+        // Eight contacts, three parts each: 24 parts against a bucket of 10
+        engine.dispatch(contacts(8), sos(3), 0);
+        idle();
+
+        assertEquals(3, sends.size());
+        assertEquals(5, outboxRows(MessagingEngine.STATE_QUEUED));
+
+        long end = START + WINDOW;
+        while (clock.get() < end) {
+            clock.addAndGet(STEP);
+            engine.resume();
+            idle();
+        }
+
+        assertEquals(8, outboxRows(MessagingEngine.STATE_DELIVERED));
+        assertWithinPlatformLimit();
+    }
+
+    private void assertWithinPlatformLimit() {
+        List<long[]> log = new ArrayList<>(sends);
+        for (int i = 0; i < log.size(); i++) {
+            int parts = 0;
+            for (long[] send : log) {
+                if (send[0] > log.get(i)[0] - WINDOW && send[0] <= log.get(i)[0]) parts += send[1];
+            }
+            assertTrue(parts + " parts in the 30 minutes up to send " + i, parts <= PLATFORM_LIMIT);
+        }
+    }
+
+    // Twice, because receipts from a pump are queued behind the first marker
+    private void idle() throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            CountDownLatch done = new CountDownLatch(1);
+            engine.runAfterPendingWork(done::countDown);
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private long outboxRows(int state) {
+        return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), MessagingEngine.TABLE_OUTBOX,
+                "state = ?", new String[]{String.valueOf(state)});
+    }
+
+    private static List<DatabaseHelper.EmergencyContact> contacts(int count) {
+        List<DatabaseHelper.EmergencyContact> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DatabaseHelper.EmergencyContact contact = new DatabaseHelper.EmergencyContact();
+            contact.name = "Contact " + i;
+            contact.phone = "+9198765432" + (10 + i);
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    private static SosPayloadCache.Payload sos(int partCount) {
+        String[] parts = new String[partCount];
+        Arrays.fill(parts, "SOS part");
+        return new SosPayloadCache.Payload(String.join(" ", parts), new ArrayList<>(Arrays.asList(parts)), null, null);
+    }
+}
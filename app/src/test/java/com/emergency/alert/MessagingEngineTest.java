@@ -0,0 +1,41 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessagingEngineTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long CAP = TimeUnit.MINUTES.toMillis(5);
+
+    @Test
+    public void backoffDoublesFromFiveSeconds() {
+        assertEquals(5 * SECOND, MessagingEngine.backoff(1));
+        assertEquals(10 * SECOND, MessagingEngine.backoff(2));
+        assertEquals(20 * SECOND, MessagingEngine.backoff(3));
+        assertEquals(40 * SECOND, MessagingEngine.backoff(4));
+        assertEquals(80 * SECOND, MessagingEngine.backoff(5));
+        assertEquals(160 * SECOND, MessagingEngine.backoff(6));
+    }
+
+    @Test
+    public void backoffIsCappedAtFiveMinutes() {
+        assertEquals(CAP, MessagingEngine.backoff(7));
+        assertEquals(CAP, MessagingEngine.backoff(17));
+        // The shift is clamped, so huge attempt counts cannot overflow into a short delay
+        assertEquals(CAP, MessagingEngine.backoff(64));
+        assertEquals(CAP, MessagingEngine.backoff(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void backoffNeverShrinks() {
+        for (int attempt = 1; attempt < 40; attempt++) {
+            long delay = MessagingEngine.backoff(attempt);
+            long next = MessagingEngine.backoff(attempt + 1);
+            assertEquals("attempt " + attempt, Math.min(delay * 2, CAP), next);
+        }
+    }
+}
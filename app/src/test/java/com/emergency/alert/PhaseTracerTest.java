@@ -0,0 +1,56 @@
+package com.emergency.alert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The spans sit on the SOS tap path, so their cost is bounded here rather than shown on a screen.
+// Best of several batches, so a GC pause or a descheduled thread does not count against it.
+public class PhaseTracerTest {
+
+    private static final int PAIRS = 200_000;
+    private static final int BATCHES = 7;
+    // Off: a volatile read and an early return. On: two clock reads and one atomic increment.
+    private static final double DISABLED_BOUND_NANOS = 50;
+    private static final double ENABLED_BOUND_NANOS = 500;
+
+    private static final PhaseTracer.Phase PHASE = PhaseTracer.Phase.SHARE_ENQUEUE;
+
+    @After
+    public void tearDown() {
+        PhaseTracer.setEnabled(true);
+        PhaseTracer.reset();
+    }
+
+    @Test
+    public void disabledSpansCostAlmostNothingAndRecordNothing() {
+        PhaseTracer.setEnabled(false);
+        long before = PhaseTracer.count(PHASE);
+        double nanos = bestNanosPerPair();
+        assertTrue(String.format("%.1f ns per begin/end pair with tracing off", nanos), nanos < DISABLED_BOUND_NANOS);
+        assertEquals(before, PhaseTracer.count(PHASE));
+    }
+
+    @Test
+    public void enabledSpansStayCheapAndRecordEveryPair() {
+        PhaseTracer.setEnabled(true);
+        PhaseTracer.reset();
+        double nanos = bestNanosPerPair();
+        assertTrue(String.format("%.1f ns per begin/end pair with tracing on", nanos), nanos < ENABLED_BOUND_NANOS);
+        assertEquals((long) BATCHES * PAIRS, PhaseTracer.count(PHASE));
+    }
+
+    private static double bestNanosPerPair() {
+        double best = Double.MAX_VALUE;
+        for (int batch = 0; batch < BATCHES; batch++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < PAIRS; i++) {
+                PhaseTracer.end(PHASE, PhaseTracer.begin());
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / PAIRS);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,51 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PhoneNormalizerTest {
+
+    private final PhoneNormalizer india = new PhoneNormalizer("in");
+
+    @Test
+    public void nationalFormsCollapseToOneKey() {
+        assertEquals("+919876543210", india.normalize("+91 98765-43210"));
+        assertEquals("+919876543210", india.normalize("098765 43210"));
+        assertEquals("+919876543210", india.normalize("9876543210"));
+        assertEquals("+919876543210", india.normalize("919876543210"));
+        assertEquals("+919876543210", india.normalize("(98765) 43210"));
+    }
+
+    @Test
+    public void internationalPrefixesAreKept() {
+        assertEquals("+14155550100", india.normalize("+1 415 555 0100"));
+        assertEquals("+14155550100", india.normalize("0014155550100"));
+        // A '+' after the first digit is just punctuation
+        assertEquals("+9198765432", india.normalize("98+765432"));
+    }
+
+    @Test
+    public void shortCodesStayAsDialed() {
+        assertEquals("112", india.normalize("112"));
+        assertEquals("100", india.normalize(" 100 "));
+        assertEquals("911", new PhoneNormalizer("US").normalize("911"));
+    }
+
+    @Test
+    public void unknownRegionOnlyStripsPunctuation() {
+        PhoneNormalizer unknown = new PhoneNormalizer("XX");
+        assertEquals("9876543210", unknown.normalize("98765 43210"));
+        assertEquals("+447700900123", unknown.normalize("+44 7700 900123"));
+        assertEquals("9876543210", new PhoneNormalizer(null).normalize("98765-43210"));
+    }
+
+    @Test
+    public void noDigitsIsNull() {
+        assertNull(india.normalize(null));
+        assertNull(india.normalize(""));
+        assertNull(india.normalize("n/a"));
+        assertNull(india.normalize("+"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReverseGeocoderTest {
+
+    private static final double LAT = 12.97160;
+    private static final double LNG = 77.59460;
+
+    @Test
+    public void geohashMatchesReferenceValues() {
+        assertEquals("u4pruydqqvj", ReverseGeocoder.geohash(57.64911, 10.40744, 11));
+        assertEquals("u4pruyd", ReverseGeocoder.geohash(57.64911, 10.40744, ReverseGeocoder.GEOHASH_PRECISION));
+        assertEquals("ezs42", ReverseGeocoder.geohash(42.6, -5.6, 5));
+        assertEquals("s000000", ReverseGeocoder.geohash(0, 0, 7));
+        assertEquals("0000000", ReverseGeocoder.geohash(-90, -180, 7));
+        assertEquals("zzzzzzz", ReverseGeocoder.geohash(90, 180, 7));
+    }
+
+    @Test
+    public void nearbyPointsShareACell() {
+        // About 20 m apart inside one ~150 m cell, and a point well outside it
+        String cell = ReverseGeocoder.geohash(LAT, LNG, 7);
+        assertEquals(cell, ReverseGeocoder.geohash(LAT + 0.0001, LNG + 0.0001, 7));
+        assertNotEquals(cell, ReverseGeocoder.geohash(LAT + 0.01, LNG, 7));
+    }
+
+    @Test
+    public void concurrentLookupsForOneCellShareABackendCall() throws Exception {
+        FakeBackend backend = new FakeBackend("MG Road, Bengaluru");
+        ReverseGeocoder geocoder = new ReverseGeocoder(null, backend, Runnable::run);
+
+        int callers = 5;
+        List<String> answers = new CopyOnWriteArrayList<>();
+        CountDownLatch answered = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            geocoder.lookup(LAT + i * 0.00001, LNG, address -> {
+                answers.add(address);
+                answered.countDown();
+            });
+        }
+        assertTrue(backend.started.await(5, TimeUnit.SECONDS));
+        backend.release.countDown();
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, backend.calls.get());
+        assertEquals(1, geocoder.backendCalls());
+        assertEquals(callers - 1, geocoder.joinedLookups());
+        for (String answer : answers) assertEquals("MG Road, Bengaluru", answer);
+    }
+
+    @Test
+    public void resolvedCellIsServedFromMemory() throws Exception {
+        FakeBackend backend = new FakeBackend("MG Road, Bengaluru");
+        backend.release.countDown();
+        ReverseGeocoder geocoder = new ReverseGeocoder(null, backend, Runnable::run);
+
+        assertNull(geocoder.cached(LAT, LNG));
+        assertEquals("MG Road, Bengaluru", await(geocoder));
+        assertEquals("MG Road, Bengaluru", geocoder.cached(LAT, LNG));
+        assertEquals("MG Road, Bengaluru", await(geocoder));
+
+        assertEquals(1, backend.calls.get());
+        assertEquals(2, geocoder.memoryHits());
+    }
+
+    @Test
+    public void failedLookupReleasesTheCell() throws Exception {
+        FakeBackend backend = new FakeBackend(null);
+        backend.release.countDown();
+        backend.failures.set(1);
+        ReverseGeocoder geocoder = new ReverseGeocoder(null, backend, Runnable::run);
+
+        // Waiters hear null, and the next lookup tries the backend again
+        assertNull(await(geocoder));
+        assertNull(await(geocoder));
+        assertEquals(2, backend.calls.get());
+        assertNull(geocoder.cached(LAT, LNG));
+
+        backend.address = "Cubbon Park";
+        assertEquals("Cubbon Park", await(geocoder));
+        assertEquals(3, backend.calls.get());
+    }
+
+    private static String await(ReverseGeocoder geocoder) throws InterruptedException {
+        String[] result = new String[1];
+        CountDownLatch done = new CountDownLatch(1);
+        geocoder.lookup(LAT, LNG, address -> {
+            result[0] = address;
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    // Blocks until released so callers can pile up behind one call; can fail on demand
+    private static final class FakeBackend implements ReverseGeocoder.Backend {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        volatile String address;
+
+        FakeBackend(String address) {
+            this.address = address;
+        }
+
+        @Override
+        public String lookup(double latitude, double longitude) throws IOException {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failures.getAndDecrement() > 0) throw new IOException("network down");
+            return address;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Search-as-you-type over 5k tips: every keystroke of a few queries, through the FTS index
+// and through a LIKE scan of title and content with the same terms and limit
+@RunWith(RobolectricTestRunner.class)
+public class SafetyTipSearchBenchmarkTest {
+
+    private static final String TAG = "SafetyTipSearchBench";
+    private static final String DB_NAME = "tip-search-benchmark-test.db";
+    private static final int TIPS = 5000;
+    private static final int ROUNDS = 20;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private static final String[] CATEGORIES = {"Medical", "Fire", "Flood", "Earthquake", "Travel",
+            "Home", "Road", "Personal", "Weather", "Child"};
+    private static final String[] COMMON = {"fire", "smoke", "exit", "burn", "water", "bleeding", "pressure",
+            "breathing", "choking", "shelter", "call", "help", "first", "aid", "stay", "calm", "cover", "crawl"};
+    private static final String[] TYPED = {"fire exit", "bleeding pressure", "cpr steps", "shelter"};
+
+    private Application app;
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        app = RuntimeEnvironment.getApplication();
+        app.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(app, DB_NAME);
+        db = dbHelper.getWritableDatabase();
+        seed();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        app.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void everyKeystrokeFitsInAFrame() {
+        List<String> keystrokes = new ArrayList<>();
+        for (String query : TYPED) {
+            for (int i = 1; i <= query.length(); i++) keystrokes.add(query.substring(0, i));
+        }
+
+        // Warm both paths and check they agree on what matches
+        for (String text : keystrokes) {
+            List<DatabaseHelper.SafetyTip> fts = dbHelper.searchSafetyTips(text, null, Integer.MAX_VALUE);
+            assertEquals(text, likeScan(text, Integer.MAX_VALUE), fts.size());
+        }
+        assertFalse(dbHelper.searchSafetyTips("cpr ste", null, SafetyTipsActivity.SEARCH_LIMIT).isEmpty());
+
+        long[] fts = new long[ROUNDS * keystrokes.size()];
+        long[] like = new long[fts.length];
+        int n = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String text : keystrokes) {
+                long start = System.nanoTime();
+                dbHelper.searchSafetyTips(text, null, SafetyTipsActivity.SEARCH_LIMIT);
+                fts[n] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                likeScan(text, SafetyTipsActivity.SEARCH_LIMIT);
+                like[n] = System.nanoTime() - start;
+                n++;
+            }
+        }
+
+        Arrays.sort(fts);
+        Arrays.sort(like);
+        long ftsP95 = fts[fts.length * 95 / 100];
+        Log.i(TAG, String.format("%d tips, %d keystrokes: FTS median %d us, p95 %d us, max %d us; " +
+                        "LIKE median %d us, p95 %d us, max %d us", TIPS, keystrokes.size(),
+                micros(fts[fts.length / 2]), micros(ftsP95), micros(fts[fts.length - 1]),
+                micros(like[like.length / 2]), micros(like[like.length * 95 / 100]), micros(like[like.length - 1])));
+
+        // A LIKE scan that finds its limit early can beat the ranked search at the median;
+        // the scans that find few rows read the whole table, and that tail is what drops frames
+        long likeP95 = like[like.length * 95 / 100];
+        assertTrue("FTS median " + micros(fts[fts.length / 2]) + " us", fts[fts.length / 2] < FRAME_NANOS);
+        assertTrue("FTS p95 " + micros(ftsP95) + " us, LIKE p95 " + micros(likeP95) + " us", ftsP95 < likeP95);
+    }
+
+    // What a search box without the index would run: every term as a substring of title or
+    // content. Unlike the FTS path it cannot rank, so it stops at the first `limit` rows.
+    private int likeScan(String text, int limit) {
+        List<String> terms = new ArrayList<>();
+        for (String word : text.trim().split("\\s+")) {
+            if (!word.isEmpty()) terms.add(word);
+        }
+        StringBuilder where = new StringBuilder();
+        String[] args = new String[terms.size() * 2];
+        for (int i = 0; i < terms.size(); i++) {
+            if (i > 0) where.append(" AND ");
+            where.append("(' ' || ").append(DatabaseHelper.COL_TIP_TITLE).append(" LIKE ? OR ' ' || ")
+                    .append(DatabaseHelper.COL_TIP_CONTENT).append(" LIKE ?)");
+            // Word starts only, to match the FTS prefix semantics
+            args[2 * i] = "% " + terms.get(i) + "%";
+            args[2 * i + 1] = "% " + terms.get(i) + "%";
+        }
+        Cursor cursor = db.query(DatabaseHelper.TABLE_TIPS, null, where.toString(), args, null, null, null,
+                String.valueOf(limit));
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) rows++;
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void seed() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[2000];
+        String[] syllables = {"ka", "lo", "mi", "ren", "sa", "to", "vu", "ne", "dri", "pa", "qua", "zel", "bo", "ti"};
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int s = 0; s < length; s++) word.append(syllables[random.nextInt(syllables.length)]);
+            vocabulary[i] = word.toString();
+        }
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_TIPS + " (" +
+                DatabaseHelper.COL_TIP_CATEGORY + ", " + DatabaseHelper.COL_TIP_TITLE + ", " +
+                DatabaseHelper.COL_TIP_CONTENT + ") VALUES (?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < TIPS; i++) {
+                insert.bindString(1, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                insert.bindString(2, words(random, vocabulary, 3 + random.nextInt(4)));
+                insert.bindString(3, words(random, vocabulary, 40 + random.nextInt(60)));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    // Roughly one word in ten is a common safety term, the rest filler
+    private static String words(Random random, String[] vocabulary, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(' ');
+            text.append(random.nextInt(10) == 0
+                    ? COMMON[random.nextInt(COMMON.length)]
+                    : vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return text.toString();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,74 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SafetyTipSearchTest {
+
+    @Test
+    public void wordsBecomePrefixTerms() {
+        assertEquals("cpr* ste*", SafetyTipSearch.toMatchQuery("cpr ste"));
+        assertEquals("fire*", SafetyTipSearch.toMatchQuery("  fire  "));
+        assertEquals("First* aid* 2*", SafetyTipSearch.toMatchQuery("First-aid #2"));
+    }
+
+    @Test
+    public void ftsSyntaxIsStripped() {
+        // Quotes, stars, parentheses and column filters would otherwise reach MATCH
+        assertEquals("title* fire*", SafetyTipSearch.toMatchQuery("title:\"fire\""));
+        assertEquals("a* b*", SafetyTipSearch.toMatchQuery("(a* -b)"));
+    }
+
+    @Test
+    public void indicWordsStayWhole() {
+        // The vowel sign in "बचाव" is a combining mark and used to split the word in two
+        assertEquals("आग* बचाव*", SafetyTipSearch.toMatchQuery("आग, बचाव"));
+    }
+
+    @Test
+    public void nothingSearchableIsNull() {
+        assertNull(SafetyTipSearch.toMatchQuery(""));
+        assertNull(SafetyTipSearch.toMatchQuery("   "));
+        assertNull(SafetyTipSearch.toMatchQuery("*\"()-:"));
+    }
+
+    @Test
+    public void titleHitsOutweighContentHits() {
+        // One phrase, columns (title, content)
+        double inTitle = SafetyTipSearch.score(matchinfo(1, 2, new int[][]{{1, 3, 3}, {0, 9, 5}}));
+        double inContent = SafetyTipSearch.score(matchinfo(1, 2, new int[][]{{0, 3, 3}, {1, 9, 3}}));
+        assertEquals(4.0 / 3, inTitle, 1e-9);
+        assertEquals(1.0 / 3, inContent, 1e-9);
+    }
+
+    @Test
+    public void rarerTermsWeighMore() {
+        double rare = SafetyTipSearch.score(matchinfo(1, 2, new int[][]{{0, 0, 0}, {2, 2, 1}}));
+        double common = SafetyTipSearch.score(matchinfo(1, 2, new int[][]{{0, 0, 0}, {2, 40, 20}}));
+        assertTrue(rare > common);
+    }
+
+    @Test
+    public void phrasesAddUp() {
+        double both = SafetyTipSearch.score(matchinfo(2, 2, new int[][]{
+                {1, 1, 1}, {0, 0, 0},
+                {0, 0, 0}, {3, 6, 2}}));
+        assertEquals(4.0 + 1.5, both, 1e-9);
+        assertEquals(0, SafetyTipSearch.score(null), 0);
+    }
+
+    // The 'pcx' layout: phrases, columns, then (hits here, hits everywhere, rows with a hit)
+    // per phrase and column, as native-order 32-bit ints
+    private static byte[] matchinfo(int phrases, int columns, int[][] cells) {
+        ByteBuffer blob = ByteBuffer.allocate(4 * (2 + 3 * cells.length)).order(ByteOrder.nativeOrder());
+        blob.putInt(phrases).putInt(columns);
+        for (int[] cell : cells) blob.putInt(cell[0]).putInt(cell[1]).putInt(cell[2]);
+        return blob.array();
+    }
+}
@@ -0,0 +1,88 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingPolicyTest {
+
+    private static final double NO_ZONE = Double.POSITIVE_INFINITY;
+    private static final long STEP = TimeUnit.SECONDS.toMillis(10);
+
+    private final SamplingPolicy policy = new SamplingPolicy();
+    private long now;
+
+    private SamplingPolicy.Tier run(long durationMs, float speed, int battery, double zone) {
+        SamplingPolicy.Tier tier = policy.tier();
+        for (long end = now + durationMs; now < end; now += STEP) {
+            tier = policy.update(now, speed, battery, false, zone);
+        }
+        return tier;
+    }
+
+    @Test
+    public void standingStillStepsDownOnlyAfterTheHold() {
+        assertEquals(SamplingPolicy.Tier.ACTIVE, run(SamplingPolicy.DOWNGRADE_HOLD_MS - STEP, 0, 80, NO_ZONE));
+        assertEquals(SamplingPolicy.Tier.BALANCED, run(2 * STEP, 0, 80, NO_ZONE));
+    }
+
+    @Test
+    public void speedingUpIsImmediate() {
+        run(TimeUnit.MINUTES.toMillis(5), 0, 80, NO_ZONE);
+        // Smoothed speed crosses FAST_ENTER within a few fixes
+        assertEquals(SamplingPolicy.Tier.HIGH, run(5 * STEP, 15, 80, NO_ZONE));
+    }
+
+    @Test
+    public void speedAroundTheThresholdDoesNotFlap() {
+        run(TimeUnit.MINUTES.toMillis(1), 10, 80, NO_ZONE);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(SamplingPolicy.Tier.HIGH, run(STEP, i % 2 == 0 ? 4f : 6f, 80, NO_ZONE));
+        }
+    }
+
+    @Test
+    public void nearZoneWinsOverLowBattery() {
+        assertEquals(SamplingPolicy.Tier.HIGH, run(STEP, 0, 10, 300));
+        assertEquals(SamplingPolicy.Tier.HIGH, run(TimeUnit.MINUTES.toMillis(10), 0, 10, 600));
+        // Past ZONE_NEAR_LEAVE but still approaching, still, low battery: ACTIVE after the hold
+        assertEquals(SamplingPolicy.Tier.ACTIVE, run(TimeUnit.MINUTES.toMillis(3), 0, 10, 1000));
+    }
+
+    @Test
+    public void lowBatteryStandingStillGoesToLow() {
+        assertEquals(SamplingPolicy.Tier.LOW, run(TimeUnit.MINUTES.toMillis(5), 0, 12, NO_ZONE));
+        // Charging lifts the cap
+        policy.update(now, 0, 12, true, NO_ZONE);
+        assertEquals(SamplingPolicy.Tier.BALANCED, policy.update(now + STEP, 0, 12, true, NO_ZONE));
+    }
+
+    @Test
+    public void liveSharingKeepsHighAccuracy() {
+        assertEquals(SamplingPolicy.Tier.LOW, run(TimeUnit.MINUTES.toMillis(5), 0, 12, NO_ZONE));
+        assertEquals(SamplingPolicy.Tier.ACTIVE, policy.setLiveSharing(true, now));
+        assertEquals(SamplingPolicy.Tier.ACTIVE, run(TimeUnit.MINUTES.toMillis(30), 0, 12, NO_ZONE));
+        assertTrue(policy.tier().highAccuracy);
+
+        policy.setLiveSharing(false, now);
+        assertEquals(SamplingPolicy.Tier.LOW, run(TimeUnit.MINUTES.toMillis(5), 0, 12, NO_ZONE));
+    }
+
+    @Test
+    public void gpsTimeFollowsTheTiers() {
+        run(TimeUnit.MINUTES.toMillis(10), 15, 80, NO_ZONE); // HIGH: GPS always on
+        long high = policy.projectedGpsOnMillis(now);
+        assertEquals(TimeUnit.MINUTES.toMillis(10), high, STEP);
+        // Stopping on a low battery: the steps down to LOW take a few minutes of holds
+        assertEquals(SamplingPolicy.Tier.LOW, run(TimeUnit.MINUTES.toMillis(10), 0, 12, NO_ZONE));
+        long stepDown = policy.projectedGpsOnMillis(now) - high;
+        assertTrue(stepDown > 0 && stepDown < TimeUnit.MINUTES.toMillis(5));
+        // After which an hour of LOW keeps the GPS off
+        long settled = policy.projectedGpsOnMillis(now);
+        run(TimeUnit.MINUTES.toMillis(60), 0, 12, NO_ZONE);
+        assertEquals(settled, policy.projectedGpsOnMillis(now));
+    }
+}
@@ -0,0 +1,98 @@
+package com.emergency.alert;
+
+import android.app.Application;
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+// A cold process: the fix is only in the prefs file, the activity has just warmed the
+// cache, and the user taps SOS straight away
+@RunWith(RobolectricTestRunner.class)
+public class SosPayloadCacheTest {
+
+    private DatabaseHelper dbHelper;
+    private MessagingEngine engine;
+
+    private final AtomicLong firstSendAt = new AtomicLong();
+    private final CountDownLatch sent = new CountDownLatch(1);
+
+    private final SmsTransport radio = new SmsTransport() {
+        @Override
+        public ArrayList<String> divide(String message) {
+            ArrayList<String> parts = new ArrayList<>();
+            for (int i = 0; i < message.length(); i += 153) {
+                parts.add(message.substring(i, Math.min(message.length(), i + 153)));
+            }
+            return parts;
+        }
+
+        @Override
+        public void send(long outboxId, int attempt, String destination, ArrayList<String> parts,
+                         Receipts receipts) {
+            firstSendAt.compareAndSet(0, PhaseTracer.now());
+            sent.countDown();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Application app = RuntimeEnvironment.getApplication();
+        app.getSharedPreferences(SosPayloadCache.PREFS, Context.MODE_PRIVATE).edit()
+                .putLong(SosPayloadCache.PREF_FIX_LAT, Double.doubleToRawLongBits(12.9716))
+                .putLong(SosPayloadCache.PREF_FIX_LNG, Double.doubleToRawLongBits(77.5946))
+                .putFloat(SosPayloadCache.PREF_FIX_ACCURACY, 20f)
+                .putLong(SosPayloadCache.PREF_FIX_TIME, System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5))
+                .putString(SosPayloadCache.PREF_FIX_PROVIDER, "fused")
+                .commit();
+
+        // Opened at app start in the real process, so not part of the tap
+        dbHelper = new DatabaseHelper(app, null);
+        dbHelper.getWritableDatabase();
+        engine = new MessagingEngine(app, dbHelper::getWritableDatabase, radio, System::currentTimeMillis);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        engine.runAfterPendingWork(done::countDown);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        dbHelper.close();
+    }
+
+    @Test
+    public void firstSendFromAColdCacheIsInsideTheBudget() throws Exception {
+        SosPayloadCache cache = new SosPayloadCache(RuntimeEnvironment.getApplication(), radio);
+        cache.warm();
+
+        long tappedAt = PhaseTracer.now();
+        SosPayloadCache.Payload payload = cache.forSend();
+        engine.dispatch(contacts(), payload, tappedAt);
+
+        assertTrue(sent.await(30, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(firstSendAt.get() - tappedAt);
+        assertTrue("first send " + elapsedMs + " ms after the tap",
+                elapsedMs <= MessagingEngine.FIRST_SEND_BUDGET_MS);
+        assertTrue("the persisted fix was not ready", payload.hasLocation());
+    }
+
+    private static List<DatabaseHelper.EmergencyContact> contacts() {
+        DatabaseHelper.EmergencyContact contact = new DatabaseHelper.EmergencyContact();
+        contact.name = "Asha";
+        contact.phone = "+919876543210";
+        return Collections.singletonList(contact);
+    }
+}
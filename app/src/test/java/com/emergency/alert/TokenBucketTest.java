@@ -0,0 +1,60 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(30);
+
+    // 10 tokens, 20 per 30 minutes: one token every 90 s
+    private static TokenBucket full(long now) {
+        return new TokenBucket(10, 20, WINDOW, 10, now);
+    }
+
+    @Test
+    public void burstUpToCapacityThenWaits() {
+        TokenBucket bucket = full(0);
+        for (int i = 0; i < 10; i++) assertTrue(bucket.tryAcquire(1, 0, 0));
+        assertFalse(bucket.tryAcquire(1, 0, 0));
+        assertEquals(90_000, bucket.millisUntil(1, 0, 0));
+    }
+
+    @Test
+    public void refillsOverTimeButNeverPastCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 20, WINDOW, 0, 0);
+        assertFalse(bucket.tryAcquire(1, 0, 89_999));
+        assertTrue(bucket.tryAcquire(1, 0, 90_000));
+        assertEquals(10, bucket.tokens(TimeUnit.HOURS.toMillis(5)), 1e-9);
+    }
+
+    @Test
+    public void reserveIsLeftBehind() {
+        TokenBucket bucket = full(0);
+        assertTrue(bucket.tryAcquire(6, 4, 0));
+        assertFalse(bucket.tryAcquire(1, 4, 0));
+        assertTrue(bucket.tryAcquire(4, 0, 0));
+    }
+
+    @Test
+    public void oversizedRequestOnlyNeedsAFullBucket() {
+        TokenBucket bucket = full(0);
+        assertTrue(bucket.tryAcquire(14, 4, 0));
+        assertEquals(-4, bucket.tokens(0), 1e-9);
+        // The debt plus a full bucket has to refill before the next one
+        assertEquals(14 * 90_000, bucket.millisUntil(14, 4, 0));
+    }
+
+    @Test
+    public void clockGoingBackwardsRefillsNothing() {
+        TokenBucket bucket = new TokenBucket(10, 20, WINDOW, 0, 1_000_000);
+        assertEquals(0, bucket.tokens(0), 1e-9);
+        assertFalse(bucket.tryAcquire(1, 0, 89_999));
+        assertTrue(bucket.tryAcquire(1, 0, 90_000));
+    }
+}
@@ -0,0 +1,206 @@
+package com.emergency.alert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Converter -> binary -> ZoneDataset, checked against the same zones in a ZoneIndex
+public class ZoneDatasetTest {
+
+    private static final double METERS_PER_DEGREE = 111_195;
+
+    private static final String GEOJSON = "{\"type\": \"FeatureCollection\", \"features\": [" +
+            // Square with a closing vertex, type from the property
+            "{\"type\": \"Feature\", \"properties\": {\"id\": \"flood-1\", \"type\": \"DISASTER\", \"severity\": 5}," +
+            " \"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[[77.0, 12.0], [77.01, 12.0]," +
+            " [77.01, 12.01], [77.0, 12.01], [77.0, 12.0]]]}}," +
+            // Circle, type from the id
+            "{\"type\": \"Feature\", \"id\": \"ACCIDENT_junction\", \"properties\": {\"radius\": 150}," +
+            " \"geometry\": {\"type\": \"Point\", \"coordinates\": [77.1, 12.1]}}," +
+            // Two parts sharing one id
+            "{\"type\": \"Feature\", \"properties\": {\"id\": \"UNSAFE_pair\"}, \"geometry\": {\"type\": \"MultiPolygon\"," +
+            " \"coordinates\": [[[[77.2, 12.2], [77.201, 12.2], [77.2005, 12.201]]]," +
+            " [[[77.3, 12.3], [77.301, 12.3], [77.3005, 12.301]]]]}}," +
+            // Far too big for the grid
+            "{\"type\": \"Feature\", \"properties\": {\"id\": \"state\", \"type\": \"GENERIC\"}," +
+            " \"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[[76, 11], [79, 11], [79, 14], [76, 14]]]}}" +
+            "]}";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] convert(String json) {
+        List<ZoneDatasetConverter.Zone> zones =
+                ZoneDatasetConverter.readZones(new ZoneDatasetConverter.JsonReader(json).readValue());
+        return ZoneDatasetConverter.write(zones);
+    }
+
+    private ZoneDataset mapped(byte[] bytes) throws IOException {
+        File file = folder.newFile(ZoneDataset.FILE_NAME);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return ZoneDataset.open(file);
+    }
+
+    @Test
+    public void recordsAre36BytesAfterA64ByteHeader() {
+        ByteBuffer buffer = ByteBuffer.wrap(convert(GEOJSON)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(ZoneDataset.MAGIC, buffer.getInt(0));
+        assertEquals(ZoneDataset.VERSION, buffer.getInt(4));
+        int zones = buffer.getInt(8);
+        assertEquals(5, zones);
+        assertEquals(ZoneDataset.HEADER_BYTES, buffer.getInt(32));
+        assertEquals(ZoneDataset.HEADER_BYTES + zones * ZoneDataset.ZONE_BYTES, buffer.getInt(36));
+
+        // Second record is the circle: no vertices, radius as a float, ACCIDENT, severity 1
+        int record = ZoneDataset.HEADER_BYTES + ZoneDataset.ZONE_BYTES;
+        assertEquals(-1, buffer.getInt(record + 16));
+        assertEquals(0, buffer.getInt(record + 20));
+        assertEquals(150f, buffer.getFloat(record + 24), 0);
+        assertEquals("ACCIDENT_junction".length(), buffer.getShort(record + 32));
+        assertEquals(ZoneIndex.Type.ACCIDENT.ordinal(), buffer.get(record + 34));
+        assertEquals(1, buffer.get(record + 35));
+    }
+
+    @Test
+    public void roundTripKeepsIdsTypesAndGeometry() throws IOException {
+        ZoneDataset dataset = mapped(convert(GEOJSON));
+        assertEquals(5, dataset.size());
+        assertEquals("flood-1", dataset.id(0));
+        assertEquals(ZoneIndex.Type.DISASTER, dataset.type(0));
+        assertEquals(5, dataset.severity(0));
+        assertEquals("UNSAFE_pair", dataset.id(2));
+        assertEquals("UNSAFE_pair", dataset.id(3));
+        assertEquals(ZoneIndex.Type.UNSAFE, dataset.type(3));
+
+        int[] out = new int[4];
+        assertEquals(2, dataset.containing(12.005, 77.005, out));
+        assertEquals(Arrays.asList(0, 4), sorted(out, 2));
+        assertEquals(2, dataset.containing(12.1, 77.1, out));
+        assertEquals(2, dataset.containing(12.3002, 77.3005, out));
+        assertEquals(3, Math.min(out[0], out[1]));
+        assertEquals(0, dataset.containing(15, 80, out));
+
+        double north = 12.1 + 200 / METERS_PER_DEGREE;
+        assertEquals(1, dataset.containing(north, 77.1, out));
+        assertEquals(50, dataset.distanceOutside(1, north, 77.1), 1);
+        assertEquals(0, dataset.distanceOutside(0, 12.005, 77.005), 0);
+        assertEquals(0.01 * METERS_PER_DEGREE, dataset.distanceOutside(0, 12.02, 77.005), 1);
+    }
+
+    // The converter as it is run by hand: a GeoJSON file in, a binary file out, mapped by the app
+    @Test
+    public void convertedFileMapsAndAnswersLookups() throws IOException {
+        File geojson = folder.newFile("zones.geojson");
+        try (OutputStream out = new FileOutputStream(geojson)) {
+            out.write(GEOJSON.getBytes(StandardCharsets.UTF_8));
+        }
+        File bin = new File(folder.getRoot(), ZoneDataset.FILE_NAME);
+        ZoneDatasetConverter.main(new String[]{geojson.getPath(), bin.getPath()});
+        assertArrayEquals(convert(GEOJSON), Files.readAllBytes(bin.toPath()));
+
+        ZoneLookup zones = ZoneDataset.open(bin);
+        assertEquals(5, zones.size());
+        int[] out = new int[4];
+
+        // Inside the flood square, which also sits inside the state
+        assertEquals(2, zones.containing(12.002, 77.008, out));
+        assertEquals(Arrays.asList("flood-1", "state"), ids(zones, out, 2));
+
+        // Inside the circle, just short of its radius
+        double north = 12.1 + 140 / METERS_PER_DEGREE;
+        assertEquals(2, zones.containing(north, 77.1, out));
+        assertEquals(Arrays.asList("ACCIDENT_junction", "state"), ids(zones, out, 2));
+        assertEquals(10, zones.distanceOutside(1, 12.1 + 160 / METERS_PER_DEGREE, 77.1), 1);
+
+        // Each part of the pair resolves to the shared id
+        assertEquals(2, zones.containing(12.2003, 77.2005, out));
+        assertEquals(Arrays.asList("UNSAFE_pair", "state"), ids(zones, out, 2));
+        assertEquals(2, zones.containing(12.3003, 77.3005, out));
+        assertEquals(Arrays.asList("UNSAFE_pair", "state"), ids(zones, out, 2));
+
+        // Only the state covers the gap between zones; nothing covers the open sea
+        assertEquals(1, zones.containing(12.5, 77.5, out));
+        assertEquals("state", zones.id(out[0]));
+        assertEquals(0, zones.containing(15, 80, out));
+        assertEquals(Double.POSITIVE_INFINITY, zones.distanceToNearest(15, 80, 1000), 0);
+    }
+
+    // Same answers as the in-memory index over the same shapes
+    @Test
+    public void matchesZoneIndex() throws IOException {
+        ZoneDataset dataset = mapped(convert(GEOJSON));
+        ZoneIndex index = new ZoneIndex.Builder()
+                .addPolygon("flood-1", ZoneIndex.Type.DISASTER, 5,
+                        new double[]{12, 12, 12.01, 12.01}, new double[]{77, 77.01, 77.01, 77})
+                .addCircle("ACCIDENT_junction", ZoneIndex.Type.ACCIDENT, 1, 12.1, 77.1, 150)
+                .addPolygon("UNSAFE_pair", ZoneIndex.Type.UNSAFE, 1,
+                        new double[]{12.2, 12.2, 12.201}, new double[]{77.2, 77.201, 77.2005})
+                .addPolygon("UNSAFE_pair", ZoneIndex.Type.UNSAFE, 1,
+                        new double[]{12.3, 12.3, 12.301}, new double[]{77.3, 77.301, 77.3005})
+                .addPolygon("state", ZoneIndex.Type.GENERIC, 1,
+                        new double[]{11, 11, 14, 14}, new double[]{76, 79, 79, 76})
+                .build();
+
+        int[] a = new int[8];
+        int[] b = new int[8];
+        // Offset so no point lands exactly on an edge, where quantization may decide either way
+        for (double lat = 11.950031; lat < 12.35; lat += 0.0007) {
+            for (double lng = 76.950017; lng < 77.35; lng += 0.0007) {
+                int found = dataset.containing(lat, lng, a);
+                assertEquals(index.containing(lat, lng, b), found);
+                assertEquals(sorted(b, found), sorted(a, found));
+            }
+        }
+        assertEquals(index.distanceToNearest(12.05, 77.05, 10_000),
+                dataset.distanceToNearest(12.05, 77.05, 10_000), 1);
+    }
+
+    @Test
+    public void rejectsTruncatedAndForeignFiles() {
+        byte[] bytes = convert(GEOJSON);
+        try {
+            new ZoneDataset(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 8)).order(ByteOrder.LITTLE_ENDIAN), "cut");
+            fail("truncated file accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("truncated"));
+        }
+        try {
+            new ZoneDataset(ByteBuffer.wrap(new byte[128]).order(ByteOrder.LITTLE_ENDIAN), "zeros");
+            fail("foreign file accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("not a zone dataset"));
+        }
+    }
+
+    private static List<String> ids(ZoneLookup zones, int[] found, int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) ids[i] = zones.id(found[i]);
+        Arrays.sort(ids);
+        return Arrays.asList(ids);
+    }
+
+    private static List<Integer> sorted(int[] values, int count) {
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) boxed[i] = values[i];
+        Arrays.sort(boxed);
+        return Arrays.asList(boxed);
+    }
+}
@@ -0,0 +1,154 @@
+package com.emergency.alert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZoneIndexTest {
+
+    private static final double METERS_PER_DEGREE = 111_195;
+    private static final int ZONES = 20_000;
+    private static final int QUERIES = 2_000;
+    private static final int MAX_CANDIDATES = 16;
+
+    @Test
+    public void circleContainsCentreButNotBeyondRadius() {
+        ZoneIndex index = new ZoneIndex.Builder()
+                .addCircle("UNSAFE_1", ZoneIndex.Type.UNSAFE, 3, 12.9716, 77.5946, 200)
+                .build();
+        int[] out = new int[4];
+        assertEquals(1, index.containing(12.9716, 77.5946, out));
+        assertEquals("UNSAFE_1", index.id(out[0]));
+        assertEquals(ZoneIndex.Type.UNSAFE, index.type(out[0]));
+        assertEquals(3, index.severity(out[0]));
+
+        double north = 12.9716 + 250 / METERS_PER_DEGREE;
+        assertEquals(0, index.containing(north, 77.5946, out));
+        assertEquals(50, index.distanceOutside(0, north, 77.5946), 1);
+        assertEquals(0, index.distanceOutside(0, 12.9716, 77.5946), 0);
+    }
+
+    @Test
+    public void concavePolygonExcludesItsNotch() {
+        // U shape: 0.01 degree square with the middle of the top third cut out
+        ZoneIndex index = new ZoneIndex.Builder()
+                .addPolygon("ACCIDENT_U", ZoneIndex.Type.ACCIDENT, 1,
+                        new double[]{10, 10.01, 10.01, 10.005, 10.005, 10.01, 10.01, 10},
+                        new double[]{20, 20, 20.003, 20.003, 20.007, 20.007, 20.01, 20.01})
+                .build();
+        int[] out = new int[4];
+        assertEquals(1, index.containing(10.002, 20.005, out));
+        assertEquals(1, index.containing(10.008, 20.001, out));
+        assertEquals(0, index.containing(10.008, 20.005, out));
+        assertTrue(index.distanceOutside(0, 10.008, 20.005) > 0);
+    }
+
+    @Test
+    public void zonesAcrossCellBordersAndHugeZonesAreFound() {
+        ZoneIndex index = new ZoneIndex.Builder()
+                // Straddles the 0.01 degree grid lines on both axes
+                .addCircle("EDGE", ZoneIndex.Type.GENERIC, 1, 12.01, 77.01, 300)
+                // Spans far more cells than the grid takes per zone
+                .addPolygon("DISASTER_REGION", ZoneIndex.Type.DISASTER, 1,
+                        new double[]{11, 14, 14, 11}, new double[]{76, 76, 79, 79})
+                .build();
+        int[] out = new int[4];
+        assertEquals(2, index.containing(12.0095, 77.0095, out));
+        assertEquals(2, index.containing(12.0105, 77.0105, out));
+        assertEquals(1, index.containing(13.5, 78.5, out));
+        assertEquals("DISASTER_REGION", index.id(out[0]));
+    }
+
+    @Test
+    public void reportsTotalEvenWhenOutIsTooSmall() {
+        ZoneIndex.Builder builder = new ZoneIndex.Builder();
+        for (int i = 0; i < 5; i++) builder.addCircle("Z" + i, ZoneIndex.Type.GENERIC, 1, 1, 1, 100 + i);
+        int[] out = new int[2];
+        assertEquals(5, builder.build().containing(1, 1, out));
+    }
+
+    @Test
+    public void distanceToNearestStopsAtTheLimit() {
+        ZoneIndex index = new ZoneIndex.Builder()
+                .addCircle("Z", ZoneIndex.Type.GENERIC, 1, 12, 77, 100)
+                .build();
+        double lat = 12 + 1100 / METERS_PER_DEGREE;
+        assertEquals(1000, index.distanceToNearest(lat, 77, 2000), 1);
+        assertEquals(Double.POSITIVE_INFINITY, index.distanceToNearest(lat, 77, 500), 0);
+        assertEquals(0, index.distanceToNearest(12, 77, 500), 0);
+        assertEquals(Double.POSITIVE_INFINITY, ZoneIndex.EMPTY_INDEX.distanceToNearest(12, 77, 500), 0);
+    }
+
+    // The grid must give exactly what testing every zone gives, while testing only a handful
+    @Test
+    public void gridMatchesLinearScanAndTestsFewZones() {
+        Random random = new Random(1);
+        List<double[]> zones = new ArrayList<>(); // lat, lng, radius m (circles) or -size deg (squares)
+        ZoneIndex.Builder builder = new ZoneIndex.Builder();
+        for (int i = 0; i < ZONES; i++) {
+            double lat = 12 + random.nextDouble() * 2;
+            double lng = 77 + random.nextDouble() * 2;
+            if (i % 2 == 0) {
+                double radius = 50 + random.nextInt(450);
+                builder.addCircle("Z" + i, ZoneIndex.Type.GENERIC, 1, lat, lng, radius);
+                zones.add(new double[]{lat, lng, radius});
+            } else {
+                double d = 0.001 + random.nextDouble() * 0.004;
+                builder.addPolygon("Z" + i, ZoneIndex.Type.GENERIC, 1,
+                        new double[]{lat, lat + d, lat + d, lat}, new double[]{lng, lng, lng + d, lng + d});
+                zones.add(new double[]{lat, lng, -d});
+            }
+        }
+        ZoneIndex index = builder.build();
+
+        int[] out = new int[64];
+        int hits = 0;
+        long examined = 0;
+        int mostExamined = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            double lat = 12 + random.nextDouble() * 2;
+            double lng = 77 + random.nextDouble() * 2;
+            int found = index.containing(lat, lng, out);
+            int[] grid = Arrays.copyOf(out, found);
+            Arrays.sort(grid);
+            assertArrayEquals(linearScan(zones, lat, lng), grid);
+            hits += found;
+
+            int candidates = index.candidates(lat, lng);
+            assertTrue(candidates >= found);
+            examined += candidates;
+            mostExamined = Math.max(mostExamined, candidates);
+        }
+        assertTrue("no query hit a zone", hits > 0);
+
+        // ~0.5 zones per 0.01 degree cell, each touching up to four cells
+        assertTrue(examined + " zones tested over " + QUERIES + " queries", examined < QUERIES * 4L);
+        assertTrue(mostExamined + " zones tested for one query", mostExamined <= MAX_CANDIDATES);
+    }
+
+    private static int[] linearScan(List<double[]> zones, double lat, double lng) {
+        List<Integer> found = new ArrayList<>();
+        for (int z = 0; z < zones.size(); z++) {
+            double[] zone = zones.get(z);
+            boolean inside;
+            if (zone[2] > 0) {
+                double dy = (lat - zone[0]) * METERS_PER_DEGREE;
+                double dx = (lng - zone[1]) * METERS_PER_DEGREE * Math.cos(Math.toRadians(zone[0]));
+                inside = dx * dx + dy * dy <= zone[2] * zone[2];
+            } else {
+                inside = lat >= zone[0] && lat <= zone[0] - zone[2] && lng >= zone[1] && lng <= zone[1] - zone[2];
+            }
+            if (inside) found.add(z);
+        }
+        int[] result = new int[found.size()];
+        for (int i = 0; i < result.length; i++) result[i] = found.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.emergency.alert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Replays synthetic fix traces through the filter with ZoneMonitor's settings
+public class ZoneTransitionFilterTest {
+
+    private static final long FIX_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final String ZONE = "UNSAFE_1";
+
+    private final List<String> emitted = new ArrayList<>();
+    private ZoneTransitionFilter filter;
+    private long now;
+
+    @Before
+    public void setUp() {
+        filter = new ZoneTransitionFilter(ZoneMonitor.BUFFER_METERS, ZoneMonitor.CONFIRM_MS,
+                ZoneMonitor.COOLDOWN_MS, ZoneMonitor.DWELL_MS,
+                (zoneId, transition, time) -> emitted.add(transition.name()));
+    }
+
+    // One fix every 5 s at the given distance outside the zone (<= 0 is inside)
+    private void walk(long durationMs, double metersOutside) {
+        for (long end = now + durationMs; now < end; now += FIX_MS) {
+            filter.observe(ZONE, now, Math.max(0, metersOutside));
+            filter.poll(now);
+        }
+    }
+
+    // Like walk() with Gaussian GPS noise around the true distance
+    private void walkNoisy(Random random, long durationMs, double metersOutside, double sigma) {
+        for (long end = now + durationMs; now < end; now += FIX_MS) {
+            double observed = metersOutside + random.nextGaussian() * sigma;
+            filter.observe(ZONE, now, Math.max(0, observed));
+            filter.poll(now);
+        }
+    }
+
+    @Test
+    public void cleanCrossingEntersAndExitsOnce() {
+        walk(TimeUnit.MINUTES.toMillis(1), 500);
+        walk(TimeUnit.MINUTES.toMillis(5), 0);
+        walk(TimeUnit.MINUTES.toMillis(1), 500);
+        assertEquals(list("ENTER", "EXIT"), emitted);
+        assertEquals(0, filter.suppressedTransitions());
+    }
+
+    @Test
+    public void walkingAlongTheEdgeDoesNotFlap() {
+        Random random = new Random(42);
+        walk(TimeUnit.MINUTES.toMillis(1), 0);
+        // Ten minutes right on the boundary with 10 m of GPS noise
+        walkNoisy(random, TimeUnit.MINUTES.toMillis(9) - 1, 0, 10);
+        assertEquals(list("ENTER"), emitted);
+        assertTrue(filter.rawTransitions() > 20);
+        assertTrue(filter.isInside(ZONE));
+    }
+
+    @Test
+    public void briefTouchNeverEnters() {
+        walk(TimeUnit.MINUTES.toMillis(1), 100);
+        walk(ZoneMonitor.CONFIRM_MS - FIX_MS, 0);
+        walk(TimeUnit.MINUTES.toMillis(3), 100);
+        assertTrue(emitted.isEmpty());
+        assertFalse(filter.isTracking(ZONE));
+    }
+
+    @Test
+    public void dwellFiresOncePerStay() {
+        walk(TimeUnit.MINUTES.toMillis(25), 0);
+        assertEquals(list("ENTER", "DWELL"), emitted);
+    }
+
+    @Test
+    public void quickReversalWaitsOutTheCooldown() {
+        walk(TimeUnit.MINUTES.toMillis(1), 0);
+        walk(TimeUnit.SECONDS.toMillis(30), 200);
+        assertEquals(list("ENTER"), emitted);
+        // Coming back before the cooldown ends cancels the pending exit
+        walk(TimeUnit.MINUTES.toMillis(5), 0);
+        assertEquals(list("ENTER"), emitted);
+        walk(TimeUnit.MINUTES.toMillis(1), 200);
+        assertEquals(list("ENTER", "EXIT"), emitted);
+    }
+
+    @Test
+    public void noisyTraceKeepsRealCrossingsAndDropsFlaps() {
+        Random random = new Random(7);
+        for (int trip = 0; trip < 5; trip++) {
+            walkNoisy(random, TimeUnit.MINUTES.toMillis(4), 300, 15);
+            walkNoisy(random, TimeUnit.MINUTES.toMillis(2), 0, 15);  // hovering at the edge
+            walkNoisy(random, TimeUnit.MINUTES.toMillis(4), -80, 15); // well inside
+            walkNoisy(random, TimeUnit.MINUTES.toMillis(2), 0, 15);
+        }
+        walkNoisy(random, TimeUnit.MINUTES.toMillis(4), 300, 15);
+
+        int enters = 0;
+        int exits = 0;
+        for (String transition : emitted) {
+            if (transition.equals("ENTER")) enters++;
+            if (transition.equals("EXIT")) exits++;
+        }
+        assertEquals(5, enters);
+        assertEquals(5, exits);
+        assertTrue(filter.suppressedTransitions() > 10 * filter.emittedTransitions());
+    }
+
+    @Test
+    public void geofenceFlapPassesOnOneEnter() {
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, 0);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.EXIT, TimeUnit.SECONDS.toMillis(20));
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, TimeUnit.SECONDS.toMillis(40));
+        assertEquals(list("ENTER"), emitted);
+        assertTrue(filter.isInside(ZONE));
+        assertEquals(2, filter.suppressedTransitions());
+    }
+
+    @Test
+    public void geofenceExitAfterCooldownIsPassedOnAtOnce() {
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, 0);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.EXIT, ZoneMonitor.COOLDOWN_MS);
+        // No poll needed: nothing is held for a later call
+        assertEquals(list("ENTER", "EXIT"), emitted);
+        assertFalse(filter.isInside(ZONE));
+    }
+
+    @Test
+    public void geofenceRepeatsAndStrayExitsAreDropped() {
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.EXIT, 0);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, 1000);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.DWELL, ZoneMonitor.DWELL_MS);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.DWELL, ZoneMonitor.DWELL_MS + 1000);
+        assertEquals(list("ENTER", "DWELL"), emitted);
+        // A second ENTER after the cooldown means the EXIT between them never arrived
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, 2 * ZoneMonitor.DWELL_MS);
+        assertEquals(list("ENTER", "DWELL", "ENTER"), emitted);
+    }
+
+    @Test
+    public void geofenceStateCarriesAcrossInstances() {
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, 5000);
+        long last = filter.lastPassedOn(ZONE);
+        assertEquals(5000, last);
+        assertEquals(Long.MIN_VALUE, filter.lastPassedOn("UNSAFE_2"));
+
+        setUp();
+        filter.restoreGeofenceZone(ZONE, true, last);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.EXIT, last + 10_000);
+        filter.onGeofenceEvent(ZONE, ZoneTransitionFilter.Transition.ENTER, last + 20_000);
+        assertEquals(list("ENTER"), emitted);
+    }
+
+    private static List<String> list(String... transitions) {
+        List<String> list = new ArrayList<>();
+        for (String transition : transitions) list.add(transition);
+        return list;
+    }
+}
@@ -0,0 +1,401 @@
+package com.emergency.alert;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Offline converter from a GeoJSON FeatureCollection to the binary zone dataset the app
+// maps with ZoneDataset (see the layout there; the two must change together).
+//
+//   javac -d out tools/zones/src/com/emergency/alert/ZoneDatasetConverter.java
+//   java -cp out com.emergency.alert.ZoneDatasetConverter zones.geojson app/src/main/assets/zones.bin
+//
+// A dataset at app/src/main/assets/zones.bin ships with the APK and is copied to
+// files/zones.bin on first run (ZoneMonitor). It lives in the app's package only so the
+// round-trip test can use it next to ZoneDataset; it is not part of the APK.
+//
+// Per feature:
+//   Polygon       one zone from the outer ring (holes are ignored)
+//   MultiPolygon  one zone per part, all sharing the feature's id
+//   Point         a circle; needs a numeric "radius" property in metres
+// Properties: "id" (else the feature id, else ZONE_<n>), "type" (UNSAFE, ACCIDENT,
+// DISASTER, anything else is GENERIC; the id is checked the same way as
+// GeofenceBroadcastReceiver does when there is no type) and "severity" (0-127, default 1).
+public class ZoneDatasetConverter {
+
+    static final int MAGIC = 0x445A4145; // "EAZD"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int ZONE_BYTES = 36;
+    static final double SCALE = 1e7;
+    static final int CELL_UNITS = 100_000; // 0.01 degree, ZoneIndex.CELL_DEGREES
+    static final int MAX_CELLS_PER_ZONE = 1024;
+    static final double METERS_PER_DEGREE = 111_195;
+
+    // Ordinals of ZoneIndex.Type
+    static final String[] TYPES = {"UNSAFE", "ACCIDENT", "DISASTER", "GENERIC"};
+
+    static final class Zone {
+        String id;
+        int type;
+        int severity;
+        int minLat, minLng, maxLat, maxLng;
+        int[] vertices; // lat, lng pairs; null for circles
+        float radius;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: ZoneDatasetConverter <in.geojson> <out.bin>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        String json = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        List<Zone> zones = readZones(new JsonReader(json).readValue());
+        byte[] bytes = write(zones);
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            out.write(bytes);
+        }
+        System.out.printf("%d zone(s), %d bytes, %.0f ms%n",
+                zones.size(), bytes.length, (System.nanoTime() - start) / 1e6);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Zone> readZones(Object root) {
+        Map<String, Object> collection = (Map<String, Object>) root;
+        if (!"FeatureCollection".equals(collection.get("type"))) {
+            throw new IllegalArgumentException("Expected a FeatureCollection");
+        }
+
+        List<Zone> zones = new ArrayList<>();
+        int n = 0;
+        int skipped = 0;
+        int holes = 0;
+        for (Object item : (List<Object>) collection.get("features")) {
+            Map<String, Object> feature = (Map<String, Object>) item;
+            Map<String, Object> geometry = (Map<String, Object>) feature.get("geometry");
+            Map<String, Object> props = feature.get("properties") instanceof Map
+                    ? (Map<String, Object>) feature.get("properties") : new HashMap<String, Object>();
+            n++;
+
+            String id = props.get("id") != null ? String.valueOf(props.get("id"))
+                    : feature.get("id") != null ? String.valueOf(feature.get("id")) : "ZONE_" + n;
+            int type = typeOf(props.get("type") != null ? String.valueOf(props.get("type")) : null, id);
+            int severity = props.get("severity") instanceof Double
+                    ? Math.max(0, Math.min(127, ((Double) props.get("severity")).intValue())) : 1;
+
+            String kind = geometry == null ? "" : String.valueOf(geometry.get("type"));
+            List<Object> coordinates = geometry == null ? null : (List<Object>) geometry.get("coordinates");
+            List<List<Object>> rings = new ArrayList<>();
+            if ("Polygon".equals(kind)) {
+                rings.add(coordinates);
+            } else if ("MultiPolygon".equals(kind)) {
+                for (Object part : coordinates) rings.add((List<Object>) part);
+            } else if ("Point".equals(kind) && props.get("radius") instanceof Double) {
+                double lng = (Double) coordinates.get(0);
+                double lat = (Double) coordinates.get(1);
+                zones.add(circle(id, type, severity, lat, lng, (Double) props.get("radius")));
+                continue;
+            } else {
+                skipped++;
+                continue;
+            }
+
+            for (List<Object> polygon : rings) {
+                holes += polygon.size() - 1;
+                Zone zone = polygon((List<Object>) polygon.get(0), id, type, severity);
+                if (zone != null) zones.add(zone);
+                else skipped++;
+            }
+        }
+        if (skipped > 0) System.err.println("Skipped " + skipped + " unsupported or degenerate geometries");
+        if (holes > 0) System.err.println("Ignored " + holes + " polygon hole(s)");
+        return zones;
+    }
+
+    static int typeOf(String type, String id) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equalsIgnoreCase(type)) return i;
+        }
+        if (type == null) {
+            for (int i = 0; i < TYPES.length - 1; i++) {
+                if (id.contains(TYPES[i])) return i;
+            }
+        }
+        return TYPES.length - 1;
+    }
+
+    static Zone circle(String id, int type, int severity, double lat, double lng, double radius) {
+        Zone zone = new Zone();
+        zone.id = id;
+        zone.type = type;
+        zone.severity = severity;
+        double dLat = radius / METERS_PER_DEGREE;
+        double dLng = radius / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+        zone.minLat = quantize(lat - dLat);
+        zone.maxLat = quantize(lat + dLat);
+        zone.minLng = quantize(lng - dLng);
+        zone.maxLng = quantize(lng + dLng);
+        zone.radius = (float) radius;
+        return zone;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Zone polygon(List<Object> ring, String id, int type, int severity) {
+        int count = ring.size();
+        // GeoJSON rings repeat the first position at the end
+        if (count > 1 && ring.get(0).equals(ring.get(count - 1))) count--;
+        if (count < 3) return null;
+
+        Zone zone = new Zone();
+        zone.id = id;
+        zone.type = type;
+        zone.severity = severity;
+        zone.vertices = new int[count * 2];
+        zone.minLat = zone.minLng = Integer.MAX_VALUE;
+        zone.maxLat = zone.maxLng = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            List<Object> position = (List<Object>) ring.get(i);
+            int lat = quantize((Double) position.get(1));
+            int lng = quantize((Double) position.get(0));
+            zone.vertices[i * 2] = lat;
+            zone.vertices[i * 2 + 1] = lng;
+            zone.minLat = Math.min(zone.minLat, lat);
+            zone.maxLat = Math.max(zone.maxLat, lat);
+            zone.minLng = Math.min(zone.minLng, lng);
+            zone.maxLng = Math.max(zone.maxLng, lng);
+        }
+        return zone;
+    }
+
+    static int quantize(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    static byte[] write(List<Zone> zones) {
+        // Grid: cell key -> zone numbers, same cells as ZoneIndex
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        List<Integer> large = new ArrayList<>();
+        int vertexCount = 0;
+        for (int z = 0; z < zones.size(); z++) {
+            Zone zone = zones.get(z);
+            if (zone.vertices != null) vertexCount += zone.vertices.length / 2;
+            int rowStart = Math.floorDiv(zone.minLat, CELL_UNITS);
+            int rowEnd = Math.floorDiv(zone.maxLat, CELL_UNITS);
+            int colStart = Math.floorDiv(zone.minLng, CELL_UNITS);
+            int colEnd = Math.floorDiv(zone.maxLng, CELL_UNITS);
+            if ((rowEnd - rowStart + 1L) * (colEnd - colStart + 1L) > MAX_CELLS_PER_ZONE) {
+                large.add(z);
+                continue;
+            }
+            for (int r = rowStart; r <= rowEnd; r++) {
+                for (int c = colStart; c <= colEnd; c++) {
+                    long key = ((long) r << 32) | (c & 0xFFFFFFFFL);
+                    List<Integer> members = cells.get(key);
+                    if (members == null) cells.put(key, members = new ArrayList<>());
+                    members.add(z);
+                }
+            }
+        }
+        long[] keys = new long[cells.size()];
+        int k = 0;
+        int memberCount = 0;
+        for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+            keys[k++] = entry.getKey();
+            memberCount += entry.getValue().size();
+        }
+        Arrays.sort(keys);
+
+        // Ids, shared between the parts of a MultiPolygon
+        Map<String, Integer> idOffsets = new LinkedHashMap<>();
+        int stringBytes = 0;
+        for (Zone zone : zones) {
+            if (idOffsets.containsKey(zone.id)) continue;
+            int length = zone.id.getBytes(StandardCharsets.UTF_8).length;
+            if (length > 0xFFFF) throw new IllegalArgumentException("Zone id too long: " + zone.id);
+            idOffsets.put(zone.id, stringBytes);
+            stringBytes += length;
+        }
+
+        int zonesOffset = HEADER_BYTES;
+        int verticesOffset = zonesOffset + zones.size() * ZONE_BYTES;
+        int keysOffset = align8(verticesOffset + vertexCount * 8);
+        int startOffset = keysOffset + keys.length * 8;
+        int membersOffset = startOffset + (keys.length + 1) * 4;
+        int largeOffset = membersOffset + memberCount * 4;
+        int stringsOffset = largeOffset + large.size() * 4;
+
+        ByteBuffer out = ByteBuffer.allocate(stringsOffset + stringBytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(zones.size()).putInt(vertexCount)
+                .putInt(keys.length).putInt(memberCount).putInt(large.size()).putInt(CELL_UNITS)
+                .putInt(zonesOffset).putInt(verticesOffset).putInt(keysOffset).putInt(startOffset)
+                .putInt(membersOffset).putInt(largeOffset).putInt(stringsOffset).putInt(stringBytes);
+
+        int vertex = 0;
+        for (Zone zone : zones) {
+            int at = out.position();
+            out.putInt(zone.minLat).putInt(zone.minLng).putInt(zone.maxLat).putInt(zone.maxLng);
+            out.putInt(zone.vertices == null ? -1 : vertex);
+            out.putInt(zone.vertices == null ? 0 : zone.vertices.length / 2);
+            out.putFloat(zone.radius);
+            out.putInt(idOffsets.get(zone.id));
+            out.putShort((short) zone.id.getBytes(StandardCharsets.UTF_8).length);
+            out.put((byte) zone.type).put((byte) zone.severity);
+            if (zone.vertices != null) {
+                for (int i = 0; i < zone.vertices.length; i += 2) {
+                    out.putInt(verticesOffset + (vertex + i / 2) * 8, zone.vertices[i]);
+                    out.putInt(verticesOffset + (vertex + i / 2) * 8 + 4, zone.vertices[i + 1]);
+                }
+                vertex += zone.vertices.length / 2;
+            }
+            out.position(at + ZONE_BYTES);
+        }
+
+        out.position(keysOffset);
+        int member = 0;
+        for (long key : keys) out.putLong(key);
+        for (long key : keys) {
+            out.putInt(member);
+            member += cells.get(key).size();
+        }
+        out.putInt(member);
+        for (long key : keys) {
+            for (int z : cells.get(key)) out.putInt(z);
+        }
+        for (int z : large) out.putInt(z);
+        for (String id : idOffsets.keySet()) out.put(id.getBytes(StandardCharsets.UTF_8));
+        return out.array();
+    }
+
+    static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    // Just enough JSON for GeoJSON: objects, arrays, strings, numbers (as Double),
+    // booleans and null
+    static final class JsonReader {
+        private final String s;
+        private int pos;
+
+        JsonReader(String s) {
+            this.s = s;
+        }
+
+        Object readValue() {
+            skipSpace();
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return readObject();
+                case '[': return readArray();
+                case '"': return readString();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return readNumber();
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (s.charAt(pos) == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                String key = readString();
+                skipSpace();
+                expect(':');
+                map.put(key, readValue());
+                skipSpace();
+                if (s.charAt(pos) == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (s.charAt(pos) == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue());
+                skipSpace();
+                if (s.charAt(pos) == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+        }
+
+        private Double readNumber() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (start == pos) throw new IllegalArgumentException("Unexpected '" + s.charAt(pos) + "' at " + pos);
+            return Double.valueOf(s.substring(start, pos));
+        }
+
+        private Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) throw new IllegalArgumentException("Bad literal at " + pos);
+            pos += word.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (s.charAt(pos) != c) throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            pos++;
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+    }
+}